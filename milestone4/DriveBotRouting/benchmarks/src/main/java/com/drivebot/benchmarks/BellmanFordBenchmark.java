@@ -0,0 +1,58 @@
+package com.drivebot.benchmarks;
+
+import com.drivebot.algorithms.BellmanFord;
+import com.drivebot.algorithms.Spfa;
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Graph;
+import com.drivebot.model.Node;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bellman-Ford is O(VE), so it only gets the small sizes; SPFA runs alongside for comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BellmanFordBenchmark {
+
+    @Param({"GRID", "ROAD"})
+    public SyntheticGraphs.Shape shape;
+
+    @Param({"1000", "10000"})
+    public int nodes;
+
+    private Graph graph;
+    private CompactGraph compact;
+    private QueryPairs pairs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        graph = SyntheticGraphs.create(shape, nodes, 42);
+        compact = CompactGraph.of(graph);
+        pairs = new QueryPairs(compact, 64, 7);
+    }
+
+    @Benchmark
+    public List<Node> bellmanFordObjectGraph() {
+        pairs.advance();
+        return BellmanFord.findPath(graph, pairs.start(), pairs.goal());
+    }
+
+    @Benchmark
+    public List<Node> bellmanFord() {
+        pairs.advance();
+        return BellmanFord.findPath(compact, pairs.start(), pairs.goal());
+    }
+
+    @Benchmark
+    public List<Node> spfa() {
+        pairs.advance();
+        return Spfa.findPath(compact, pairs.start(), pairs.goal());
+    }
+}
@@ -0,0 +1,65 @@
+package com.drivebot.benchmarks;
+
+import com.drivebot.DriveBotRouter;
+import com.drivebot.dispatch.Assignment;
+import com.drivebot.dispatch.Dispatcher;
+import com.drivebot.dispatch.RideRequest;
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One batch of {@code batch} idle vehicles against as many pending rides: bounded pickup
+ * matrix, min-cost matching and the routes of the matched trips.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+
+    @Param({"GRID", "ROAD"})
+    public SyntheticGraphs.Shape shape;
+
+    @Param({"10000"})
+    public int nodes;
+
+    @Param({"1000"})
+    public int batch;
+
+    @Param({"30"})
+    public double pickupRadius;
+
+    private Dispatcher dispatcher;
+    private List<Node> vehicles;
+    private List<RideRequest> rides;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DriveBotRouter router = new DriveBotRouter(SyntheticGraphs.create(shape, nodes, 42), null, false,
+                RoadClassPolicy.ALLOW_ALL);
+        CompactGraph compact = router.getSnapshot();
+        Random random = new Random(7);
+        vehicles = new ArrayList<>();
+        rides = new ArrayList<>();
+        for (int i = 0; i < batch; i++) {
+            vehicles.add(compact.getNode(random.nextInt(compact.getNodeCount())));
+            rides.add(new RideRequest("R" + i, compact.getNode(random.nextInt(compact.getNodeCount())),
+                    compact.getNode(random.nextInt(compact.getNodeCount()))));
+        }
+        dispatcher = new Dispatcher(router, pickupRadius);
+    }
+
+    @Benchmark
+    public List<Assignment> dispatch() {
+        return dispatcher.dispatch(vehicles, rides);
+    }
+}
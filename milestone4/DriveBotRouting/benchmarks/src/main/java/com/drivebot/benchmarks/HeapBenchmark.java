@@ -0,0 +1,95 @@
+package com.drivebot.benchmarks;
+
+import com.drivebot.algorithms.IndexedMinHeap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The search queue in isolation: the indexed 4-ary heap with decrease-key against the
+ * {@link PriorityQueue} with lazy deletion the searches used before. Each operation
+ * replays the same mix of inserts, key decreases and polls a road search produces.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HeapBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private int[] ids;
+    private double[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Three offers per node: the first inserts, the next two usually lower the key
+        Random random = new Random(5);
+        ids = new int[size * 3];
+        keys = new double[size * 3];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = random.nextInt(size);
+            keys[i] = random.nextDouble() * size;
+        }
+    }
+
+    @Benchmark
+    public double indexedMinHeap() {
+        IndexedMinHeap heap = new IndexedMinHeap(size);
+        double[] best = new double[size];
+        boolean[] done = new boolean[size];
+        Arrays.fill(best, Double.POSITIVE_INFINITY);
+        double sum = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (!done[ids[i]] && keys[i] < best[ids[i]]) {
+                best[ids[i]] = keys[i];
+                heap.insertOrDecrease(ids[i], keys[i]);
+            }
+            if ((i & 3) == 3 && !heap.isEmpty()) sum += poll(heap, done);
+        }
+        while (!heap.isEmpty()) sum += poll(heap, done);
+        return sum;
+    }
+
+    private static double poll(IndexedMinHeap heap, boolean[] done) {
+        int id = heap.poll();
+        done[id] = true;
+        return id;
+    }
+
+    @Benchmark
+    public double priorityQueue() {
+        PriorityQueue<double[]> queue = new PriorityQueue<>((a, b) -> Double.compare(a[1], b[1]));
+        double[] best = new double[size];
+        boolean[] done = new boolean[size];
+        Arrays.fill(best, Double.POSITIVE_INFINITY);
+        double sum = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (!done[ids[i]] && keys[i] < best[ids[i]]) {
+                best[ids[i]] = keys[i];
+                queue.add(new double[]{ids[i], keys[i]});
+            }
+            if ((i & 3) == 3) sum += pollFresh(queue, best, done);
+        }
+        while (!queue.isEmpty()) sum += pollFresh(queue, best, done);
+        return sum;
+    }
+
+    private static double pollFresh(PriorityQueue<double[]> queue, double[] best, boolean[] done) {
+        while (!queue.isEmpty()) {
+            double[] entry = queue.poll();
+            int id = (int) entry[0];
+            if (!done[id] && entry[1] == best[id]) {
+                done[id] = true;
+                return id;
+            }
+        }
+        return 0;
+    }
+}
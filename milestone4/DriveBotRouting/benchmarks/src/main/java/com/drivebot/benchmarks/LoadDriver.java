@@ -0,0 +1,139 @@
+package com.drivebot.benchmarks;
+
+import com.drivebot.DriveBotRouter;
+import com.drivebot.RoutingEngine;
+import com.drivebot.model.Edge;
+import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
+import com.drivebot.utils.EuclideanHeuristic;
+
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load test of {@link DriveBotRouter} on a generated {@link RoadNetwork}.
+ * <p>
+ * Queries are issued on a fixed schedule at the target rate whether or not earlier ones
+ * have finished, and latency is measured from the scheduled start, so a backlog shows up
+ * in the percentiles instead of silently lowering the offered load. Meanwhile a writer
+ * publishes traffic changes on random edges.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.drivebot.benchmarks.LoadDriver \
+ *     --nodes 250000 --qps 2000 --seconds 60 --threads 8 --engine ASTAR \
+ *     --updates-per-second 20 --edges-per-update 500
+ * </pre>
+ */
+public class LoadDriver {
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = parse(args);
+        int nodes = Integer.parseInt(options.getOrDefault("nodes", "100000"));
+        double qps = Double.parseDouble(options.getOrDefault("qps", "1000"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        RoutingEngine engine = RoutingEngine.valueOf(options.getOrDefault("engine", "ASTAR"));
+        double updatesPerSecond = Double.parseDouble(options.getOrDefault("updates-per-second", "10"));
+        int edgesPerUpdate = Integer.parseInt(options.getOrDefault("edges-per-update", "100"));
+        int hubs = Integer.parseInt(options.getOrDefault("hubs", "12"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+
+        PrintStream report = System.out;
+        report.printf("Generating road network with ~%d nodes...%n", nodes);
+        RoadNetwork network = RoadNetwork.generate(nodes, hubs, 0.5, seed);
+        List<Edge> edges = network.getGraph().getAllEdges();
+        DriveBotRouter router = new DriveBotRouter(network.getGraph(), new EuclideanHeuristic(), engine, RoadClassPolicy.ALLOW_ALL);
+        router.publish();
+        report.printf("%d nodes, %d edges, engine %s, %d threads%n",
+                network.getGraph().getAllNodes().size(), edges.size(), engine, threads);
+
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        Random tripRandom = new Random(seed + 1);
+        report.printf("Warming up for %ds...%n", warmupSeconds);
+        runPhase(router, network, workers, tripRandom, qps, warmupSeconds, new LatencyHistogram(), new AtomicLong());
+
+        ScheduledExecutorService updater = Executors.newSingleThreadScheduledExecutor();
+        AtomicLong updates = new AtomicLong();
+        if (updatesPerSecond > 0) {
+            Random trafficRandom = new Random(seed + 2);
+            long period = (long) (1e9 / updatesPerSecond);
+            updater.scheduleAtFixedRate(() -> {
+                router.update(graph -> {
+                    for (int i = 0; i < edgesPerUpdate; i++) {
+                        edges.get(trafficRandom.nextInt(edges.size())).setTrafficFactor(0.8 + trafficRandom.nextDouble() * 2.2);
+                    }
+                });
+                updates.incrementAndGet();
+            }, period, period, TimeUnit.NANOSECONDS);
+        }
+
+        report.printf("Offering %.0f queries/s for %ds...%n", qps, seconds);
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong failures = new AtomicLong();
+        long started = System.nanoTime();
+        runPhase(router, network, workers, tripRandom, qps, seconds, latency, failures);
+        double elapsed = (System.nanoTime() - started) / 1e9;
+        updater.shutdownNow();
+        workers.shutdown();
+
+        long completed = latency.getCount();
+        report.printf("%nCompleted %d queries in %.1fs: %.1f queries/s (offered %.1f), %d failed, %d weight updates%n",
+                completed, elapsed, completed / elapsed, qps, failures.get(), updates.get());
+        report.println("Latency (ms, from scheduled start):");
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            report.printf("  p%-5s %10.3f%n", format(percentile), latency.getValueAtPercentile(percentile) / 1e6);
+        }
+        report.printf("  max    %10.3f%n", latency.getMax() / 1e6);
+    }
+
+    /**
+     * Issues queries on schedule for the given time and waits until all of them finished.
+     */
+    private static void runPhase(DriveBotRouter router, RoadNetwork network, ExecutorService workers, Random random,
+                                 double qps, int seconds, LatencyHistogram latency, AtomicLong failures)
+            throws InterruptedException {
+        long interval = (long) (1e9 / qps);
+        long total = (long) (qps * seconds);
+        CountDownLatch done = new CountDownLatch((int) total);
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long scheduled = start + i * interval;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Node from = network.sampleEndpoint(random);
+            Node to = network.sampleEndpoint(random);
+            workers.execute(() -> {
+                try {
+                    router.computeRoute(from, to);
+                } catch (RuntimeException e) {
+                    failures.incrementAndGet();
+                } finally {
+                    latency.record(System.nanoTime() - scheduled);
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+
+    private static String format(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --name value pairs, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+}
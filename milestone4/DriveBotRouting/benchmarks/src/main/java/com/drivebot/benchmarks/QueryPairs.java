@@ -0,0 +1,42 @@
+package com.drivebot.benchmarks;
+
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Node;
+
+import java.util.Random;
+
+/**
+ * A fixed ring of random start/goal pairs, so every benchmark sees the same queries.
+ * Benchmarks call {@link #advance()} inside the measured method: it costs an increment,
+ * far less than the timestamps and harness work of a {@code Level.Invocation} setup.
+ */
+final class QueryPairs {
+    private final Node[] starts;
+    private final Node[] goals;
+    private int next;
+
+    QueryPairs(CompactGraph graph, int count, long seed) {
+        Random random = new Random(seed);
+        starts = new Node[count];
+        goals = new Node[count];
+        for (int i = 0; i < count; i++) {
+            starts[i] = graph.getNode(random.nextInt(graph.getNodeCount()));
+            goals[i] = graph.getNode(random.nextInt(graph.getNodeCount()));
+        }
+    }
+
+    /**
+     * Moves to the next pair; read it with {@link #start()} and {@link #goal()}.
+     */
+    void advance() {
+        next = (next + 1) % starts.length;
+    }
+
+    Node start() {
+        return starts[next];
+    }
+
+    Node goal() {
+        return goals[next];
+    }
+}
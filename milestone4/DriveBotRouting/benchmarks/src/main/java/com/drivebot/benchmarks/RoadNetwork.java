@@ -0,0 +1,136 @@
+package com.drivebot.benchmarks;
+
+import com.drivebot.model.Edge;
+import com.drivebot.model.Graph;
+import com.drivebot.model.Node;
+import com.drivebot.model.RoadClass;
+
+import java.util.*;
+
+/**
+ * Planar, road-like {@link Graph} plus a skewed trip demand over it.
+ * <p>
+ * Nodes sit on a jittered grid and only connect to grid neighbours, so no two roads
+ * cross. Every 16th row and column is a freeway, every 4th an arterial, the rest are
+ * residential streets, some missing and some one-way. Edge weights are travel times
+ * (length divided by a class speed factor no larger than one), so the Euclidean
+ * heuristic stays admissible.
+ * <p>
+ * Demand mimics airports, stations and downtown: a share of trip ends falls on a few
+ * hubs chosen with Zipf-distributed popularity, the rest is uniform.
+ */
+public final class RoadNetwork {
+    private static final double FREEWAY_SPEED = 1.0;
+    private static final double ARTERIAL_SPEED = 0.7;
+    private static final double RESIDENTIAL_SPEED = 0.45;
+
+    private final Graph graph;
+    private final Node[] nodes;
+    private final Node[] hubs;
+    private final double[] hubCumulative;
+    private final double hubShare;
+
+    private RoadNetwork(Graph graph, Node[] nodes, Node[] hubs, double hubShare, double zipfExponent) {
+        this.graph = graph;
+        this.nodes = nodes;
+        this.hubs = hubs;
+        this.hubShare = hubShare;
+        this.hubCumulative = new double[hubs.length];
+        double total = 0;
+        for (int i = 0; i < hubs.length; i++) {
+            total += 1.0 / Math.pow(i + 1, zipfExponent);
+            hubCumulative[i] = total;
+        }
+        for (int i = 0; i < hubs.length; i++) {
+            hubCumulative[i] /= total;
+        }
+    }
+
+    /**
+     * @param nodeCount Approximate number of intersections.
+     * @param hubCount Number of demand hubs.
+     * @param hubShare Probability that a trip end is a hub, e.g. 0.5.
+     */
+    public static RoadNetwork generate(int nodeCount, int hubCount, double hubShare, long seed) {
+        Random random = new Random(seed);
+        int side = Math.max(2, (int) Math.round(Math.sqrt(nodeCount)));
+        Graph graph = new Graph();
+        Node[] nodes = new Node[side * side];
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
+                Node node = new Node(i + "_" + j, i + random.nextDouble() * 0.6 - 0.3, j + random.nextDouble() * 0.6 - 0.3);
+                nodes[i * side + j] = node;
+                graph.addNode(node);
+            }
+        }
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
+                // A vertical road segment lies on column j, a horizontal one on row i
+                if (i + 1 < side) road(graph, random, nodes[i * side + j], nodes[(i + 1) * side + j], classOfLine(j));
+                if (j + 1 < side) road(graph, random, nodes[i * side + j], nodes[i * side + j + 1], classOfLine(i));
+            }
+        }
+
+        Node[] hubs = new Node[Math.min(hubCount, nodes.length)];
+        Set<Node> chosen = new HashSet<>();
+        for (int h = 0; h < hubs.length; ) {
+            Node candidate = nodes[random.nextInt(nodes.length)];
+            if (chosen.add(candidate) && !graph.getEdges(candidate).isEmpty()) {
+                hubs[h++] = candidate;
+            }
+        }
+        return new RoadNetwork(graph, nodes, hubs, hubShare, 1.1);
+    }
+
+    public Graph getGraph() {
+        return graph;
+    }
+
+    public Node[] getHubs() {
+        return hubs.clone();
+    }
+
+    /**
+     * @return A trip end drawn from the demand distribution.
+     */
+    public Node sampleEndpoint(Random random) {
+        if (hubs.length > 0 && random.nextDouble() < hubShare) {
+            int index = Arrays.binarySearch(hubCumulative, random.nextDouble());
+            return hubs[Math.min(index < 0 ? -index - 1 : index, hubs.length - 1)];
+        }
+        return nodes[random.nextInt(nodes.length)];
+    }
+
+    private static RoadClass classOfLine(int line) {
+        if (line % 16 == 0) return RoadClass.FREEWAY;
+        if (line % 4 == 0) return RoadClass.ARTERIAL;
+        return RoadClass.RESIDENTIAL;
+    }
+
+    private static void road(Graph graph, Random random, Node a, Node b, RoadClass roadClass) {
+        double length = Math.hypot(a.getX() - b.getX(), a.getY() - b.getY());
+        if (roadClass == RoadClass.RESIDENTIAL) {
+            double roll = random.nextDouble();
+            double time = length / RESIDENTIAL_SPEED;
+            if (roll < 0.08) return;
+            if (roll < 0.14) {
+                add(graph, a, b, time, roadClass);
+            } else if (roll < 0.20) {
+                add(graph, b, a, time, roadClass);
+            } else {
+                add(graph, a, b, time, roadClass);
+                add(graph, b, a, time, roadClass);
+            }
+            return;
+        }
+        double speed = roadClass == RoadClass.FREEWAY ? FREEWAY_SPEED : ARTERIAL_SPEED;
+        add(graph, a, b, length / speed, roadClass);
+        add(graph, b, a, length / speed, roadClass);
+    }
+
+    private static void add(Graph graph, Node from, Node to, double time, RoadClass roadClass) {
+        Edge edge = new Edge(from, to, time);
+        edge.setRoadClass(roadClass);
+        graph.addEdge(edge);
+    }
+}
@@ -0,0 +1,66 @@
+package com.drivebot.benchmarks;
+
+import com.drivebot.DriveBotRouter;
+import com.drivebot.RoutingEngine;
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Edge;
+import com.drivebot.model.Graph;
+import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
+import com.drivebot.utils.EuclideanHeuristic;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole {@link DriveBotRouter#computeRoute(Node, Node)} pipeline: publishing pending
+ * weight changes, the dead-end check and the search. With {@code trafficEdges > 0} every
+ * query is preceded by that many traffic changes, as on a live system.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+@State(Scope.Benchmark)
+public class RouterBenchmark {
+
+    @Param({"GRID", "ROAD"})
+    public SyntheticGraphs.Shape shape;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int nodes;
+
+    @Param({"DIJKSTRA", "ASTAR", "BIDIRECTIONAL_ASTAR"})
+    public RoutingEngine engine;
+
+    @Param({"0", "10"})
+    public int trafficEdges;
+
+    private DriveBotRouter router;
+    private QueryPairs pairs;
+    private List<Edge> edges;
+    private int nextEdge;
+    private double factor = 1.0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Graph graph = SyntheticGraphs.create(shape, nodes, 42);
+        edges = graph.getAllEdges();
+        router = new DriveBotRouter(graph, new EuclideanHeuristic(), engine, RoadClassPolicy.NO_FREEWAYS);
+        pairs = new QueryPairs(CompactGraph.of(graph), 256, 7);
+        router.computeRoute(pairs.start(), pairs.goal());
+    }
+
+    @Benchmark
+    public List<Node> computeRoute() {
+        pairs.advance();
+        for (int i = 0; i < trafficEdges; i++) {
+            nextEdge = (nextEdge + 7919) % edges.size();
+            factor = factor == 1.0 ? 1.25 : 1.0;
+            edges.get(nextEdge).setTrafficFactor(factor);
+        }
+        return router.computeRoute(pairs.start(), pairs.goal());
+    }
+}
@@ -0,0 +1,96 @@
+package com.drivebot.benchmarks;
+
+import com.drivebot.algorithms.AStar;
+import com.drivebot.algorithms.BidirectionalAStar;
+import com.drivebot.algorithms.Dijkstra;
+import com.drivebot.algorithms.SearchStats;
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Graph;
+import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
+import com.drivebot.utils.AltHeuristic;
+import com.drivebot.utils.EuclideanHeuristic;
+import com.drivebot.utils.Heuristic;
+import com.drivebot.utils.ZeroHeuristic;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point-to-point searches on random pairs. The object-graph variants are what the
+ * router used to run; the compact ones are what it runs now.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    @Param({"GRID", "ROAD"})
+    public SyntheticGraphs.Shape shape;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int nodes;
+
+    private Graph graph;
+    private CompactGraph compact;
+    private QueryPairs pairs;
+    private final Heuristic euclidean = new EuclideanHeuristic();
+    private final Heuristic zero = new ZeroHeuristic();
+    private Heuristic alt;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        graph = SyntheticGraphs.create(shape, nodes, 42);
+        compact = CompactGraph.of(graph);
+        pairs = new QueryPairs(compact, 256, 7);
+        alt = new AltHeuristic(graph);
+        alt.estimate(compact, 0, 0); // landmarks are not part of the measurement
+    }
+
+    @Benchmark
+    public List<Node> dijkstraObjectGraph() {
+        pairs.advance();
+        return Dijkstra.findPath(graph, pairs.start(), pairs.goal());
+    }
+
+    @Benchmark
+    public List<Node> dijkstra() {
+        pairs.advance();
+        return Dijkstra.findPath(compact, pairs.start(), pairs.goal());
+    }
+
+    @Benchmark
+    public List<Node> aStarObjectGraphEuclidean() {
+        pairs.advance();
+        return AStar.findPath(graph, pairs.start(), pairs.goal(), euclidean);
+    }
+
+    @Benchmark
+    public List<Node> aStarEuclidean() {
+        pairs.advance();
+        return AStar.findPath(compact, pairs.start(), pairs.goal(), euclidean);
+    }
+
+    @Benchmark
+    public List<Node> aStarZero() {
+        pairs.advance();
+        return AStar.findPath(compact, pairs.start(), pairs.goal(), zero);
+    }
+
+    @Benchmark
+    public List<Node> aStarAlt() {
+        pairs.advance();
+        return AStar.findPath(compact, pairs.start(), pairs.goal(), alt);
+    }
+
+    @Benchmark
+    public List<Node> bidirectionalAStarEuclidean() {
+        pairs.advance();
+        return BidirectionalAStar.findPath(compact, pairs.start(), pairs.goal(), euclidean,
+                RoadClassPolicy.ALLOW_ALL, new SearchStats());
+    }
+}
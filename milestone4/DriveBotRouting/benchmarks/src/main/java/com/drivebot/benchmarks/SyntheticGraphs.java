@@ -0,0 +1,100 @@
+package com.drivebot.benchmarks;
+
+import com.drivebot.model.Edge;
+import com.drivebot.model.Graph;
+import com.drivebot.model.Node;
+
+import java.util.Random;
+
+/**
+ * Deterministic benchmark inputs. Every edge costs at least the straight-line distance
+ * between its ends, so the Euclidean heuristic stays admissible on both shapes.
+ */
+public final class SyntheticGraphs {
+
+    public enum Shape {
+        /** Square grid, two-way unit edges. */
+        GRID,
+        /** Jittered grid with missing and one-way streets and faster arterials every tenth row and column. */
+        ROAD
+    }
+
+    private SyntheticGraphs() {}
+
+    public static Graph create(Shape shape, int nodeCount, long seed) {
+        return shape == Shape.GRID ? grid(nodeCount) : roadLike(nodeCount, seed);
+    }
+
+    public static Graph grid(int nodeCount) {
+        int side = side(nodeCount);
+        Graph graph = new Graph();
+        Node[][] nodes = new Node[side][side];
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
+                nodes[i][j] = new Node(i + "_" + j, i, j);
+                graph.addNode(nodes[i][j]);
+            }
+        }
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
+                if (i + 1 < side) twoWay(graph, nodes[i][j], nodes[i + 1][j], 1.0);
+                if (j + 1 < side) twoWay(graph, nodes[i][j], nodes[i][j + 1], 1.0);
+            }
+        }
+        return graph;
+    }
+
+    public static Graph roadLike(int nodeCount, long seed) {
+        int side = side(nodeCount);
+        Random random = new Random(seed);
+        Graph graph = new Graph();
+        Node[][] nodes = new Node[side][side];
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
+                nodes[i][j] = new Node(i + "_" + j, i + random.nextDouble() * 0.6 - 0.3, j + random.nextDouble() * 0.6 - 0.3);
+                graph.addNode(nodes[i][j]);
+            }
+        }
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
+                if (i + 1 < side) street(graph, random, nodes[i][j], nodes[i + 1][j], j % 10 == 0);
+                if (j + 1 < side) street(graph, random, nodes[i][j], nodes[i][j + 1], i % 10 == 0);
+            }
+        }
+        return graph;
+    }
+
+    private static void street(Graph graph, Random random, Node a, Node b, boolean arterial) {
+        double length = distance(a, b);
+        if (arterial) {
+            twoWay(graph, a, b, length);
+            return;
+        }
+        double roll = random.nextDouble();
+        double cost = length * (1.5 + random.nextDouble());
+        if (roll < 0.1) {
+            return; // no street here
+        } else if (roll < 0.2) {
+            graph.addEdge(new Edge(a, b, cost));
+        } else if (roll < 0.3) {
+            graph.addEdge(new Edge(b, a, cost));
+        } else {
+            twoWay(graph, a, b, cost);
+        }
+    }
+
+    private static void twoWay(Graph graph, Node a, Node b, double cost) {
+        graph.addEdge(new Edge(a, b, cost));
+        graph.addEdge(new Edge(b, a, cost));
+    }
+
+    private static double distance(Node a, Node b) {
+        double dx = a.getX() - b.getX();
+        double dy = a.getY() - b.getY();
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private static int side(int nodeCount) {
+        return Math.max(2, (int) Math.round(Math.sqrt(nodeCount)));
+    }
+}
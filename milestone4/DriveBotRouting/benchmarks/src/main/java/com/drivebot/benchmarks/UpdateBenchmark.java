@@ -0,0 +1,78 @@
+package com.drivebot.benchmarks;
+
+import com.drivebot.model.Edge;
+import com.drivebot.model.Graph;
+import com.drivebot.utils.GraphUpdater;
+import com.drivebot.utils.PricingCalculator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Weight updates after a traffic change on {@code changedEdges} edges, against a full
+ * recompute, plus per-edge pricing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+@State(Scope.Benchmark)
+public class UpdateBenchmark {
+
+    @Param({"ROAD"})
+    public SyntheticGraphs.Shape shape;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int nodes;
+
+    @Param({"100", "10000"})
+    public int changedEdges;
+
+    private Graph graph;
+    private Edge[] edges;
+    private int[] changed;
+    private double factor = 1.0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        graph = SyntheticGraphs.create(shape, nodes, 42);
+        List<Edge> all = graph.getAllEdges();
+        edges = all.toArray(new Edge[0]);
+        Random random = new Random(3);
+        changed = new int[Math.min(changedEdges, edges.length)];
+        for (int i = 0; i < changed.length; i++) {
+            changed[i] = random.nextInt(edges.length);
+        }
+        GraphUpdater.recomputeAllWeights(graph);
+    }
+
+    @Benchmark
+    public int updateChangedEdges() {
+        factor = factor == 1.0 ? 1.5 : 1.0;
+        for (int e : changed) {
+            edges[e].setTrafficFactor(factor);
+        }
+        return GraphUpdater.updateGraphWeights(graph);
+    }
+
+    @Benchmark
+    public int recomputeAllEdges() {
+        factor = factor == 1.0 ? 1.5 : 1.0;
+        for (int e : changed) {
+            edges[e].setTrafficFactor(factor);
+        }
+        return GraphUpdater.recomputeAllWeights(graph);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void computePrice(Blackhole blackhole) {
+        for (int i = 0; i < 1024; i++) {
+            blackhole.consume(PricingCalculator.computePrice(edges[i % edges.length]));
+        }
+    }
+}
@@ -1,85 +1,537 @@
 package com.drivebot;
 
 import com.drivebot.algorithms.AStar;
-import com.drivebot.algorithms.BellmanFord;
+import com.drivebot.algorithms.BatteryConstrainedSearch;
+import com.drivebot.algorithms.BidirectionalAStar;
+import com.drivebot.algorithms.BidirectionalDijkstra;
 import com.drivebot.algorithms.Dijkstra;
+import com.drivebot.algorithms.JohnsonPotentials;
+import com.drivebot.algorithms.KShortestPaths;
+import com.drivebot.algorithms.OneToManyDijkstra;
+import com.drivebot.algorithms.SearchStats;
+import com.drivebot.algorithms.ShortestPathTree;
+import com.drivebot.algorithms.Spfa;
+import com.drivebot.algorithms.ch.ContractionHierarchy;
+import com.drivebot.algorithms.ch.ContractionHierarchyBuilder;
+import com.drivebot.algorithms.ch.ContractionHierarchyQuery;
+import com.drivebot.metrics.RoutingMetrics;
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.ConnectivityIndex;
 import com.drivebot.model.Edge;
 import com.drivebot.model.Graph;
 import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
 import com.drivebot.utils.GraphUpdater;
 import com.drivebot.utils.Heuristic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
-
+/**
+ * Routes against immutable {@link CompactGraph} snapshots of its graph, so any number of
+ * threads may call {@link #computeRoute(Node, Node)} at once without locking. A query keeps
+ * the snapshot it started with even if new weights are published meanwhile.
+ * <p>
+ * Weight and structure changes reach the router when {@link #publish()} runs; routing
+ * publishes pending changes by itself before it searches, unless a writer is busy, in
+ * which case it routes on the last published snapshot. Weight-only changes copy the
+ * weight array and patch the changed edges, edits to nodes or edges rebuild the snapshot.
+ * With the hierarchy engine, every new snapshot is contracted on a background thread and
+ * routed with bidirectional Dijkstra until its hierarchy is ready, so neither writers nor
+ * the reader that publishes wait for a contraction.
+ * The {@link Graph} is not thread-safe: while other threads route, edit it through
+ * {@link #update(Consumer)} so edits and publishing never interleave.
+ */
 public class DriveBotRouter {
 
+    private static final Logger LOG = LoggerFactory.getLogger(DriveBotRouter.class);
+
     private final Graph graph;
     private final Heuristic heuristic;
-    private final boolean useAStar;
+    private final RoutingEngine engine;
+    private final RoadClassPolicy roadPolicy;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // One contraction at a time, always of the latest snapshot; only for the hierarchy engine
+    private final ExecutorService hierarchyBuilder;
+    private final AtomicBoolean hierarchyQueued = new AtomicBoolean();
+    private volatile Snapshot current;
+    // Hierarchy queries own a search workspace, so every thread gets its own
+    private final ThreadLocal<ContractionHierarchyQuery> hierarchyQueries = new ThreadLocal<>();
+    private final ThreadLocal<OneToManyDijkstra> matrixSearches = new ThreadLocal<>();
+    private volatile RouteCache routeCache;
+    private volatile RoutingMetrics metrics;
 
     public DriveBotRouter(Graph graph, Heuristic heuristic, boolean useAStar) {
+        this(graph, heuristic, useAStar, RoadClassPolicy.NO_FREEWAYS);
+    }
+
+    public DriveBotRouter(Graph graph, Heuristic heuristic, boolean useAStar, RoadClassPolicy roadPolicy) {
+        this(graph, heuristic, useAStar && heuristic != null ? RoutingEngine.ASTAR : RoutingEngine.DIJKSTRA, roadPolicy);
+    }
+
+    public DriveBotRouter(Graph graph, Heuristic heuristic, RoutingEngine engine, RoadClassPolicy roadPolicy) {
         this.graph = graph;
         this.heuristic = heuristic;
-        this.useAStar = useAStar;
+        this.engine = engine;
+        this.roadPolicy = roadPolicy;
+        this.hierarchyBuilder = engine != RoutingEngine.CONTRACTION_HIERARCHIES ? null
+                : Executors.newSingleThreadExecutor(task -> {
+                    Thread thread = new Thread(task, "hierarchy-builder");
+                    thread.setDaemon(true);
+                    return thread;
+                });
     }
 
 
     public List<Node> computeRoute(Node start, Node goal) {
-        GraphUpdater.updateGraphWeights(graph);
-        applyFreewayExclusion();
+        RoutingMetrics metrics = this.metrics;
+        long started = metrics != null ? System.nanoTime() : 0;
+        return computeRoute(snapshot(), start, goal, metrics, started);
+    }
+
+    /**
+     * Same as {@link #computeRoute(Node, Node)}, but also returns the snapshot the route was
+     * computed on, for callers that price or cost the route afterwards.
+     */
+    public SnapshotRoute computeSnapshotRoute(Node start, Node goal) {
+        RoutingMetrics metrics = this.metrics;
+        long started = metrics != null ? System.nanoTime() : 0;
+        Snapshot snapshot = snapshot();
+        return new SnapshotRoute(computeRoute(snapshot, start, goal, metrics, started), snapshot.graph);
+    }
+
+    private List<Node> computeRoute(Snapshot snapshot, Node start, Node goal, RoutingMetrics metrics, long started) {
+        RouteCache cache = routeCache;
+        List<Node> path = cache != null ? cache.get(start, goal, engine, roadPolicy, snapshot.graph) : null;
+        SearchMethod method = SearchMethod.CACHED;
+        SearchStats stats = null;
+        if (path == null) {
+            method = method(snapshot, start, goal);
+            stats = metrics != null ? new SearchStats() : SearchStats.NONE;
+            path = route(snapshot, method, start, goal, stats);
+            if (cache != null) {
+                cache.put(start, goal, engine, roadPolicy, snapshot.graph, path);
+            }
+        }
+        if (metrics != null) {
+            // Dead ends and SPFA do no counted work, so they stay out of the work histograms
+            boolean counted = method != SearchMethod.DEAD_END && method != SearchMethod.SPFA;
+            metrics.record(method, System.nanoTime() - started, counted ? stats : null);
+        }
+        return path;
+    }
 
-        if (hasDeadEndPath(start, goal)) {
-            System.out.println("[DriveBotRouter] No viable route — dead end detected.");
+    /**
+     * Answers repeated queries from the cache from now on; null turns caching off.
+     * A cache belongs to one graph and must not be shared with routers of other graphs.
+     */
+    public void setRouteCache(RouteCache cache) {
+        writeLock.lock();
+        try {
+            if (cache != null) {
+                cache.onPublish(null, snapshot().graph, null);
+            }
+            routeCache = cache;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public RouteCache getRouteCache() {
+        return routeCache;
+    }
+
+    /**
+     * Records every query from now on; null (the default) turns recording off.
+     */
+    public void setMetrics(RoutingMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public RoutingMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return The search that answers the query on this snapshot.
+     */
+    private SearchMethod method(Snapshot snapshot, Node start, Node goal) {
+        if (!snapshot.connectivity.isReachable(start, goal)) {
+            return SearchMethod.DEAD_END;
+        }
+        if (snapshot.graph.hasNegativeEdge()) {
+            return snapshot.potentials != null ? SearchMethod.JOHNSON_DIJKSTRA : SearchMethod.SPFA;
+        }
+        switch (engine) {
+            case CONTRACTION_HIERARCHIES:
+                return snapshot.hierarchy != null ? SearchMethod.CONTRACTION_HIERARCHIES
+                        : SearchMethod.BIDIRECTIONAL_DIJKSTRA;
+            case BIDIRECTIONAL_ASTAR:
+                return heuristic != null ? SearchMethod.BIDIRECTIONAL_ASTAR : SearchMethod.DIJKSTRA;
+            case BIDIRECTIONAL_DIJKSTRA:
+                return SearchMethod.BIDIRECTIONAL_DIJKSTRA;
+            case ASTAR:
+                return heuristic != null ? SearchMethod.ASTAR : SearchMethod.DIJKSTRA;
+            default:
+                return SearchMethod.DIJKSTRA;
+        }
+    }
+
+    private List<Node> route(Snapshot snapshot, SearchMethod method, Node start, Node goal, SearchStats stats) {
+        CompactGraph routing = snapshot.graph;
+        if (method == SearchMethod.DEAD_END) {
+            LOG.debug("No viable route from {} to {} — dead end detected.", start, goal);
             return Collections.emptyList();
         }
+        LOG.debug("Using {}", method.getDescription());
+
+        switch (method) {
+            case JOHNSON_DIJKSTRA:
+                return snapshot.potentials.findPath(start, goal, stats);
+            case SPFA:
+                return Spfa.findPath(routing, start, goal, roadPolicy);
+            case CONTRACTION_HIERARCHIES:
+                return hierarchyQuery(snapshot.hierarchy).findPath(start, goal, stats);
+            case BIDIRECTIONAL_ASTAR:
+                return BidirectionalAStar.findPath(routing, start, goal, heuristic, roadPolicy, stats);
+            case BIDIRECTIONAL_DIJKSTRA:
+                return BidirectionalDijkstra.findPath(routing, start, goal, roadPolicy, stats);
+            case ASTAR:
+                return AStar.findPath(routing, start, goal, heuristic, roadPolicy, stats);
+            default:
+                return Dijkstra.findPath(routing, start, goal, roadPolicy, stats);
+        }
+    }
+
+    /**
+     * Whether any route connects the nodes, answered from the snapshot's connectivity index
+     * without searching. Ignores the road policy, so a route may still be missing under it.
+     */
+    public boolean isReachable(Node start, Node goal) {
+        return snapshot().connectivity.isReachable(start, goal);
+    }
+
+    /**
+     * Up to k loopless routes from the start to the goal, cheapest first, for detours and
+     * backup plans. Routes sharing more than {@code maxSimilarity} of their cost with a
+     * cheaper one are skipped. With negative weights only the best route is returned.
+     */
+    public List<List<Node>> computeAlternatives(Node start, Node goal, int k, double maxSimilarity) {
+        Snapshot snapshot = snapshot();
+        if (!snapshot.connectivity.isReachable(start, goal)) {
+            return Collections.emptyList();
+        }
+        if (snapshot.graph.hasNegativeEdge()) {
+            List<Node> path = route(snapshot, method(snapshot, start, goal), start, goal, new SearchStats());
+            return path.isEmpty() || k <= 0 ? Collections.emptyList() : List.of(path);
+        }
+        List<List<Node>> routes = new ArrayList<>();
+        for (KShortestPaths.Route route : KShortestPaths.towards(snapshot.graph, goal, roadPolicy)
+                .find(start, k, maxSimilarity, 20 * k)) {
+            routes.add(route.getNodes());
+        }
+        return routes;
+    }
+
+    /**
+     * Fastest route for an electric vehicle with charging stops, on which the battery never
+     * runs empty; empty if there is none. Charge and capacity are in kWh. The search's
+     * travel times, energy use and charging stations are read once per published snapshot,
+     * on its first EV query.
+     */
+    public BatteryConstrainedSearch.Route computeEvRoute(Node start, Node goal, double capacity, double initialCharge) {
+        Snapshot snapshot = snapshot();
+        if (!snapshot.connectivity.isReachable(start, goal)) {
+            return BatteryConstrainedSearch.Route.EMPTY;
+        }
+        return snapshot.evSearch(roadPolicy).findRoute(start, goal, capacity, initialCharge);
+    }
+
+    public TravelMatrix computeMatrix(List<Node> sources, List<Node> targets) {
+        return computeMatrix(sources, targets, false);
+    }
 
-        if (graph.hasNegativeEdge()) {
-            System.out.println("Using Bellman–Ford Search");
-            return BellmanFord.findPath(graph, start, goal);
+    /**
+     * Travel costs from every source to every target under the road policy, computed with one
+     * one-to-many search per source instead of a route per pair. Sources are spread over the
+     * common fork-join pool; every worker thread reuses its own search workspace. The routing
+     * engine does not apply here, all pairs come from the same snapshot. With negative weights
+     * the searches run over the snapshot's Johnson potentials.
+     * @param withPaths Whether to keep the routes as well as their costs.
+     */
+    public TravelMatrix computeMatrix(List<Node> sources, List<Node> targets, boolean withPaths) {
+        return computeMatrix(sources, targets, withPaths, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Same as {@link #computeMatrix(List, List)}, but every search stops at {@code radius}:
+     * pairs further apart than that cost infinity. Keeps matrices between many scattered
+     * sources and targets cheap when only nearby pairs matter, as for pickups.
+     */
+    public TravelMatrix computeMatrixWithin(List<Node> sources, List<Node> targets, double radius) {
+        return computeMatrix(sources, targets, false, radius);
+    }
+
+    private TravelMatrix computeMatrix(List<Node> sources, List<Node> targets, boolean withPaths, double radius) {
+        Snapshot snapshot = snapshot();
+        CompactGraph routing = snapshot.graph;
+        int rows = sources.size();
+        int columns = targets.size();
+        double[][] costs = new double[rows][columns];
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        List<Node>[][] paths = withPaths ? new List[rows][columns] : null;
+
+        // Unknown or unreachable targets would keep a search from ending early
+        boolean[][] unreachable = new boolean[rows][columns];
+        for (int[] pair : snapshot.connectivity.findUnreachablePairs(sources, targets)) {
+            unreachable[pair[0]][pair[1]] = true;
         }
 
-        if (useAStar && heuristic != null) {
-            System.out.println("Using A* Search");
-            return AStar.findPath(graph, start, goal, heuristic);
+        if (routing.hasNegativeEdge() && snapshot.potentials == null) {
+            // A negative cycle rules out potentials: one full SPFA tree per source
+            for (int i = 0; i < rows; i++) {
+                int source = routing.getId(sources.get(i));
+                ShortestPathTree tree = source < 0 ? null : Spfa.oneToAll(routing, source, roadPolicy);
+                for (int j = 0; j < columns; j++) {
+                    List<Node> path = unreachable[i][j] || tree == null ? Collections.<Node>emptyList()
+                            : tree.pathTo(targets.get(j));
+                    costs[i][j] = pathCost(routing, path);
+                    if (costs[i][j] > radius) {
+                        costs[i][j] = Double.POSITIVE_INFINITY;
+                        path = Collections.emptyList();
+                    }
+                    if (paths != null) paths[i][j] = path;
+                }
+            }
+            return new TravelMatrix(sources, targets, costs, paths);
         }
 
-        System.out.println("Using Dijkstra Search");
-        return Dijkstra.findPath(graph, start, goal);
+        IntStream.range(0, rows).parallel().forEach(i -> {
+            Arrays.fill(costs[i], Double.POSITIVE_INFINITY);
+            int source = routing.getId(sources.get(i));
+            if (source < 0) {
+                if (paths != null) Arrays.fill(paths[i], Collections.emptyList());
+                return;
+            }
+            int[] columnIds = new int[columns];
+            int[] wanted = new int[columns];
+            int wantedCount = 0;
+            for (int j = 0; j < columns; j++) {
+                if (!unreachable[i][j]) {
+                    columnIds[j] = routing.getId(targets.get(j));
+                    wanted[wantedCount++] = columnIds[j];
+                }
+            }
+
+            // With negative weights the search runs over the potentials' reduced weights, which
+            // say nothing about real costs along the way: the radius is applied afterwards
+            OneToManyDijkstra search = matrixSearch(routing);
+            int[] wantedIds = Arrays.copyOf(wanted, wantedCount);
+            double[] found = snapshot.potentials != null
+                    ? search.run(snapshot.potentials, source, wantedIds, roadPolicy)
+                    : search.run(routing, source, wantedIds, roadPolicy, radius);
+            for (int j = 0, k = 0; j < columns; j++) {
+                double cost = unreachable[i][j] ? Double.POSITIVE_INFINITY : found[k++];
+                if (cost > radius) cost = Double.POSITIVE_INFINITY;
+                costs[i][j] = cost;
+                if (paths != null) {
+                    paths[i][j] = cost < Double.POSITIVE_INFINITY ? search.pathTo(columnIds[j]) : Collections.emptyList();
+                }
+            }
+        });
+        return new TravelMatrix(sources, targets, costs, paths);
+    }
+
+    /**
+     * Applies an edit to the graph and publishes the result, excluding concurrent publishes.
+     */
+    public void update(Consumer<Graph> edit) {
+        writeLock.lock();
+        try {
+            edit.accept(graph);
+            publish();
+        } finally {
+            writeLock.unlock();
+        }
     }
 
-    private void applyFreewayExclusion() {
-        for (Edge edge : graph.getAllEdges()) {
-            if (isFreeway(edge)) {
-                edge.setWeight(999999);
+    /**
+     * Recomputes the weights of changed edges and makes them visible to new queries.
+     * @return The snapshot queries started from now on will use.
+     */
+    public CompactGraph publish() {
+        writeLock.lock();
+        try {
+            Snapshot previous = current;
+            long epochBefore = graph.getWeightEpoch();
+            List<Edge> changed = GraphUpdater.applyPendingChanges(graph);
+
+            // Edited, or weights changed behind our back: nothing to patch from
+            boolean rebuild = previous == null
+                    || previous.graph.getStructureVersion() != graph.getStructureVersion()
+                    || previous.graph.getWeightEpoch() != epochBefore;
+            CompactGraph routing;
+            if (rebuild) {
+                routing = CompactGraph.of(graph);
+            } else if (!changed.isEmpty()) {
+                double[] weights = previous.graph.copyWeights();
+                for (Edge edge : changed) {
+                    weights[previous.graph.getEdgeId(edge)] = edge.getWeight();
+                }
+                routing = previous.graph.withWeights(weights, graph.getWeightEpoch());
+            } else {
+                return previous.graph;
             }
+
+            ConnectivityIndex connectivity = previous != null
+                    && previous.graph.getStructureVersion() == routing.getStructureVersion()
+                    ? previous.connectivity
+                    : graph.getConnectivity().freeze();
+            current = new Snapshot(routing, connectivity, potentials(routing));
+            if (hierarchyBuilder != null && !routing.hasNegativeEdge() && hierarchyQueued.compareAndSet(false, true)) {
+                hierarchyBuilder.execute(this::buildHierarchy);
+            }
+            RouteCache cache = routeCache;
+            if (cache != null) {
+                cache.onPublish(rebuild ? null : previous.graph, routing, rebuild ? null : changed);
+            }
+            return routing;
+        } finally {
+            writeLock.unlock();
         }
     }
 
-    private boolean isFreeway(Edge edge) {
-        String from = edge.getFrom().getId().toLowerCase();
-        String to = edge.getTo().getId().toLowerCase();
-        return from.contains("i-") || to.contains("i-") || from.contains("freeway") || to.contains("freeway");
+    /**
+     * @return The snapshot the next query will route against, publishing pending changes first.
+     */
+    public CompactGraph getSnapshot() {
+        return snapshot().graph;
     }
 
-    private boolean hasDeadEndPath(Node start, Node goal) {
-        Set<Node> visited = new HashSet<>();
-        Deque<Node> stack = new ArrayDeque<>();
-        stack.push(start);
+    /**
+     * The current snapshot, publishing pending changes first unless a writer is busy: then
+     * the query routes on the last published snapshot instead of waiting for the writer,
+     * whose own publish follows in a single write of {@code current}.
+     */
+    private Snapshot snapshot() {
+        Snapshot snapshot = current;
+        if (snapshot == null) {
+            publish();
+            return current;
+        }
+        if ((graph.hasPendingChanges()
+                || snapshot.graph.getStructureVersion() != graph.getStructureVersion()
+                || snapshot.graph.getWeightEpoch() != graph.getWeightEpoch())
+                && writeLock.tryLock()) {
+            try {
+                publish();
+                snapshot = current;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        return snapshot;
+    }
 
-        while (!stack.isEmpty()) {
-            Node current = stack.pop();
-            if (!visited.add(current)) continue;
+    /**
+     * @return Potentials that let Dijkstra handle the snapshot's negative weights, or null when
+     *         there are none or a negative cycle rules them out.
+     */
+    private JohnsonPotentials potentials(CompactGraph routing) {
+        if (!routing.hasNegativeEdge()) {
+            return null;
+        }
+        try {
+            return JohnsonPotentials.compute(routing, roadPolicy);
+        } catch (RuntimeException negativeCycle) {
+            return null; // SPFA reports the cycle if a query runs into it
+        }
+    }
 
-            List<Edge> outgoing = graph.getEdges(current);
-            if (current != goal && (outgoing == null || outgoing.isEmpty())) {
-                return true;
+    /**
+     * Contracts the latest snapshot. Snapshots published while it runs queue one more build,
+     * which again takes the latest, so a burst of updates costs at most two contractions.
+     */
+    private void buildHierarchy() {
+        hierarchyQueued.set(false);
+        Snapshot snapshot = current;
+        if (snapshot.hierarchy != null || snapshot.graph.hasNegativeEdge()) {
+            return;
+        }
+        try {
+            snapshot.hierarchy = ContractionHierarchyBuilder.build(snapshot.graph, roadPolicy);
+        } catch (RuntimeException e) {
+            LOG.warn("Contracting snapshot of epoch {} failed, it stays on bidirectional Dijkstra",
+                    snapshot.graph.getWeightEpoch(), e);
+        }
+    }
+
+    private ContractionHierarchyQuery hierarchyQuery(ContractionHierarchy hierarchy) {
+        ContractionHierarchyQuery query = hierarchyQueries.get();
+        if (query == null || query.getHierarchy() != hierarchy) {
+            query = hierarchy.newQuery();
+            hierarchyQueries.set(query);
+        }
+        return query;
+    }
+
+    private OneToManyDijkstra matrixSearch(CompactGraph routing) {
+        OneToManyDijkstra search = matrixSearches.get();
+        if (search == null || search.getNodeCount() != routing.getNodeCount()) {
+            search = new OneToManyDijkstra(routing.getNodeCount());
+            matrixSearches.set(search);
+        }
+        return search;
+    }
+
+    private double pathCost(CompactGraph routing, List<Node> path) {
+        if (path.isEmpty()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double cost = 0.0;
+        for (int i = 0; i + 1 < path.size(); i++) {
+            int from = routing.getId(path.get(i));
+            int to = routing.getId(path.get(i + 1));
+            double cheapest = Double.POSITIVE_INFINITY;
+            for (int e = routing.firstEdge(from); e < routing.endEdge(from); e++) {
+                if (routing.getTarget(e) == to && roadPolicy.allows(routing.getRoadClass(e))) cheapest = Math.min(cheapest, routing.getWeight(e));
             }
+            cost += cheapest;
+        }
+        return cost;
+    }
+
+    private static final class Snapshot {
+        final CompactGraph graph;
+        final ConnectivityIndex connectivity;
+        final JohnsonPotentials potentials;   // only with negative weights
+        volatile ContractionHierarchy hierarchy; // set once built in the background, hierarchy engine only
+        private volatile BatteryConstrainedSearch evSearch; // built on the first EV query
+
+        Snapshot(CompactGraph graph, ConnectivityIndex connectivity, JohnsonPotentials potentials) {
+            this.graph = graph;
+            this.connectivity = connectivity;
+            this.potentials = potentials;
+        }
 
-            for (Edge e : outgoing) {
-                stack.push(e.getTo());
+        /**
+         * Racing first queries may each build one; they are equivalent, so either may stay.
+         */
+        BatteryConstrainedSearch evSearch(RoadClassPolicy policy) {
+            BatteryConstrainedSearch search = evSearch;
+            if (search == null) {
+                search = BatteryConstrainedSearch.of(graph, policy);
+                evSearch = search;
             }
+            return search;
         }
-        return false;
     }
 }
@@ -0,0 +1,291 @@
+package com.drivebot;
+
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Edge;
+import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bounded least-recently-used cache of routes for one graph, see
+ * {@link DriveBotRouter#setRouteCache(RouteCache)}. Entries are keyed by start, goal,
+ * engine and road policy, and only answer queries against the snapshot version the
+ * cache was last brought up to date with.
+ * <p>
+ * A cached route stays optimal while weights off the route rise, so a weight increase
+ * only drops the entries whose route uses the edge. A decrease anywhere could open a
+ * shorter route for any pair and drops everything, as do node and edge edits.
+ * <p>
+ * Lookups take no lock. Stores only wait for a publish in progress and for stores of a
+ * key in the same stripe. Eviction is approximate: a full cache drops the least recently
+ * used of a sample of entries, which is exact while the cache holds no more than the sample.
+ */
+public final class RouteCache {
+    private static final int STRIPES = 16;
+    private static final int EVICTION_SAMPLE = 8;
+
+    private final int maxEntries;
+    private final ConcurrentHashMap<Key, CachedRoute> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Set<Key>> keysByEdge = new ConcurrentHashMap<>();
+    private final Object[] stripes = new Object[STRIPES];
+    // Stores share the read lock, a publish takes the write lock: no store can slip a route of
+    // the old snapshot in after the publish has dropped what the new one invalidates
+    private final ReentrantReadWriteLock publishLock = new ReentrantReadWriteLock();
+    private volatile Version version = new Version(-1, -1);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public RouteCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxEntries = maxEntries;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * @return A copy of the cached route, or null if there is none valid for the snapshot.
+     */
+    public List<Node> get(Node start, Node goal, RoutingEngine engine, RoadClassPolicy policy, CompactGraph snapshot) {
+        CachedRoute route = isCurrent(snapshot) ? entries.get(new Key(start, goal, engine, policy)) : null;
+        if (route == null) {
+            misses.increment();
+            return null;
+        }
+        route.lastUsed = System.nanoTime();
+        hits.increment();
+        return new ArrayList<>(route.path);
+    }
+
+    /**
+     * Remembers a route computed on the snapshot; ignored if the cache has moved past it.
+     */
+    public void put(Node start, Node goal, RoutingEngine engine, RoadClassPolicy policy,
+                    CompactGraph snapshot, List<Node> path) {
+        int[] edgeIds = edgesOnPath(snapshot, path);
+        Key key = new Key(start, goal, engine, policy);
+        CachedRoute route = new CachedRoute(new ArrayList<>(path), edgeIds);
+        publishLock.readLock().lock();
+        try {
+            if (!isCurrent(snapshot)) return;
+            synchronized (stripeOf(key)) {
+                for (int edge : edgeIds) {
+                    // Inside compute, so an eviction emptying the set cannot orphan the key
+                    keysByEdge.compute(edge, (e, keys) -> {
+                        Set<Key> indexed = keys != null ? keys : new HashSet<>();
+                        indexed.add(key);
+                        return indexed;
+                    });
+                }
+                CachedRoute previous = entries.put(key, route);
+                if (previous != null) {
+                    unindex(key, previous, route);
+                }
+            }
+            while (entries.size() > maxEntries && evictOne()) {
+                // keep going until back within bounds
+            }
+        } finally {
+            publishLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Brings the cache up to date with a newly published snapshot.
+     * @param previous The snapshot published before, or null if unknown.
+     * @param changed Edges whose weight changed between the two snapshots, or null if unknown.
+     */
+    public void onPublish(CompactGraph previous, CompactGraph current, List<Edge> changed) {
+        publishLock.writeLock().lock();
+        try {
+            Version known = version;
+            if (previous == null || changed == null
+                    || previous.getStructureVersion() != current.getStructureVersion()
+                    || previous.getWeightEpoch() != known.weightEpoch
+                    || previous.getStructureVersion() != known.structureVersion) {
+                invalidateAll();
+            } else {
+                for (Edge edge : changed) {
+                    int id = current.getEdgeId(edge);
+                    if (current.getWeight(id) < previous.getWeight(id)) {
+                        invalidateAll();
+                        break;
+                    }
+                    Set<Key> keys = keysByEdge.remove(id);
+                    if (keys == null) continue;
+                    for (Key key : keys) {
+                        CachedRoute route = entries.remove(key);
+                        if (route != null) {
+                            unindex(key, route, null);
+                            invalidations.increment();
+                        }
+                    }
+                }
+            }
+            // Published last, so a lookup that sees the new version also sees the removals
+            version = new Version(current.getWeightEpoch(), current.getStructureVersion());
+        } finally {
+            publishLock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return Entries dropped because weights or edges changed.
+     */
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    private boolean isCurrent(CompactGraph snapshot) {
+        Version known = version;
+        return snapshot.getWeightEpoch() == known.weightEpoch && snapshot.getStructureVersion() == known.structureVersion;
+    }
+
+    private void invalidateAll() {
+        invalidations.add(entries.size());
+        entries.clear();
+        keysByEdge.clear();
+    }
+
+    /**
+     * Drops the least recently used of a sample of entries.
+     * @return False if there was nothing to drop.
+     */
+    private boolean evictOne() {
+        Key victim = null;
+        CachedRoute oldest = null;
+        int sampled = 0;
+        for (Map.Entry<Key, CachedRoute> entry : entries.entrySet()) {
+            if (oldest == null || entry.getValue().lastUsed < oldest.lastUsed) {
+                victim = entry.getKey();
+                oldest = entry.getValue();
+            }
+            if (++sampled == EVICTION_SAMPLE) break;
+        }
+        if (victim == null) {
+            return false;
+        }
+        synchronized (stripeOf(victim)) {
+            if (entries.remove(victim, oldest)) {
+                unindex(victim, oldest, null);
+                evictions.increment();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the key from the edges of a route it no longer maps to, except from those
+     * the route that replaced it still uses. Callers hold the key's stripe or the write lock.
+     */
+    private void unindex(Key key, CachedRoute route, CachedRoute replacement) {
+        for (int edge : route.edgeIds) {
+            if (replacement != null && replacement.uses(edge)) continue;
+            keysByEdge.computeIfPresent(edge, (e, keys) -> keys.remove(key) && keys.isEmpty() ? null : keys);
+        }
+    }
+
+    private Object stripeOf(Key key) {
+        return stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    /**
+     * Every edge between consecutive nodes of the path, parallel ones included, since any
+     * of them getting more expensive may change the answer.
+     */
+    private static int[] edgesOnPath(CompactGraph snapshot, List<Node> path) {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i + 1 < path.size(); i++) {
+            int from = snapshot.getId(path.get(i));
+            int to = snapshot.getId(path.get(i + 1));
+            for (int e = snapshot.firstEdge(from); e < snapshot.endEdge(from); e++) {
+                if (snapshot.getTarget(e) == to) ids.add(e);
+            }
+        }
+        int[] result = new int[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    private static final class CachedRoute {
+        final List<Node> path;
+        final int[] edgeIds;
+        volatile long lastUsed = System.nanoTime();
+
+        CachedRoute(List<Node> path, int[] edgeIds) {
+            this.path = path;
+            this.edgeIds = edgeIds;
+        }
+
+        boolean uses(int edge) {
+            for (int id : edgeIds) {
+                if (id == edge) return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class Version {
+        final long weightEpoch;
+        final long structureVersion;
+
+        Version(long weightEpoch, long structureVersion) {
+            this.weightEpoch = weightEpoch;
+            this.structureVersion = structureVersion;
+        }
+    }
+
+    private static final class Key {
+        final Node start;
+        final Node goal;
+        final RoutingEngine engine;
+        final RoadClassPolicy policy;
+
+        Key(Node start, Node goal, RoutingEngine engine, RoadClassPolicy policy) {
+            this.start = start;
+            this.goal = goal;
+            this.engine = engine;
+            this.policy = policy;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return start.equals(other.start) && goal.equals(other.goal)
+                    && engine == other.engine && policy.equals(other.policy);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(start, goal, engine, policy);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.drivebot;
+
+/**
+ * Search engine used by {@link DriveBotRouter} when the graph has no negative weights.
+ */
+public enum RoutingEngine {
+    DIJKSTRA,
+    ASTAR,
+    BIDIRECTIONAL_DIJKSTRA,
+    BIDIRECTIONAL_ASTAR,
+    CONTRACTION_HIERARCHIES
+}
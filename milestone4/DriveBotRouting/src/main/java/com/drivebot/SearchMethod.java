@@ -0,0 +1,27 @@
+package com.drivebot;
+
+/**
+ * How {@link DriveBotRouter} answered a query: the {@link RoutingEngine} it was configured
+ * with, or the fallback the snapshot forced on it.
+ */
+public enum SearchMethod {
+    CACHED("Route Cache"),
+    DEAD_END("Dead End Check"),
+    JOHNSON_DIJKSTRA("Dijkstra Search over Johnson potentials"),
+    SPFA("SPFA Search"),
+    CONTRACTION_HIERARCHIES("Contraction Hierarchies"),
+    BIDIRECTIONAL_ASTAR("Bidirectional A* Search"),
+    BIDIRECTIONAL_DIJKSTRA("Bidirectional Dijkstra Search"),
+    ASTAR("A* Search"),
+    DIJKSTRA("Dijkstra Search");
+
+    private final String description;
+
+    SearchMethod(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
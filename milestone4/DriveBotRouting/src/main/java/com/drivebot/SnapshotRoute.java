@@ -0,0 +1,32 @@
+package com.drivebot;
+
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Node;
+
+import java.util.List;
+
+/**
+ * A route together with the snapshot it was computed on, as returned by
+ * {@link DriveBotRouter#computeSnapshotRoute}. Costs and prices of the route are only
+ * meaningful against that snapshot; a later one may have other weights or edges.
+ */
+public final class SnapshotRoute {
+    private final List<Node> path;
+    private final CompactGraph snapshot;
+
+    SnapshotRoute(List<Node> path, CompactGraph snapshot) {
+        this.path = path;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * @return The route, empty if there is none.
+     */
+    public List<Node> getPath() {
+        return path;
+    }
+
+    public CompactGraph getSnapshot() {
+        return snapshot;
+    }
+}
@@ -0,0 +1,60 @@
+package com.drivebot;
+
+import com.drivebot.model.Node;
+
+import java.util.*;
+
+/**
+ * Travel costs from every source to every target, as computed by
+ * {@link DriveBotRouter#computeMatrix(List, List, boolean)}. Row {@code i} belongs to
+ * {@code sources.get(i)}, column {@code j} to {@code targets.get(j)}; pairs without a
+ * route, or beyond the radius of {@link DriveBotRouter#computeMatrixWithin}, cost
+ * {@link Double#POSITIVE_INFINITY}.
+ */
+public final class TravelMatrix {
+    private final List<Node> sources;
+    private final List<Node> targets;
+    private final double[][] costs;
+    private final List<Node>[][] paths;
+
+    TravelMatrix(List<Node> sources, List<Node> targets, double[][] costs, List<Node>[][] paths) {
+        this.sources = sources;
+        this.targets = targets;
+        this.costs = costs;
+        this.paths = paths;
+    }
+
+    public List<Node> getSources() {
+        return sources;
+    }
+
+    public List<Node> getTargets() {
+        return targets;
+    }
+
+    public double getCost(int source, int target) {
+        return costs[source][target];
+    }
+
+    /**
+     * @return The dense cost matrix itself, not a copy.
+     */
+    public double[][] getCosts() {
+        return costs;
+    }
+
+    public boolean hasPaths() {
+        return paths != null;
+    }
+
+    /**
+     * @return The route for the pair, empty if there is none.
+     * @throws IllegalStateException If the matrix was computed without paths.
+     */
+    public List<Node> getPath(int source, int target) {
+        if (paths == null) {
+            throw new IllegalStateException("Matrix was computed without paths");
+        }
+        return paths[source][target];
+    }
+}
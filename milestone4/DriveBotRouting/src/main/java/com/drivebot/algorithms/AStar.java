@@ -1,8 +1,10 @@
 package com.drivebot.algorithms;
 
+import com.drivebot.model.CompactGraph;
 import com.drivebot.model.Edge;
 import com.drivebot.model.Graph;
 import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
 import com.drivebot.utils.Heuristic;
 
 import java.util.*;
@@ -15,54 +17,133 @@ public final class AStar {
                                       Node start,
                                       Node goal,
                                       Heuristic heuristic) {
+        return findPath(graph, start, goal, heuristic, RoadClassPolicy.ALLOW_ALL);
+    }
 
-        Map<Node, Double> gScore = new HashMap<>();
-        Map<Node, Node>   cameFrom = new HashMap<>();
-        Map<Node, Double> fScore = new HashMap<>();
+    public static List<Node> findPath(Graph graph,
+                                      Node start,
+                                      Node goal,
+                                      Heuristic heuristic,
+                                      RoadClassPolicy policy) {
 
+        Map<Node, Integer> index = new HashMap<>();
+        Node[] nodes = new Node[graph.getAllNodes().size()];
         for (Node n : graph.getAllNodes()) {
-            gScore.put(n, Double.POSITIVE_INFINITY);
-            fScore.put(n, Double.POSITIVE_INFINITY);
+            nodes[index.size()] = n;
+            index.put(n, index.size());
+        }
+        Integer source = index.get(start);
+        Integer target = index.get(goal);
+        if (source == null || target == null) {
+            return Collections.emptyList();
         }
-        gScore.put(start, 0.0);
-        fScore.put(start, heuristic.estimate(start, goal));
 
-        PriorityQueue<Node> open = new PriorityQueue<>(Comparator.comparingDouble(fScore::get));
-        open.add(start);
-        Set<Node> closed = new HashSet<>();
+        double[] gScore = new double[nodes.length];
+        int[]    cameFrom = new int[nodes.length];
+        boolean[] closed = new boolean[nodes.length];
+        Arrays.fill(gScore, Double.POSITIVE_INFINITY);
+        Arrays.fill(cameFrom, -1);
+        gScore[source] = 0.0;
+
+        IndexedMinHeap open = new IndexedMinHeap(nodes.length);
+        open.insertOrDecrease(source, heuristic.estimate(start, goal));
 
         while (!open.isEmpty()) {
-            Node current = open.poll();
-            if (closed.contains(current)) continue; // stale entry
-            if (current.equals(goal)) {
-                return reconstructPath(cameFrom, current);
+            int current = open.poll();
+            if (current == target) {
+                return reconstructPath(nodes, cameFrom, current);
             }
-            closed.add(current);
-
-            for (Edge edge : graph.getEdges(current)) {
-                Node neighbour = edge.getTo();
-                if (closed.contains(neighbour)) continue;
-
-                double tentativeG = gScore.get(current) + edge.getWeight();
-                if (tentativeG < gScore.get(neighbour)) {
-                    cameFrom.put(neighbour, current);
-                    gScore.put(neighbour, tentativeG);
-                    double f = tentativeG + heuristic.estimate(neighbour, goal);
-                    fScore.put(neighbour, f);
-                    open.add(neighbour);
+            closed[current] = true;
+
+            for (Edge edge : graph.getEdges(nodes[current])) {
+                if (!policy.allows(edge.getRoadClassCode())) continue;
+                int neighbour = index.get(edge.getTo());
+                if (closed[neighbour]) continue;
+
+                double tentativeG = gScore[current] + edge.getWeight();
+                if (tentativeG < gScore[neighbour]) {
+                    cameFrom[neighbour] = current;
+                    gScore[neighbour] = tentativeG;
+                    double f = tentativeG + heuristic.estimate(nodes[neighbour], goal);
+                    open.insertOrDecrease(neighbour, f);
+                }
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    public static List<Node> findPath(CompactGraph graph,
+                                      Node start,
+                                      Node goal,
+                                      Heuristic heuristic) {
+        return findPath(graph, start, goal, heuristic, RoadClassPolicy.ALLOW_ALL);
+    }
+
+    public static List<Node> findPath(CompactGraph graph,
+                                      Node start,
+                                      Node goal,
+                                      Heuristic heuristic,
+                                      RoadClassPolicy policy) {
+        return findPath(graph, start, goal, heuristic, policy, new SearchStats());
+    }
+
+    public static List<Node> findPath(CompactGraph graph,
+                                      Node start,
+                                      Node goal,
+                                      Heuristic heuristic,
+                                      RoadClassPolicy policy,
+                                      SearchStats stats) {
+        int source = graph.getId(start);
+        int target = graph.getId(goal);
+        if (source < 0 || target < 0) {
+            return Collections.emptyList();
+        }
+
+        int n = graph.getNodeCount();
+        double[] gScore = new double[n];
+        int[] cameFrom = new int[n];
+        boolean[] closed = new boolean[n];
+        Arrays.fill(gScore, Double.POSITIVE_INFINITY);
+        Arrays.fill(cameFrom, -1);
+        gScore[source] = 0.0;
+
+        IndexedMinHeap open = new IndexedMinHeap(n);
+        open.insertOrDecrease(source, heuristic.estimate(graph, source, target));
+
+        while (!open.isEmpty()) {
+            int current = open.poll();
+            stats.nodeSettled();
+            if (current == target) {
+                stats.heapUsed(open);
+                return graph.toPath(cameFrom, target);
+            }
+            closed[current] = true;
+
+            for (int e = graph.firstEdge(current); e < graph.endEdge(current); e++) {
+                int neighbour = graph.getTarget(e);
+                if (closed[neighbour] || !policy.allows(graph.getRoadClass(e))) continue;
+
+                stats.edgeRelaxed();
+                double tentativeG = gScore[current] + graph.getWeight(e);
+                if (tentativeG < gScore[neighbour]) {
+                    cameFrom[neighbour] = current;
+                    gScore[neighbour] = tentativeG;
+                    double f = tentativeG + heuristic.estimate(graph, neighbour, target);
+                    open.insertOrDecrease(neighbour, f);
                 }
             }
         }
+        stats.heapUsed(open);
         return Collections.emptyList();
     }
 
-    private static List<Node> reconstructPath(Map<Node, Node> cameFrom, Node current) {
+    private static List<Node> reconstructPath(Node[] nodes, int[] cameFrom, int current) {
         LinkedList<Node> path = new LinkedList<>();
-        path.addFirst(current);
-        while (cameFrom.containsKey(current)) {
-            current = cameFrom.get(current);
-            path.addFirst(current);
+        path.addFirst(nodes[current]);
+        while (cameFrom[current] != -1) {
+            current = cameFrom[current];
+            path.addFirst(nodes[current]);
         }
         return path;
     }
-}
\ No newline at end of file
+}
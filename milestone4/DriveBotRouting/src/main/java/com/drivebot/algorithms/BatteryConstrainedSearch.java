@@ -0,0 +1,363 @@
+package com.drivebot.algorithms;
+
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Edge;
+import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
+
+import java.util.*;
+
+/**
+ * Fastest route for an electric vehicle that never lets the battery run empty. Labels
+ * carry the time spent so far and the state of charge; a label is dropped when another
+ * one at the same node is at least as early with at least as much charge left.
+ * <p>
+ * At a {@link Node#isChargingStation() charging station} a label may charge up to any of
+ * {@code chargeLevels} evenly spaced levels of the battery, taking
+ * {@code energy / power} hours. Driving uses {@link Edge#getEnergyConsumption()} and takes
+ * {@link Edge#getTravelTime()} seconds; recuperation never charges beyond the capacity.
+ * <p>
+ * Two backward searches from the goal keep the labels few: travel times to the goal
+ * order the queue as in A*, so the goal is final the first time it is polled, and when no
+ * edge recuperates, the energy needed to reach the goal or the nearest station drops
+ * every label that would strand before either.
+ * <p>
+ * Built once per snapshot; later edits to edges or stations only show up in a new instance.
+ * Immutable and safe to share between threads.
+ */
+public final class BatteryConstrainedSearch {
+    private final CompactGraph graph;
+    private final RoadClassPolicy policy;
+    private final int chargeLevels;
+    private final double[] travelTime;
+    private final double[] energy;
+    private final double[] power; // per node, kW
+    private final boolean recuperates;
+
+    private BatteryConstrainedSearch(CompactGraph graph, RoadClassPolicy policy, int chargeLevels) {
+        this.graph = graph;
+        this.policy = policy;
+        this.chargeLevels = chargeLevels;
+        int m = graph.getEdgeCount();
+        travelTime = new double[m];
+        energy = new double[m];
+        boolean negative = false;
+        for (int e = 0; e < m; e++) {
+            Edge edge = graph.getEdge(e);
+            travelTime[e] = edge.getTravelTime();
+            energy[e] = edge.getEnergyConsumption();
+            if (!policy.allows(graph.getRoadClass(e))) continue;
+            if (travelTime[e] < 0) {
+                throw new IllegalArgumentException("EV routing needs non-negative travel times, edge "
+                        + edge.getFrom() + " -> " + edge.getTo() + " has " + travelTime[e]);
+            }
+            negative |= energy[e] < 0;
+        }
+        recuperates = negative;
+        power = new double[graph.getNodeCount()];
+        for (int v = 0; v < power.length; v++) {
+            power[v] = graph.getNode(v).getChargingPower();
+        }
+    }
+
+    public static BatteryConstrainedSearch of(CompactGraph graph, RoadClassPolicy policy) {
+        return of(graph, policy, 10);
+    }
+
+    /**
+     * @param chargeLevels Number of levels a vehicle can charge up to at a station; more
+     *                     levels charge closer to what the route needs, at more labels.
+     * @throws IllegalArgumentException If an allowed edge has a negative travel time.
+     */
+    public static BatteryConstrainedSearch of(CompactGraph graph, RoadClassPolicy policy, int chargeLevels) {
+        if (chargeLevels < 1) {
+            throw new IllegalArgumentException("At least one charge level is needed");
+        }
+        return new BatteryConstrainedSearch(graph, policy, chargeLevels);
+    }
+
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @param capacity Usable battery capacity in kWh.
+     * @param initialCharge Charge in kWh at the start.
+     * @return The fastest route, charging time included, on which the charge never drops
+     *         below zero; empty if the goal cannot be reached without stranding.
+     */
+    public Route findRoute(Node start, Node goal, double capacity, double initialCharge) {
+        if (!(capacity > 0) || initialCharge < 0 || initialCharge > capacity) {
+            throw new IllegalArgumentException("Charge must be within a positive capacity: "
+                    + initialCharge + " of " + capacity);
+        }
+        int source = graph.getId(start);
+        int target = graph.getId(goal);
+        if (source < 0 || target < 0) {
+            return Route.EMPTY;
+        }
+        double[] toGoal = timeToGoal(target);
+        if (toGoal[source] == Double.POSITIVE_INFINITY) {
+            return Route.EMPTY;
+        }
+        double[] needed = recuperates ? new double[graph.getNodeCount()] : energyToRefuel(target);
+
+        Labels labels = new Labels(graph.getNodeCount());
+        IndexedMinHeap queue = new IndexedMinHeap(64);
+        queue.insertOrDecrease(labels.add(source, -1, 0, initialCharge, 0), toGoal[source]);
+        while (!queue.isEmpty()) {
+            int label = queue.poll();
+            if (labels.dead[label]) continue;
+            int u = labels.node[label];
+            if (u == target) {
+                return labels.route(label, graph);
+            }
+            double time = labels.time[label];
+            double charge = labels.charge[label];
+
+            if (power[u] > 0 && labels.charged[label] == 0) {
+                for (int k = 1; k <= chargeLevels; k++) {
+                    double level = capacity * k / chargeLevels;
+                    if (level <= charge) continue;
+                    double t = time + (level - charge) / power[u] * 3600;
+                    if (labels.dominatedAt(u, t, level)) continue;
+                    queue.insertOrDecrease(labels.add(u, label, t, level, level - charge), t + toGoal[u]);
+                }
+            }
+
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                int v = graph.getTarget(e);
+                if (!policy.allows(graph.getRoadClass(e)) || toGoal[v] == Double.POSITIVE_INFINITY) continue;
+                double left = Math.min(capacity, charge - energy[e]);
+                if (left < 0 || left < needed[v]) continue;
+                double t = time + travelTime[e];
+                if (labels.dominatedAt(v, t, left)) continue;
+                queue.insertOrDecrease(labels.add(v, label, t, left, 0), t + toGoal[v]);
+            }
+        }
+        return Route.EMPTY;
+    }
+
+    /**
+     * Backward Dijkstra over travel times, ignoring the battery.
+     */
+    private double[] timeToGoal(int target) {
+        int n = graph.getNodeCount();
+        double[] dist = new double[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        IndexedMinHeap heap = new IndexedMinHeap(n);
+        dist[target] = 0;
+        heap.insertOrDecrease(target, 0);
+        backward(heap, dist, travelTime);
+        return dist;
+    }
+
+    /**
+     * Backward Dijkstra over energy from the goal and every charging station at once.
+     */
+    private double[] energyToRefuel(int target) {
+        int n = graph.getNodeCount();
+        double[] dist = new double[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        IndexedMinHeap heap = new IndexedMinHeap(n);
+        for (int v = 0; v < n; v++) {
+            if (v == target || power[v] > 0) {
+                dist[v] = 0;
+                heap.insertOrDecrease(v, 0);
+            }
+        }
+        backward(heap, dist, energy);
+        return dist;
+    }
+
+    private void backward(IndexedMinHeap heap, double[] dist, double[] column) {
+        while (!heap.isEmpty()) {
+            int v = heap.poll();
+            for (int i = graph.firstIncoming(v); i < graph.endIncoming(v); i++) {
+                int e = graph.getIncomingEdge(i);
+                if (!policy.allows(graph.getRoadClass(e))) continue;
+                int u = graph.getSource(e);
+                double d = dist[v] + column[e];
+                if (d < dist[u]) {
+                    dist[u] = d;
+                    heap.insertOrDecrease(u, d);
+                }
+            }
+        }
+    }
+
+    /**
+     * Label store of one query in growing primitive arrays, with per node an int-linked
+     * bucket of the labels not dominated there.
+     */
+    private static final class Labels {
+        double[] time = new double[256];
+        double[] charge = new double[256];
+        double[] charged = new double[256]; // energy charged at the label's node, 0 when it arrived by driving
+        int[] node = new int[256];
+        int[] parent = new int[256];
+        int[] nextInBucket = new int[256];
+        boolean[] dead = new boolean[256];
+        final int[] bucket;
+        int size;
+
+        Labels(int nodeCount) {
+            bucket = new int[nodeCount];
+            Arrays.fill(bucket, -1);
+        }
+
+        int add(int v, int from, double t, double c, double added) {
+            if (size == node.length) {
+                int capacity = size * 2;
+                time = Arrays.copyOf(time, capacity);
+                charge = Arrays.copyOf(charge, capacity);
+                charged = Arrays.copyOf(charged, capacity);
+                node = Arrays.copyOf(node, capacity);
+                parent = Arrays.copyOf(parent, capacity);
+                nextInBucket = Arrays.copyOf(nextInBucket, capacity);
+                dead = Arrays.copyOf(dead, capacity);
+            }
+            int label = size++;
+            time[label] = t;
+            charge[label] = c;
+            charged[label] = added;
+            node[label] = v;
+            parent[label] = from;
+            nextInBucket[label] = bucket[v];
+            bucket[v] = label;
+            return label;
+        }
+
+        /**
+         * @return True if a label at the node is as early with as much charge.
+         *         Otherwise drops the node's labels the new one would dominate.
+         */
+        boolean dominatedAt(int v, double t, double c) {
+            int previous = -1;
+            for (int label = bucket[v]; label >= 0; label = nextInBucket[label]) {
+                if (time[label] <= t && charge[label] >= c) {
+                    return true;
+                }
+                if (t <= time[label] && c >= charge[label]) {
+                    dead[label] = true; // still queued, skipped when polled
+                    if (previous < 0) bucket[v] = nextInBucket[label]; else nextInBucket[previous] = nextInBucket[label];
+                } else {
+                    previous = label;
+                }
+            }
+            return false;
+        }
+
+        Route route(int label, CompactGraph graph) {
+            ArrayDeque<Node> nodes = new ArrayDeque<>();
+            ArrayDeque<ChargingStop> stops = new ArrayDeque<>();
+            double chargingTime = 0;
+            for (int l = label; l >= 0; l = parent[l]) {
+                if (charged[l] > 0) {
+                    double duration = time[l] - time[parent[l]];
+                    stops.addFirst(new ChargingStop(graph.getNode(node[l]), charged[l], duration));
+                    chargingTime += duration;
+                } else {
+                    nodes.addFirst(graph.getNode(node[l]));
+                }
+            }
+            return new Route(new ArrayList<>(nodes), new ArrayList<>(stops),
+                    time[label] - chargingTime, chargingTime, charge[label]);
+        }
+    }
+
+    /**
+     * Energy in kWh charged at a station and the seconds it takes.
+     */
+    public static final class ChargingStop {
+        private final Node station;
+        private final double energy;
+        private final double duration;
+
+        ChargingStop(Node station, double energy, double duration) {
+            this.station = station;
+            this.energy = energy;
+            this.duration = duration;
+        }
+
+        public Node getStation() {
+            return station;
+        }
+
+        public double getEnergy() {
+            return energy;
+        }
+
+        public double getDuration() {
+            return duration;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s +%.2fkWh in %.0fs", station.getId(), energy, duration);
+        }
+    }
+
+    /**
+     * A route with its charging stops in driving order; empty when the goal cannot be
+     * reached without stranding.
+     */
+    public static final class Route {
+        public static final Route EMPTY = new Route(Collections.emptyList(), Collections.emptyList(),
+                Double.POSITIVE_INFINITY, 0, 0);
+
+        private final List<Node> nodes;
+        private final List<ChargingStop> stops;
+        private final double drivingTime;
+        private final double chargingTime;
+        private final double arrivalCharge;
+
+        Route(List<Node> nodes, List<ChargingStop> stops, double drivingTime, double chargingTime,
+              double arrivalCharge) {
+            this.nodes = nodes;
+            this.stops = stops;
+            this.drivingTime = drivingTime;
+            this.chargingTime = chargingTime;
+            this.arrivalCharge = arrivalCharge;
+        }
+
+        public List<Node> getNodes() {
+            return nodes;
+        }
+
+        public boolean isEmpty() {
+            return nodes.isEmpty();
+        }
+
+        public List<ChargingStop> getChargingStops() {
+            return stops;
+        }
+
+        public double getDrivingTime() {
+            return drivingTime;
+        }
+
+        public double getChargingTime() {
+            return chargingTime;
+        }
+
+        /**
+         * @return Seconds from departure to arrival, driving and charging.
+         */
+        public double getDuration() {
+            return drivingTime + chargingTime;
+        }
+
+        /**
+         * @return Charge in kWh left at the goal.
+         */
+        public double getArrivalCharge() {
+            return arrivalCharge;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s stops=%s duration=%.0fs", nodes, stops, getDuration());
+        }
+    }
+}
@@ -1,14 +1,20 @@
 package com.drivebot.algorithms;
 
+import com.drivebot.model.CompactGraph;
 import com.drivebot.model.Edge;
 import com.drivebot.model.Graph;
 import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
 
 import java.util.*;
 
 public class BellmanFord {
 
     public static List<Node> findPath(Graph graph, Node start, Node goal) {
+        return findPath(graph, start, goal, RoadClassPolicy.ALLOW_ALL);
+    }
+
+    public static List<Node> findPath(Graph graph, Node start, Node goal, RoadClassPolicy policy) {
         Map<Node, Double> distance = new HashMap<>();
         Map<Node, Node> predecessor = new HashMap<>();
 
@@ -22,6 +28,7 @@ public class BellmanFord {
         for (int i = 1; i < V; i++) {
             for (Node u : graph.getAllNodes()) {
                 for (Edge edge : graph.getEdges(u)) {
+                    if (!policy.allows(edge.getRoadClassCode())) continue;
                     Node v = edge.getTo();
                     double weight = edge.getWeight();
                     if (distance.get(u) + weight < distance.get(v)) {
@@ -34,6 +41,7 @@ public class BellmanFord {
 
         for (Node u : graph.getAllNodes()) {
             for (Edge edge : graph.getEdges(u)) {
+                if (!policy.allows(edge.getRoadClassCode())) continue;
                 Node v = edge.getTo();
                 if (distance.get(u) + edge.getWeight() < distance.get(v)) {
                     throw new RuntimeException("Graph contains a negative weight cycle");
@@ -44,6 +52,54 @@ public class BellmanFord {
         return reconstructPath(predecessor, start, goal);
     }
 
+    public static List<Node> findPath(CompactGraph graph, Node start, Node goal) {
+        return findPath(graph, start, goal, RoadClassPolicy.ALLOW_ALL);
+    }
+
+    public static List<Node> findPath(CompactGraph graph, Node start, Node goal, RoadClassPolicy policy) {
+        int source = graph.getId(start);
+        int target = graph.getId(goal);
+        if (source < 0 || target < 0) {
+            return Collections.emptyList();
+        }
+
+        int V = graph.getNodeCount();
+        double[] distance = new double[V];
+        int[] predecessor = new int[V];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        Arrays.fill(predecessor, -1);
+        distance[source] = 0.0;
+
+        for (int i = 1; i < V; i++) {
+            for (int u = 0; u < V; u++) {
+                if (distance[u] == Double.POSITIVE_INFINITY) continue;
+                for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                    if (!policy.allows(graph.getRoadClass(e))) continue;
+                    int v = graph.getTarget(e);
+                    if (distance[u] + graph.getWeight(e) < distance[v]) {
+                        distance[v] = distance[u] + graph.getWeight(e);
+                        predecessor[v] = u;
+                    }
+                }
+            }
+        }
+
+        for (int u = 0; u < V; u++) {
+            if (distance[u] == Double.POSITIVE_INFINITY) continue;
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                if (!policy.allows(graph.getRoadClass(e))) continue;
+                if (distance[u] + graph.getWeight(e) < distance[graph.getTarget(e)]) {
+                    throw new RuntimeException("Graph contains a negative weight cycle");
+                }
+            }
+        }
+
+        if (distance[target] == Double.POSITIVE_INFINITY) {
+            return Collections.emptyList();
+        }
+        return graph.toPath(predecessor, target);
+    }
+
     private static List<Node> reconstructPath(Map<Node, Node> predecessor, Node start, Node goal) {
         LinkedList<Node> path = new LinkedList<>();
         Node current = goal;
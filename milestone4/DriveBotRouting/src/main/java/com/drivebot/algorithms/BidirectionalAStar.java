@@ -0,0 +1,237 @@
+package com.drivebot.algorithms;
+
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Edge;
+import com.drivebot.model.Graph;
+import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
+import com.drivebot.utils.Heuristic;
+
+import java.util.*;
+
+/**
+ * Bidirectional A* with the symmetric (average) potential
+ * {@code p(v) = (h(v, goal) - h(start, v)) / 2}. The forward search orders nodes by
+ * {@code g(v) + p(v)}, the backward search over incoming edges by {@code g'(v) - p(v)};
+ * with a consistent heuristic both see non-negative reduced costs, and the search can
+ * stop as soon as the two smallest keys add up to the best path found so far.
+ * With {@link com.drivebot.utils.ZeroHeuristic} this is plain bidirectional Dijkstra.
+ */
+public final class BidirectionalAStar {
+
+    private BidirectionalAStar() {}
+
+    public static List<Node> findPath(Graph graph, Node start, Node goal, Heuristic heuristic) {
+        return findPath(graph, start, goal, heuristic, RoadClassPolicy.ALLOW_ALL);
+    }
+
+    public static List<Node> findPath(Graph graph, Node start, Node goal,
+                                      Heuristic heuristic, RoadClassPolicy policy) {
+        Map<Node, Integer> index = new HashMap<>();
+        Node[] nodes = new Node[graph.getAllNodes().size()];
+        for (Node node : graph.getAllNodes()) {
+            nodes[index.size()] = node;
+            index.put(node, index.size());
+        }
+        Integer source = index.get(start);
+        Integer target = index.get(goal);
+        if (source == null || target == null) {
+            return Collections.emptyList();
+        }
+
+        int n = nodes.length;
+        Search search = new Search(n);
+        search.start(source, target, potential(heuristic, start, goal, start));
+
+        while (!search.finished()) {
+            if (search.forwardNext()) {
+                int u = search.forward.poll();
+                search.forwardSettled[u] = true;
+                for (Edge edge : graph.getEdges(nodes[u])) {
+                    if (!policy.allows(edge.getRoadClassCode())) continue;
+                    int v = index.get(edge.getTo());
+                    if (search.forwardSettled[v]) continue;
+                    if (search.needsPotential(v)) search.potential[v] = potential(heuristic, start, goal, nodes[v]);
+                    search.relaxForward(u, v, edge.getWeight());
+                }
+            } else {
+                int u = search.backward.poll();
+                search.backwardSettled[u] = true;
+                for (Edge edge : graph.getIncomingEdges(nodes[u])) {
+                    if (!policy.allows(edge.getRoadClassCode())) continue;
+                    int v = index.get(edge.getFrom());
+                    if (search.backwardSettled[v]) continue;
+                    if (search.needsPotential(v)) search.potential[v] = potential(heuristic, start, goal, nodes[v]);
+                    search.relaxBackward(u, v, edge.getWeight());
+                }
+            }
+        }
+        return search.path(nodes);
+    }
+
+    public static List<Node> findPath(CompactGraph graph, Node start, Node goal, Heuristic heuristic) {
+        return findPath(graph, start, goal, heuristic, RoadClassPolicy.ALLOW_ALL, new SearchStats());
+    }
+
+    public static List<Node> findPath(CompactGraph graph, Node start, Node goal, Heuristic heuristic,
+                                      RoadClassPolicy policy, SearchStats stats) {
+        int source = graph.getId(start);
+        int target = graph.getId(goal);
+        if (source < 0 || target < 0) {
+            return Collections.emptyList();
+        }
+
+        Search search = new Search(graph.getNodeCount());
+        search.start(source, target, potential(heuristic, graph, source, target, source));
+
+        while (!search.finished()) {
+            if (search.forwardNext()) {
+                int u = search.forward.poll();
+                search.forwardSettled[u] = true;
+                stats.nodeSettled();
+                for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                    int v = graph.getTarget(e);
+                    if (search.forwardSettled[v] || !policy.allows(graph.getRoadClass(e))) continue;
+                    stats.edgeRelaxed();
+                    if (search.needsPotential(v)) search.potential[v] = potential(heuristic, graph, source, target, v);
+                    search.relaxForward(u, v, graph.getWeight(e));
+                }
+            } else {
+                int u = search.backward.poll();
+                search.backwardSettled[u] = true;
+                stats.nodeSettled();
+                for (int i = graph.firstIncoming(u); i < graph.endIncoming(u); i++) {
+                    int e = graph.getIncomingEdge(i);
+                    int v = graph.getSource(e);
+                    if (search.backwardSettled[v] || !policy.allows(graph.getRoadClass(e))) continue;
+                    stats.edgeRelaxed();
+                    if (search.needsPotential(v)) search.potential[v] = potential(heuristic, graph, source, target, v);
+                    search.relaxBackward(u, v, graph.getWeight(e));
+                }
+            }
+        }
+        stats.heapUsed(search.forward);
+        stats.heapUsed(search.backward);
+        return search.path(graph);
+    }
+
+    private static double potential(Heuristic heuristic, Node start, Node goal, Node v) {
+        return (heuristic.estimate(v, goal) - heuristic.estimate(start, v)) / 2;
+    }
+
+    private static double potential(Heuristic heuristic, CompactGraph graph, int start, int goal, int v) {
+        return (heuristic.estimate(graph, v, goal) - heuristic.estimate(graph, start, v)) / 2;
+    }
+
+    /**
+     * State of both directions; the graph-specific loops above only feed it edges.
+     */
+    private static final class Search {
+        final double[] forwardDist;
+        final double[] backwardDist;
+        final double[] potential;
+        final int[] forwardPrev;
+        final int[] backwardNext;
+        final boolean[] forwardSettled;
+        final boolean[] backwardSettled;
+        final IndexedMinHeap forward;
+        final IndexedMinHeap backward;
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+
+        Search(int n) {
+            forwardDist = new double[n];
+            backwardDist = new double[n];
+            potential = new double[n];
+            forwardPrev = new int[n];
+            backwardNext = new int[n];
+            forwardSettled = new boolean[n];
+            backwardSettled = new boolean[n];
+            Arrays.fill(forwardDist, Double.POSITIVE_INFINITY);
+            Arrays.fill(backwardDist, Double.POSITIVE_INFINITY);
+            Arrays.fill(potential, Double.NaN);
+            Arrays.fill(forwardPrev, -1);
+            Arrays.fill(backwardNext, -1);
+            forward = new IndexedMinHeap(n);
+            backward = new IndexedMinHeap(n);
+        }
+
+        void start(int source, int target, double sourcePotential) {
+            potential[source] = sourcePotential;
+            forwardDist[source] = 0;
+            forward.insertOrDecrease(source, sourcePotential);
+            if (source == target) {
+                best = 0;
+                meeting = source;
+                return;
+            }
+            potential[target] = -sourcePotential; // p(goal) = -p(start) for the average potential
+            backwardDist[target] = 0;
+            backward.insertOrDecrease(target, -potential[target]);
+        }
+
+        boolean finished() {
+            if (forward.isEmpty() || backward.isEmpty()) return true;
+            return forward.peekKey() + backward.peekKey() >= best;
+        }
+
+        boolean forwardNext() {
+            return forward.size() <= backward.size();
+        }
+
+        boolean needsPotential(int v) {
+            return Double.isNaN(potential[v]);
+        }
+
+        void relaxForward(int u, int v, double weight) {
+            double d = forwardDist[u] + weight;
+            if (d < forwardDist[v]) {
+                forwardDist[v] = d;
+                forwardPrev[v] = u;
+                forward.insertOrDecrease(v, d + potential[v]);
+                if (d + backwardDist[v] < best) {
+                    best = d + backwardDist[v];
+                    meeting = v;
+                }
+            }
+        }
+
+        void relaxBackward(int u, int v, double weight) {
+            double d = backwardDist[u] + weight;
+            if (d < backwardDist[v]) {
+                backwardDist[v] = d;
+                backwardNext[v] = u;
+                backward.insertOrDecrease(v, d - potential[v]);
+                if (forwardDist[v] + d < best) {
+                    best = forwardDist[v] + d;
+                    meeting = v;
+                }
+            }
+        }
+
+        List<Node> path(Node[] nodes) {
+            if (meeting < 0) return Collections.emptyList();
+            List<Node> path = new ArrayList<>();
+            for (int v : order()) path.add(nodes[v]);
+            return path;
+        }
+
+        List<Node> path(CompactGraph graph) {
+            if (meeting < 0) return Collections.emptyList();
+            List<Node> path = new ArrayList<>();
+            for (int v : order()) path.add(graph.getNode(v));
+            return path;
+        }
+
+        private List<Integer> order() {
+            ArrayDeque<Integer> ids = new ArrayDeque<>();
+            for (int v = meeting; v != -1; v = forwardPrev[v]) {
+                ids.addFirst(v);
+            }
+            for (int v = backwardNext[meeting]; v != -1; v = backwardNext[v]) {
+                ids.addLast(v);
+            }
+            return new ArrayList<>(ids);
+        }
+    }
+}
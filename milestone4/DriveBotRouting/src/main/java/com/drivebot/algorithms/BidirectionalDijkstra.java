@@ -0,0 +1,38 @@
+package com.drivebot.algorithms;
+
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Graph;
+import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
+import com.drivebot.utils.ZeroHeuristic;
+
+import java.util.List;
+
+/**
+ * Dijkstra from both ends at once: forwards from the start over outgoing edges and
+ * backwards from the goal over incoming edges, stopping once the two frontiers'
+ * smallest distances add up to the best meeting path.
+ */
+public final class BidirectionalDijkstra {
+
+    private static final ZeroHeuristic NO_POTENTIAL = new ZeroHeuristic();
+
+    private BidirectionalDijkstra() {}
+
+    public static List<Node> findPath(Graph graph, Node start, Node goal) {
+        return BidirectionalAStar.findPath(graph, start, goal, NO_POTENTIAL, RoadClassPolicy.ALLOW_ALL);
+    }
+
+    public static List<Node> findPath(Graph graph, Node start, Node goal, RoadClassPolicy policy) {
+        return BidirectionalAStar.findPath(graph, start, goal, NO_POTENTIAL, policy);
+    }
+
+    public static List<Node> findPath(CompactGraph graph, Node start, Node goal) {
+        return BidirectionalAStar.findPath(graph, start, goal, NO_POTENTIAL);
+    }
+
+    public static List<Node> findPath(CompactGraph graph, Node start, Node goal,
+                                      RoadClassPolicy policy, SearchStats stats) {
+        return BidirectionalAStar.findPath(graph, start, goal, NO_POTENTIAL, policy, stats);
+    }
+}
@@ -1,54 +1,125 @@
 package com.drivebot.algorithms;
 
+import com.drivebot.model.CompactGraph;
 import com.drivebot.model.Edge;
 import com.drivebot.model.Graph;
 import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
 
 import java.util.*;
 
 public class Dijkstra {
 
     public static List<Node> findPath(Graph graph, Node start, Node goal) {
-        Map<Node, Double> dist = new HashMap<>();
-        Map<Node, Node> prev = new HashMap<>();
-        PriorityQueue<Node> pq = new PriorityQueue<>(Comparator.comparingDouble(dist::get));
+        return findPath(graph, start, goal, RoadClassPolicy.ALLOW_ALL);
+    }
 
+    public static List<Node> findPath(Graph graph, Node start, Node goal, RoadClassPolicy policy) {
+        Map<Node, Integer> index = new HashMap<>();
+        Node[] nodes = new Node[graph.getAllNodes().size()];
         for (Node node : graph.getAllNodes()) {
-            dist.put(node, Double.POSITIVE_INFINITY);
+            nodes[index.size()] = node;
+            index.put(node, index.size());
+        }
+        Integer source = index.get(start);
+        Integer target = index.get(goal);
+        if (source == null || target == null) {
+            return Collections.emptyList();
         }
-        dist.put(start, 0.0);
 
-        pq.add(start);
+        double[] dist = new double[nodes.length];
+        int[] prev = new int[nodes.length];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(prev, -1);
+        IndexedMinHeap pq = new IndexedMinHeap(nodes.length);
+
+        dist[source] = 0.0;
+        pq.insertOrDecrease(source, 0.0);
 
         while (!pq.isEmpty()) {
-            Node current = pq.poll();
+            int current = pq.poll();
+
+            if (current == target) {
+                return reconstructPath(nodes, prev, target);
+            }
+
+            for (Edge edge : graph.getEdges(nodes[current])) {
+                if (!policy.allows(edge.getRoadClassCode())) continue;
+                int neighbor = index.get(edge.getTo());
+                double newDist = dist[current] + edge.getWeight();
+
+                if (newDist < dist[neighbor]) {
+                    dist[neighbor] = newDist;
+                    prev[neighbor] = current;
+                    pq.insertOrDecrease(neighbor, newDist);
+                }
+            }
+        }
+
+        return Collections.emptyList();
+    }
+
+    public static List<Node> findPath(CompactGraph graph, Node start, Node goal) {
+        return findPath(graph, start, goal, RoadClassPolicy.ALLOW_ALL);
+    }
+
+    public static List<Node> findPath(CompactGraph graph, Node start, Node goal, RoadClassPolicy policy) {
+        return findPath(graph, start, goal, policy, new SearchStats());
+    }
 
-            if (current.equals(goal)) {
-                return reconstructPath(prev, goal);
+    public static List<Node> findPath(CompactGraph graph, Node start, Node goal,
+                                      RoadClassPolicy policy, SearchStats stats) {
+        int source = graph.getId(start);
+        int target = graph.getId(goal);
+        if (source < 0 || target < 0) {
+            return Collections.emptyList();
+        }
+
+        int n = graph.getNodeCount();
+        double[] dist = new double[n];
+        int[] prev = new int[n];
+        boolean[] settled = new boolean[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(prev, -1);
+        IndexedMinHeap pq = new IndexedMinHeap(n);
+
+        dist[source] = 0.0;
+        pq.insertOrDecrease(source, 0.0);
+
+        while (!pq.isEmpty()) {
+            int current = pq.poll();
+            stats.nodeSettled();
+            if (current == target) {
+                stats.heapUsed(pq);
+                return graph.toPath(prev, target);
             }
+            settled[current] = true;
 
-            for (Edge edge : graph.getEdges(current)) {
-                Node neighbor = edge.getTo();
-                double newDist = dist.get(current) + edge.getWeight();
+            for (int e = graph.firstEdge(current); e < graph.endEdge(current); e++) {
+                int neighbor = graph.getTarget(e);
+                if (settled[neighbor] || !policy.allows(graph.getRoadClass(e))) continue;
+                stats.edgeRelaxed();
+                double newDist = dist[current] + graph.getWeight(e);
 
-                if (newDist < dist.get(neighbor)) {
-                    dist.put(neighbor, newDist);
-                    prev.put(neighbor, current);
-                    pq.add(neighbor);
+                if (newDist < dist[neighbor]) {
+                    dist[neighbor] = newDist;
+                    prev[neighbor] = current;
+                    pq.insertOrDecrease(neighbor, newDist);
                 }
             }
         }
 
+        stats.heapUsed(pq);
         return Collections.emptyList();
     }
 
-    private static List<Node> reconstructPath(Map<Node, Node> prev, Node goal) {
+    private static List<Node> reconstructPath(Node[] nodes, int[] prev, int goal) {
         List<Node> path = new LinkedList<>();
-        Node current = goal;
+        int current = goal;
 
-        while (current != null) {
-            path.add(0, current);
-            current = prev.get(current);
+        while (current != -1) {
+            path.add(0, nodes[current]);
+            current = prev[current];
         }
         return path;
     }
@@ -0,0 +1,502 @@
+package com.drivebot.algorithms;
+
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Edge;
+import com.drivebot.model.Graph;
+import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
+import com.drivebot.model.WeightChangeListener;
+import com.drivebot.utils.Heuristic;
+
+import java.util.*;
+
+/**
+ * D* Lite replanning for vehicles already en route. Every vehicle keeps the state of a
+ * backward search from its goal: {@code g} and {@code rhs} values for the nodes the search
+ * has touched, in primitive arrays behind a small int-keyed hash, so a vehicle costs
+ * memory proportional to its search and not to the graph.
+ * <p>
+ * The planner listens to its graph. Weight changes reported by
+ * {@link com.drivebot.utils.GraphUpdater} are queued and applied by {@link #repair()},
+ * which only revisits vehicles whose search touched a changed edge and only re-expands
+ * the part of their search the change invalidates. Vehicles are repaired in parallel.
+ * Edits to the graph's structure fall back to planning every vehicle from scratch.
+ * <p>
+ * D* Lite needs non-negative weights. An edge with a negative weight (a subsidy) is treated
+ * as closed and reported by {@link #getLastRejectedEdges()}; the rest of the changes are
+ * applied as usual.
+ * <p>
+ * Vehicles and {@link #repair()} must be used from one thread (the dispatch loop); only
+ * the change notifications may arrive from another one.
+ */
+public final class IncrementalPlanner implements WeightChangeListener {
+    private final Graph graph;
+    private final Heuristic heuristic;
+    private final RoadClassPolicy policy;
+    private final List<Vehicle> vehicles = new ArrayList<>();
+    private final Map<Edge, Double> pendingChanges = new LinkedHashMap<>();
+    private final List<Edge> rejected = new ArrayList<>();
+
+    private CompactGraph snapshot;
+    private double[] weights; // current weight of every snapshot edge, +infinity when the policy forbids it or it is negative
+    private int lastRepaired;
+
+    /**
+     * @param heuristic Consistent lower bound on the cost between two nodes, or null for none.
+     */
+    public IncrementalPlanner(Graph graph, Heuristic heuristic, RoadClassPolicy policy) {
+        this.graph = graph;
+        this.heuristic = heuristic;
+        this.policy = policy;
+        load(CompactGraph.of(graph));
+        graph.addWeightChangeListener(this);
+    }
+
+    /**
+     * Stops following the graph's weight changes.
+     */
+    public void detach() {
+        graph.removeWeightChangeListener(this);
+    }
+
+    @Override
+    public void onWeightChanged(Edge edge, double oldWeight, double newWeight) {
+        synchronized (pendingChanges) {
+            pendingChanges.put(edge, newWeight);
+        }
+    }
+
+    /**
+     * Plans a route for a new vehicle.
+     */
+    public Vehicle addVehicle(Node position, Node goal) {
+        Vehicle vehicle = new Vehicle(snapshot.getId(position), snapshot.getId(goal));
+        vehicles.add(vehicle);
+        vehicle.computeShortestPath();
+        return vehicle;
+    }
+
+    public void removeVehicle(Vehicle vehicle) {
+        vehicles.remove(vehicle);
+    }
+
+    /**
+     * Applies the weight changes received since the last call and repairs the plans they affect.
+     * Edges a change makes negative are closed until a later change makes them usable again.
+     * @return Number of vehicles whose search had to be repaired.
+     */
+    public int repair() {
+        Map<Edge, Double> changes;
+        synchronized (pendingChanges) {
+            changes = new LinkedHashMap<>(pendingChanges);
+            pendingChanges.clear();
+        }
+        rejected.clear();
+
+        if (graph.getStructureVersion() != snapshot.getStructureVersion()) {
+            load(CompactGraph.of(graph));
+            for (Vehicle vehicle : vehicles) {
+                vehicle.rebase();
+            }
+            vehicles.parallelStream().forEach(Vehicle::computeShortestPath);
+            lastRepaired = vehicles.size();
+            return lastRepaired;
+        }
+
+        int[] changed = new int[changes.size()];
+        int count = 0;
+        for (Map.Entry<Edge, Double> change : changes.entrySet()) {
+            int e = snapshot.getEdgeId(change.getKey());
+            if (e < 0) continue;
+            weights[e] = usableWeight(e, change.getValue());
+            changed[count++] = e;
+        }
+        if (count == 0) {
+            lastRepaired = 0;
+            return 0;
+        }
+        int[] edges = Arrays.copyOf(changed, count);
+        List<Vehicle> affected = new ArrayList<>();
+        for (Vehicle vehicle : vehicles) {
+            if (vehicle.touchesAny(edges)) affected.add(vehicle);
+        }
+        affected.parallelStream().forEach(vehicle -> vehicle.onEdgesChanged(edges));
+        lastRepaired = affected.size();
+        return lastRepaired;
+    }
+
+    public int getLastRepairedCount() {
+        return lastRepaired;
+    }
+
+    /**
+     * @return Edges the last {@link #repair()} (or the constructor) closed because their weight was negative.
+     */
+    public List<Edge> getLastRejectedEdges() {
+        return Collections.unmodifiableList(new ArrayList<>(rejected));
+    }
+
+    public int getVehicleCount() {
+        return vehicles.size();
+    }
+
+    private void load(CompactGraph compact) {
+        snapshot = compact;
+        weights = compact.copyWeights();
+        for (int e = 0; e < weights.length; e++) {
+            weights[e] = usableWeight(e, weights[e]);
+        }
+    }
+
+    /**
+     * @return The weight the searches see: +infinity for edges the policy forbids and for
+     *         negative ones, which are recorded as rejected.
+     */
+    private double usableWeight(int e, double weight) {
+        if (!policy.allows(snapshot.getRoadClass(e))) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (weight < 0) {
+            rejected.add(snapshot.getEdge(e));
+            return Double.POSITIVE_INFINITY;
+        }
+        return weight;
+    }
+
+    private double estimate(int from, int to) {
+        return heuristic == null || from < 0 ? 0.0 : heuristic.estimate(snapshot, from, to);
+    }
+
+    /**
+     * One vehicle's D* Lite state. The search runs from the goal towards the vehicle, so
+     * moving the vehicle keeps every value valid and only shifts the key offset {@code km}.
+     */
+    public final class Vehicle {
+        private Node positionNode;
+        private Node goalNode;
+        private int start;
+        private int goal;
+        private int lastStart;
+        private double km;
+        private long expanded;
+
+        // Local slot per touched node: open-addressing table from node id + 1 to slot
+        private int[] table = new int[64];
+        private int[] slotNode = new int[32];
+        private double[] g = new double[32];
+        private double[] rhs = new double[32];
+        private int slots;
+
+        // Indexed binary heap over slots with lexicographic (k1, k2) keys
+        private int[] heap = new int[32];
+        private int[] heapPos = new int[32];
+        private double[] key1 = new double[32];
+        private double[] key2 = new double[32];
+        private int heapSize;
+
+        Vehicle(int start, int goal) {
+            this.start = start;
+            this.goal = goal;
+            this.lastStart = start;
+            this.positionNode = start < 0 ? null : snapshot.getNode(start);
+            this.goalNode = goal < 0 ? null : snapshot.getNode(goal);
+            reset();
+        }
+
+        public Node getPosition() {
+            return positionNode;
+        }
+
+        public Node getGoal() {
+            return goalNode;
+        }
+
+        /**
+         * @return Cost of the planned route from the current position, infinity if there is none.
+         */
+        public double getCost() {
+            return start < 0 || goal < 0 ? Double.POSITIVE_INFINITY : gOf(start);
+        }
+
+        /**
+         * @return Nodes expanded by this vehicle's searches so far, initial plan included.
+         */
+        public long getExpandedCount() {
+            return expanded;
+        }
+
+        /**
+         * @return The planned route from the current position to the goal, empty if there is none.
+         */
+        public List<Node> getRoute() {
+            if (getCost() == Double.POSITIVE_INFINITY) {
+                return Collections.emptyList();
+            }
+            List<Node> route = new ArrayList<>();
+            int current = start;
+            route.add(snapshot.getNode(current));
+            for (int steps = 0; current != goal && steps < snapshot.getNodeCount(); steps++) {
+                int best = -1;
+                double bestCost = Double.POSITIVE_INFINITY;
+                for (int e = snapshot.firstEdge(current); e < snapshot.endEdge(current); e++) {
+                    double cost = weights[e] + gOf(snapshot.getTarget(e));
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        best = snapshot.getTarget(e);
+                    }
+                }
+                if (best < 0) return Collections.emptyList();
+                current = best;
+                route.add(snapshot.getNode(current));
+            }
+            return route;
+        }
+
+        /**
+         * Moves the vehicle to a node, normally the next one on its route, and replans from there.
+         */
+        public void moveTo(Node position) {
+            int id = snapshot.getId(position);
+            positionNode = position;
+            if (id < 0) {
+                start = -1;
+                return;
+            }
+            km += estimate(lastStart, id);
+            lastStart = id;
+            start = id;
+            computeShortestPath();
+        }
+
+        boolean touchesAny(int[] edges) {
+            for (int e : edges) {
+                if (find(snapshot.getSource(e)) >= 0) return true;
+            }
+            return false;
+        }
+
+        void onEdgesChanged(int[] edges) {
+            if (start < 0 || goal < 0) return;
+            for (int e : edges) {
+                int u = snapshot.getSource(e);
+                int slot = find(u);
+                if (slot < 0 || u == goal) continue; // never reached by the search: nothing to repair
+                rhs[slot] = bestSuccessor(u);
+                updateVertex(slot);
+            }
+            km += estimate(lastStart, start);
+            lastStart = start;
+            computeShortestPath();
+        }
+
+        /**
+         * Forgets the search after the planner switched to a new snapshot.
+         */
+        void rebase() {
+            start = positionNode == null ? -1 : snapshot.getId(positionNode);
+            goal = goalNode == null ? -1 : snapshot.getId(goalNode);
+            lastStart = start;
+            km = 0;
+            reset();
+        }
+
+        void computeShortestPath() {
+            if (start < 0 || goal < 0) return;
+            int startSlot = slot(start);
+            while (heapSize > 0) {
+                int top = heap[0];
+                double topKey1 = key1[top];
+                double topKey2 = key2[top];
+                double startKey2 = Math.min(g[startSlot], rhs[startSlot]);
+                double startKey1 = startKey2 + km;
+                boolean beforeStart = topKey1 < startKey1 || (topKey1 == startKey1 && topKey2 < startKey2);
+                if (!beforeStart && rhs[startSlot] == g[startSlot]) break;
+
+                int u = slotNode[top];
+                double newKey2 = Math.min(g[top], rhs[top]);
+                double newKey1 = newKey2 + estimate(start, u) + km;
+                if (topKey1 < newKey1 || (topKey1 == newKey1 && topKey2 < newKey2)) {
+                    update(top, newKey1, newKey2);
+                } else if (g[top] > rhs[top]) {
+                    expanded++;
+                    g[top] = rhs[top];
+                    remove(top);
+                    for (int i = snapshot.firstIncoming(u); i < snapshot.endIncoming(u); i++) {
+                        int e = snapshot.getIncomingEdge(i);
+                        int s = snapshot.getSource(e);
+                        if (weights[e] == Double.POSITIVE_INFINITY || s == goal) continue;
+                        int sSlot = slot(s); // may grow the arrays, slot ids stay valid
+                        double through = weights[e] + g[top];
+                        if (through < rhs[sSlot]) {
+                            rhs[sSlot] = through;
+                            updateVertex(sSlot);
+                        }
+                    }
+                } else {
+                    expanded++;
+                    double oldG = g[top];
+                    g[top] = Double.POSITIVE_INFINITY;
+                    updateVertex(top);
+                    // Predecessors whose best successor was u look for a new one
+                    for (int i = snapshot.firstIncoming(u); i < snapshot.endIncoming(u); i++) {
+                        int e = snapshot.getIncomingEdge(i);
+                        int s = snapshot.getSource(e);
+                        if (s == goal) continue;
+                        int sSlot = find(s);
+                        if (sSlot < 0) continue;
+                        if (rhs[sSlot] == weights[e] + oldG) {
+                            rhs[sSlot] = bestSuccessor(s);
+                            updateVertex(sSlot);
+                        }
+                    }
+                }
+            }
+        }
+
+        private double bestSuccessor(int u) {
+            double best = Double.POSITIVE_INFINITY;
+            for (int e = snapshot.firstEdge(u); e < snapshot.endEdge(u); e++) {
+                best = Math.min(best, weights[e] + gOf(snapshot.getTarget(e)));
+            }
+            return best;
+        }
+
+        private void updateVertex(int slot) {
+            if (g[slot] != rhs[slot]) {
+                double k2 = Math.min(g[slot], rhs[slot]);
+                double k1 = k2 + estimate(start, slotNode[slot]) + km;
+                if (heapPos[slot] >= 0) update(slot, k1, k2); else insert(slot, k1, k2);
+            } else if (heapPos[slot] >= 0) {
+                remove(slot);
+            }
+        }
+
+        private void reset() {
+            Arrays.fill(table, 0);
+            slots = 0;
+            heapSize = 0;
+            if (start < 0 || goal < 0) return;
+            int goalSlot = slot(goal);
+            rhs[goalSlot] = 0;
+            insert(goalSlot, estimate(start, goal), 0);
+        }
+
+        private double gOf(int node) {
+            int slot = find(node);
+            return slot < 0 ? Double.POSITIVE_INFINITY : g[slot];
+        }
+
+        private int find(int node) {
+            int mask = table.length - 1;
+            for (int i = mix(node) & mask; ; i = (i + 1) & mask) {
+                int entry = table[i];
+                if (entry == 0) return -1;
+                if (slotNode[entry - 1] == node) return entry - 1;
+            }
+        }
+
+        /**
+         * @return The node's slot, creating it with g = rhs = infinity on first touch.
+         */
+        private int slot(int node) {
+            int found = find(node);
+            if (found >= 0) return found;
+            if (slots == slotNode.length) {
+                int capacity = slots * 2;
+                slotNode = Arrays.copyOf(slotNode, capacity);
+                g = Arrays.copyOf(g, capacity);
+                rhs = Arrays.copyOf(rhs, capacity);
+                heap = Arrays.copyOf(heap, capacity);
+                heapPos = Arrays.copyOf(heapPos, capacity);
+                key1 = Arrays.copyOf(key1, capacity);
+                key2 = Arrays.copyOf(key2, capacity);
+            }
+            int created = slots++;
+            slotNode[created] = node;
+            g[created] = Double.POSITIVE_INFINITY;
+            rhs[created] = Double.POSITIVE_INFINITY;
+            heapPos[created] = -1;
+            if (2 * slots > table.length) {
+                rehash(table.length * 2);
+            } else {
+                put(created);
+            }
+            return created;
+        }
+
+        private void rehash(int capacity) {
+            table = new int[capacity];
+            for (int s = 0; s < slots; s++) put(s);
+        }
+
+        private void put(int slot) {
+            int mask = table.length - 1;
+            int i = mix(slotNode[slot]) & mask;
+            while (table[i] != 0) i = (i + 1) & mask;
+            table[i] = slot + 1;
+        }
+
+        private int mix(int node) {
+            return node * 0x9E3779B9 >>> 7;
+        }
+
+        private boolean less(int a, int b) {
+            return key1[a] < key1[b] || (key1[a] == key1[b] && key2[a] < key2[b]);
+        }
+
+        private void insert(int slot, double k1, double k2) {
+            key1[slot] = k1;
+            key2[slot] = k2;
+            heap[heapSize] = slot;
+            heapPos[slot] = heapSize;
+            siftUp(heapSize++);
+        }
+
+        private void update(int slot, double k1, double k2) {
+            key1[slot] = k1;
+            key2[slot] = k2;
+            siftUp(heapPos[slot]);
+            siftDown(heapPos[slot]);
+        }
+
+        private void remove(int slot) {
+            int position = heapPos[slot];
+            heapPos[slot] = -1;
+            int last = heap[--heapSize];
+            if (position < heapSize) {
+                heap[position] = last;
+                heapPos[last] = position;
+                siftUp(position);
+                siftDown(heapPos[last]);
+            }
+        }
+
+        private void siftUp(int position) {
+            int slot = heap[position];
+            while (position > 0) {
+                int parent = (position - 1) / 2;
+                if (!less(slot, heap[parent])) break;
+                heap[position] = heap[parent];
+                heapPos[heap[position]] = position;
+                position = parent;
+            }
+            heap[position] = slot;
+            heapPos[slot] = position;
+        }
+
+        private void siftDown(int position) {
+            int slot = heap[position];
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= heapSize) break;
+                if (child + 1 < heapSize && less(heap[child + 1], heap[child])) child++;
+                if (!less(heap[child], slot)) break;
+                heap[position] = heap[child];
+                heapPos[heap[position]] = position;
+                position = child;
+            }
+            heap[position] = slot;
+            heapPos[slot] = position;
+        }
+    }
+}
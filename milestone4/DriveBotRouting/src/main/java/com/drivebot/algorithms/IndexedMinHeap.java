@@ -0,0 +1,173 @@
+package com.drivebot.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * 4-ary min-heap over int ids in {@code [0, capacity)} with primitive double keys
+ * and real decrease-key. Every id is in the heap at most once, so there are no
+ * stale entries and no boxed map lookups during comparisons.
+ */
+public final class IndexedMinHeap {
+    private static final int ARITY = 4;
+
+    private int[] heap;       // heap slot -> id
+    private int[] position;   // id -> heap slot, -1 when not queued
+    private double[] keys;    // id -> key
+    private int size;
+
+    private long pushes;
+    private long decreases;
+    private long pops;
+
+    public IndexedMinHeap(int capacity) {
+        heap = new int[Math.max(capacity, 1)];
+        position = new int[Math.max(capacity, 1)];
+        keys = new double[Math.max(capacity, 1)];
+        Arrays.fill(position, -1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int id) {
+        return id < position.length && position[id] >= 0;
+    }
+
+    public double getKey(int id) {
+        return keys[id];
+    }
+
+    /**
+     * Inserts the id, or lowers its key if it is already queued with a larger key.
+     * @return true if the heap changed.
+     */
+    public boolean insertOrDecrease(int id, double key) {
+        if (id >= position.length) {
+            grow(id + 1);
+        }
+        int slot = position[id];
+        if (slot < 0) {
+            keys[id] = key;
+            heap[size] = id;
+            position[id] = size;
+            siftUp(size++);
+            pushes++;
+            return true;
+        }
+        if (key < keys[id]) {
+            keys[id] = key;
+            siftUp(slot);
+            decreases++;
+            return true;
+        }
+        return false;
+    }
+
+    public int peek() {
+        return heap[0];
+    }
+
+    public double peekKey() {
+        return keys[heap[0]];
+    }
+
+    /**
+     * Removes and returns the id with the smallest key.
+     */
+    public int poll() {
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size > 0) {
+            int last = heap[size];
+            heap[0] = last;
+            position[last] = 0;
+            siftDown(0);
+        }
+        pops++;
+        return top;
+    }
+
+    /**
+     * Empties the heap in O(size), keeping the allocated arrays for reuse.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    public long getPushCount() {
+        return pushes;
+    }
+
+    public long getDecreaseKeyCount() {
+        return decreases;
+    }
+
+    public long getPopCount() {
+        return pops;
+    }
+
+    public void resetCounters() {
+        pushes = 0;
+        decreases = 0;
+        pops = 0;
+    }
+
+    private void siftUp(int slot) {
+        int id = heap[slot];
+        double key = keys[id];
+        while (slot > 0) {
+            int parentSlot = (slot - 1) / ARITY;
+            int parent = heap[parentSlot];
+            if (keys[parent] <= key) break;
+            heap[slot] = parent;
+            position[parent] = slot;
+            slot = parentSlot;
+        }
+        heap[slot] = id;
+        position[id] = slot;
+    }
+
+    private void siftDown(int slot) {
+        int id = heap[slot];
+        double key = keys[id];
+        while (true) {
+            int firstChild = slot * ARITY + 1;
+            if (firstChild >= size) break;
+            int lastChild = Math.min(firstChild + ARITY, size);
+            int best = firstChild;
+            double bestKey = keys[heap[firstChild]];
+            for (int c = firstChild + 1; c < lastChild; c++) {
+                double childKey = keys[heap[c]];
+                if (childKey < bestKey) {
+                    best = c;
+                    bestKey = childKey;
+                }
+            }
+            if (bestKey >= key) break;
+            int child = heap[best];
+            heap[slot] = child;
+            position[child] = slot;
+            slot = best;
+        }
+        heap[slot] = id;
+        position[id] = slot;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, position.length * 2);
+        int old = position.length;
+        heap = Arrays.copyOf(heap, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        position = Arrays.copyOf(position, capacity);
+        Arrays.fill(position, old, capacity, -1);
+    }
+}
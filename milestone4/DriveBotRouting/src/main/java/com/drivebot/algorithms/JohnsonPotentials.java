@@ -0,0 +1,102 @@
+package com.drivebot.algorithms;
+
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
+
+import java.util.*;
+
+/**
+ * Johnson's reweighting for graphs with negative edges (social subsidies). One
+ * {@link Spfa} pass from a virtual source joined to every node gives potentials
+ * {@code h} with {@code w(u,v) + h(u) - h(v) >= 0} on every allowed edge; after that,
+ * every query is a plain Dijkstra over those reduced weights and the shortest paths are
+ * the same as under the original ones.
+ * <p>
+ * Compute once per weight snapshot and reuse for every query on it. Immutable and safe
+ * to share between threads.
+ */
+public final class JohnsonPotentials {
+    private final CompactGraph graph;
+    private final RoadClassPolicy policy;
+    private final double[] potential;
+
+    private JohnsonPotentials(CompactGraph graph, RoadClassPolicy policy, double[] potential) {
+        this.graph = graph;
+        this.policy = policy;
+        this.potential = potential;
+    }
+
+    /**
+     * @throws RuntimeException If the allowed edges contain a negative weight cycle.
+     */
+    public static JohnsonPotentials compute(CompactGraph graph, RoadClassPolicy policy) {
+        return new JohnsonPotentials(graph, policy, Spfa.fromVirtualSource(graph, policy));
+    }
+
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    public double getPotential(int node) {
+        return potential[node];
+    }
+
+    /**
+     * @return The non-negative reduced weight of the edge.
+     */
+    public double getReducedWeight(int edge) {
+        double reduced = graph.getWeight(edge) + potential[graph.getSource(edge)] - potential[graph.getTarget(edge)];
+        return Math.max(0.0, reduced); // rounding can leave tight edges a hair below zero
+    }
+
+    public List<Node> findPath(Node start, Node goal) {
+        return findPath(start, goal, new SearchStats());
+    }
+
+    /**
+     * Dijkstra over the reduced weights, with the policy the potentials were computed for.
+     */
+    public List<Node> findPath(Node start, Node goal, SearchStats stats) {
+        int source = graph.getId(start);
+        int target = graph.getId(goal);
+        if (source < 0 || target < 0) {
+            return Collections.emptyList();
+        }
+
+        int n = graph.getNodeCount();
+        double[] dist = new double[n];
+        int[] prev = new int[n];
+        boolean[] settled = new boolean[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(prev, -1);
+        IndexedMinHeap pq = new IndexedMinHeap(n);
+
+        dist[source] = 0.0;
+        pq.insertOrDecrease(source, 0.0);
+
+        while (!pq.isEmpty()) {
+            int current = pq.poll();
+            stats.nodeSettled();
+            if (current == target) {
+                stats.heapUsed(pq);
+                return graph.toPath(prev, target);
+            }
+            settled[current] = true;
+
+            for (int e = graph.firstEdge(current); e < graph.endEdge(current); e++) {
+                int neighbor = graph.getTarget(e);
+                if (settled[neighbor] || !policy.allows(graph.getRoadClass(e))) continue;
+                stats.edgeRelaxed();
+                double newDist = dist[current] + getReducedWeight(e);
+                if (newDist < dist[neighbor]) {
+                    dist[neighbor] = newDist;
+                    prev[neighbor] = current;
+                    pq.insertOrDecrease(neighbor, newDist);
+                }
+            }
+        }
+        stats.heapUsed(pq);
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,338 @@
+package com.drivebot.algorithms;
+
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
+
+import java.util.*;
+
+/**
+ * Yen's k shortest loopless paths towards one goal. A backward Dijkstra from the goal
+ * is computed once and serves every start and every spur search:
+ * <ul>
+ *   <li>When the tree path from a spur node avoids the root path and the removed edges,
+ *       it is the shortest spur path and no search runs at all.</li>
+ *   <li>Otherwise the spur search is A* with the tree distances as heuristic. Removing
+ *       edges and nodes only makes paths longer, so they stay a consistent lower bound
+ *       and the search heads straight for the goal.</li>
+ * </ul>
+ * An optional similarity limit skips alternatives that share too much of their cost with
+ * a route already returned, so the k routes are meaningfully different.
+ * <p>
+ * Weights must be non-negative. Immutable and safe to share between threads.
+ */
+public final class KShortestPaths {
+    private final CompactGraph graph;
+    private final RoadClassPolicy policy;
+    private final int goal;
+    private final double[] toGoal;  // tree distance to the goal
+    private final int[] treeEdge;   // first edge of the tree path to the goal, -1 at the goal and unreached nodes
+
+    private KShortestPaths(CompactGraph graph, RoadClassPolicy policy, int goal) {
+        this.graph = graph;
+        this.policy = policy;
+        this.goal = goal;
+        int n = graph.getNodeCount();
+        toGoal = new double[n];
+        treeEdge = new int[n];
+        Arrays.fill(toGoal, Double.POSITIVE_INFINITY);
+        Arrays.fill(treeEdge, -1);
+        if (goal < 0) return;
+
+        IndexedMinHeap heap = new IndexedMinHeap(n);
+        toGoal[goal] = 0;
+        heap.insertOrDecrease(goal, 0);
+        while (!heap.isEmpty()) {
+            int v = heap.poll();
+            for (int i = graph.firstIncoming(v); i < graph.endIncoming(v); i++) {
+                int e = graph.getIncomingEdge(i);
+                if (!policy.allows(graph.getRoadClass(e))) continue;
+                int u = graph.getSource(e);
+                double d = toGoal[v] + graph.getWeight(e);
+                if (d < toGoal[u]) {
+                    toGoal[u] = d;
+                    treeEdge[u] = e;
+                    heap.insertOrDecrease(u, d);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the reverse shortest path tree of the goal; reuse the result for every start.
+     * @throws IllegalArgumentException If the snapshot has negative weights.
+     */
+    public static KShortestPaths towards(CompactGraph graph, Node goal, RoadClassPolicy policy) {
+        if (graph.hasNegativeEdge()) {
+            throw new IllegalArgumentException("k shortest paths need non-negative weights");
+        }
+        return new KShortestPaths(graph, policy, graph.getId(goal));
+    }
+
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return Cost of the shortest path from the node to the goal, infinity if there is none.
+     */
+    public double getDistanceToGoal(Node node) {
+        int id = graph.getId(node);
+        return id < 0 ? Double.POSITIVE_INFINITY : toGoal[id];
+    }
+
+    public List<Route> find(Node start, int k) {
+        return find(start, k, 1.0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxSimilarity Largest share of a route's cost that may run over edges of a route
+     *                      returned before it, 1.0 to return the plain k shortest paths.
+     * @param maxExamined Bound on the paths Yen's algorithm takes out of its candidates,
+     *                    which matters when the similarity limit rejects many of them.
+     * @return Up to k loopless routes from the start to the goal, cheapest first.
+     */
+    public List<Route> find(Node start, int k, double maxSimilarity, int maxExamined) {
+        int source = graph.getId(start);
+        List<Route> accepted = new ArrayList<>();
+        if (source < 0 || k <= 0 || toGoal[source] == Double.POSITIVE_INFINITY) {
+            return accepted;
+        }
+
+        Workspace workspace = new Workspace(graph.getNodeCount());
+        List<int[]> examined = new ArrayList<>();
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(Comparator.comparingDouble(c -> c.cost));
+        Set<List<Integer>> seen = new HashSet<>();
+        int[] first = treePath(source);
+        seen.add(asList(first));
+        candidates.add(new Candidate(first, toGoal[source]));
+
+        while (!candidates.isEmpty() && accepted.size() < k && examined.size() < maxExamined) {
+            Candidate best = candidates.poll();
+            examined.add(best.edges);
+            if (similarEnough(best, accepted, maxSimilarity)) {
+                accepted.add(toRoute(source, best));
+            }
+            if (accepted.size() == k) break;
+
+            int[] previous = best.edges;
+            int spur = source;
+            double rootCost = 0;
+            workspace.nextStamp();
+            for (int i = 0; i < previous.length; i++) {
+                // Spur off the i-th node: earlier nodes are blocked, and so is the next edge
+                // of every examined path with the same root
+                List<Integer> removed = new ArrayList<>();
+                for (int[] path : examined) {
+                    if (path.length > i && sharesRoot(path, previous, i)) removed.add(path[i]);
+                }
+                int[] spurPath = spurPath(spur, removed, workspace);
+                if (spurPath != null) {
+                    int[] edges = Arrays.copyOf(previous, i + spurPath.length);
+                    System.arraycopy(spurPath, 0, edges, i, spurPath.length);
+                    if (seen.add(asList(edges))) {
+                        candidates.add(new Candidate(edges, rootCost + workspace.lastCost));
+                    }
+                }
+                workspace.block(spur);
+                rootCost += graph.getWeight(previous[i]);
+                spur = graph.getTarget(previous[i]);
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Shortest path from the spur node to the goal avoiding blocked nodes and removed edges.
+     * @return Its edges, or null if there is none; the cost is left in {@code workspace.lastCost}.
+     */
+    private int[] spurPath(int spur, List<Integer> removed, Workspace workspace) {
+        if (treePathUsable(spur, removed, workspace)) {
+            workspace.lastCost = toGoal[spur];
+            return treePath(spur);
+        }
+        return workspace.search(spur, removed);
+    }
+
+    private boolean treePathUsable(int spur, List<Integer> removed, Workspace workspace) {
+        if (toGoal[spur] == Double.POSITIVE_INFINITY || removed.contains(treeEdge[spur])) {
+            return false;
+        }
+        for (int v = spur; v != goal; v = graph.getTarget(treeEdge[v])) {
+            if (workspace.isBlocked(v)) return false;
+        }
+        return !workspace.isBlocked(goal);
+    }
+
+    private int[] treePath(int from) {
+        int length = 0;
+        for (int v = from; v != goal; v = graph.getTarget(treeEdge[v])) length++;
+        int[] edges = new int[length];
+        int v = from;
+        for (int i = 0; i < length; i++) {
+            edges[i] = treeEdge[v];
+            v = graph.getTarget(treeEdge[v]);
+        }
+        return edges;
+    }
+
+    private static boolean sharesRoot(int[] path, int[] previous, int length) {
+        for (int j = 0; j < length; j++) {
+            if (path[j] != previous[j]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Similarity of two routes is the cost of their shared edges over the cost of the cheaper one.
+     */
+    private boolean similarEnough(Candidate candidate, List<Route> accepted, double maxSimilarity) {
+        if (maxSimilarity >= 1.0) return true;
+        for (Route route : accepted) {
+            double shared = 0;
+            for (int e : candidate.edges) {
+                if (route.edgeSet.contains(e)) shared += graph.getWeight(e);
+            }
+            double cheaper = Math.min(candidate.cost, route.cost);
+            double similarity = cheaper > 0 ? shared / cheaper : 1.0;
+            if (similarity > maxSimilarity) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Route toRoute(int source, Candidate candidate) {
+        List<Node> nodes = new ArrayList<>(candidate.edges.length + 1);
+        nodes.add(graph.getNode(source));
+        for (int e : candidate.edges) {
+            nodes.add(graph.getNode(graph.getTarget(e)));
+        }
+        return new Route(nodes, candidate.edges, candidate.cost);
+    }
+
+    private static List<Integer> asList(int[] edges) {
+        List<Integer> list = new ArrayList<>(edges.length);
+        for (int e : edges) list.add(e);
+        return list;
+    }
+
+    private static final class Candidate {
+        final int[] edges;
+        final double cost;
+
+        Candidate(int[] edges, double cost) {
+            this.edges = edges;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * Spur search state of one {@link #find} call, reset through stamps and touched lists.
+     */
+    private final class Workspace {
+        final double[] dist;
+        final int[] prevEdge;
+        final int[] blocked;   // == stamp when blocked for the current root
+        final int[] settled;   // == search when settled by the current spur search
+        final int[] touched;
+        final IndexedMinHeap heap;
+        int touchedCount;
+        int stamp;
+        int search;
+        double lastCost;
+
+        Workspace(int n) {
+            dist = new double[n];
+            prevEdge = new int[n];
+            blocked = new int[n];
+            settled = new int[n];
+            touched = new int[n];
+            heap = new IndexedMinHeap(n);
+            Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        }
+
+        void nextStamp() {
+            stamp++;
+        }
+
+        void block(int v) {
+            blocked[v] = stamp;
+        }
+
+        boolean isBlocked(int v) {
+            return blocked[v] == stamp;
+        }
+
+        int[] search(int spur, List<Integer> removed) {
+            search++;
+            for (int i = 0; i < touchedCount; i++) dist[touched[i]] = Double.POSITIVE_INFINITY;
+            touchedCount = 0;
+            heap.clear();
+
+            dist[spur] = 0;
+            prevEdge[spur] = -1;
+            touched[touchedCount++] = spur;
+            heap.insertOrDecrease(spur, toGoal[spur]);
+            while (!heap.isEmpty()) {
+                int u = heap.poll();
+                if (u == goal) {
+                    lastCost = dist[goal];
+                    int length = 0;
+                    for (int v = goal; prevEdge[v] >= 0; v = graph.getSource(prevEdge[v])) length++;
+                    int[] edges = new int[length];
+                    for (int v = goal; prevEdge[v] >= 0; v = graph.getSource(prevEdge[v])) edges[--length] = prevEdge[v];
+                    return edges;
+                }
+                settled[u] = search;
+                for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                    int v = graph.getTarget(e);
+                    if (settled[v] == search || isBlocked(v) || toGoal[v] == Double.POSITIVE_INFINITY
+                            || !policy.allows(graph.getRoadClass(e)) || (u == spur && removed.contains(e))) continue;
+                    double d = dist[u] + graph.getWeight(e);
+                    if (d < dist[v]) {
+                        if (dist[v] == Double.POSITIVE_INFINITY) touched[touchedCount++] = v;
+                        dist[v] = d;
+                        prevEdge[v] = e;
+                        heap.insertOrDecrease(v, d + toGoal[v]);
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * One alternative: its nodes, the snapshot edge ids between them and its cost.
+     */
+    public static final class Route {
+        private final List<Node> nodes;
+        private final int[] edges;
+        private final Set<Integer> edgeSet;
+        private final double cost;
+
+        Route(List<Node> nodes, int[] edges, double cost) {
+            this.nodes = nodes;
+            this.edges = edges;
+            this.cost = cost;
+            this.edgeSet = new HashSet<>(asList(edges));
+        }
+
+        public List<Node> getNodes() {
+            return nodes;
+        }
+
+        public int[] getEdges() {
+            return edges.clone();
+        }
+
+        public double getCost() {
+            return cost;
+        }
+
+        @Override
+        public String toString() {
+            return nodes + " cost=" + cost;
+        }
+    }
+}
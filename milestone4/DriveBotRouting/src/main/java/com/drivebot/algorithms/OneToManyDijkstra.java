@@ -0,0 +1,145 @@
+package com.drivebot.algorithms;
+
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
+
+import java.util.*;
+
+/**
+ * Dijkstra from one source that stops as soon as every requested target is settled.
+ * Meant for cost matrices: keep one instance per thread and run it once per source.
+ * The arrays are reset through a touched list, so a run only pays for the nodes it reaches.
+ * Not thread-safe.
+ */
+public final class OneToManyDijkstra {
+    private final double[] dist;
+    private final int[] prev;
+    private final boolean[] settled;
+    private final int[] targetRun; // == run when the node is a target of the current run
+    private final int[] touched;
+    private int touchedCount;
+    private final IndexedMinHeap heap;
+    private int run;
+    private CompactGraph lastGraph;
+
+    public OneToManyDijkstra(int nodeCount) {
+        dist = new double[nodeCount];
+        prev = new int[nodeCount];
+        settled = new boolean[nodeCount];
+        targetRun = new int[nodeCount];
+        touched = new int[nodeCount];
+        heap = new IndexedMinHeap(nodeCount);
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+    }
+
+    public int getNodeCount() {
+        return dist.length;
+    }
+
+    /**
+     * @param targets Node ids to reach; duplicates are fine. Unreachable targets make the
+     *                search exhaust everything the source reaches, so filter them out first
+     *                when possible.
+     * @return The cost to every target in order, infinity where there is no route.
+     */
+    public double[] run(CompactGraph graph, int source, int[] targets, RoadClassPolicy policy) {
+        return run(graph, source, targets, policy, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Same as {@link #run(CompactGraph, int, int[], RoadClassPolicy)}, but the search also
+     * stops once it is more than {@code radius} away from the source.
+     * @return The cost to every target in order, infinity where it is beyond the radius.
+     */
+    public double[] run(CompactGraph graph, int source, int[] targets, RoadClassPolicy policy, double radius) {
+        return run(graph, null, source, targets, policy, radius);
+    }
+
+    /**
+     * Same as {@link #run(CompactGraph, int, int[], RoadClassPolicy)} on a graph with negative
+     * weights: the search runs over the reduced weights of the potentials, which must have
+     * been computed for the same policy.
+     * @return The real cost to every target in order, infinity where there is no route.
+     */
+    public double[] run(JohnsonPotentials potentials, int source, int[] targets, RoadClassPolicy policy) {
+        double[] costs = run(potentials.getGraph(), potentials, source, targets, policy, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < targets.length; i++) {
+            costs[i] += potentials.getPotential(targets[i]) - potentials.getPotential(source);
+        }
+        return costs;
+    }
+
+    private double[] run(CompactGraph graph, JohnsonPotentials potentials, int source, int[] targets,
+                         RoadClassPolicy policy, double radius) {
+        if (graph.getNodeCount() != dist.length) {
+            throw new IllegalArgumentException("Workspace is sized for " + dist.length + " nodes, graph has " + graph.getNodeCount());
+        }
+        reset();
+        lastGraph = graph;
+        run++;
+
+        int remaining = 0;
+        for (int target : targets) {
+            if (targetRun[target] != run) {
+                targetRun[target] = run;
+                remaining++;
+            }
+        }
+
+        touch(source);
+        dist[source] = 0.0;
+        heap.insertOrDecrease(source, 0.0);
+
+        while (!heap.isEmpty() && remaining > 0 && heap.peekKey() <= radius) {
+            int current = heap.poll();
+            settled[current] = true;
+            if (targetRun[current] == run) {
+                remaining--;
+            }
+
+            for (int e = graph.firstEdge(current); e < graph.endEdge(current); e++) {
+                int neighbor = graph.getTarget(e);
+                if (settled[neighbor] || !policy.allows(graph.getRoadClass(e))) continue;
+                double newDist = dist[current] + (potentials != null ? potentials.getReducedWeight(e) : graph.getWeight(e));
+                if (newDist < dist[neighbor]) {
+                    if (dist[neighbor] == Double.POSITIVE_INFINITY) touch(neighbor);
+                    dist[neighbor] = newDist;
+                    prev[neighbor] = current;
+                    heap.insertOrDecrease(neighbor, newDist);
+                }
+            }
+        }
+
+        double[] costs = new double[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            costs[i] = settled[targets[i]] ? dist[targets[i]] : Double.POSITIVE_INFINITY;
+        }
+        return costs;
+    }
+
+    /**
+     * @return The path from the source of the last run to the target, empty if it was not reached.
+     */
+    public List<Node> pathTo(int target) {
+        if (lastGraph == null || !settled[target]) {
+            return Collections.emptyList();
+        }
+        return lastGraph.toPath(prev, target);
+    }
+
+    private void touch(int v) {
+        touched[touchedCount++] = v;
+        prev[v] = -1;
+    }
+
+    private void reset() {
+        for (int i = 0; i < touchedCount; i++) {
+            int v = touched[i];
+            dist[v] = Double.POSITIVE_INFINITY;
+            settled[v] = false;
+        }
+        touchedCount = 0;
+        heap.clear();
+    }
+}
@@ -0,0 +1,330 @@
+package com.drivebot.algorithms;
+
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Edge;
+import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
+import com.drivebot.utils.PricingTable;
+
+import java.util.*;
+
+/**
+ * Multi-criteria label-setting search over travel time, price and CO2. Every node keeps
+ * a bucket of labels no other label there dominates; labels leave the queue in order of
+ * their criteria sum, so a label reaching the goal is final the moment it is polled.
+ * <p>
+ * Before the search, one backward Dijkstra per criterion gives lower bounds to the goal.
+ * A label whose bounds are already dominated by a route found to the goal is dropped
+ * without being expanded, which keeps the label count close to the Pareto set itself.
+ * <p>
+ * Criteria are copied from the snapshot once ({@link Edge#getTravelTime()},
+ * {@link PricingTable} prices, {@link Edge#getCO2Emission()}) and must be non-negative.
+ * Immutable and safe to share between threads; every query allocates its own labels.
+ */
+public final class ParetoSearch {
+    private static final int CRITERIA = 3;
+
+    private final CompactGraph graph;
+    private final RoadClassPolicy policy;
+    private final double[][] cost; // [criterion][edge]
+
+    private ParetoSearch(CompactGraph graph, RoadClassPolicy policy, double[][] cost) {
+        this.graph = graph;
+        this.policy = policy;
+        this.cost = cost;
+    }
+
+    public static ParetoSearch of(CompactGraph graph, RoadClassPolicy policy) {
+        return of(PricingTable.of(graph), policy);
+    }
+
+    /**
+     * @param pricing Prices of the snapshot to search, see {@link PricingTable#getGraph()}.
+     * @throws IllegalArgumentException If an allowed edge has a negative travel time, price or emission.
+     */
+    public static ParetoSearch of(PricingTable pricing, RoadClassPolicy policy) {
+        CompactGraph graph = pricing.getGraph();
+        int m = graph.getEdgeCount();
+        double[][] cost = new double[CRITERIA][m];
+        for (int e = 0; e < m; e++) {
+            Edge edge = graph.getEdge(e);
+            cost[0][e] = edge.getTravelTime();
+            cost[1][e] = pricing.getPrice(e);
+            cost[2][e] = edge.getCO2Emission();
+            if (policy.allows(graph.getRoadClass(e)) && (cost[0][e] < 0 || cost[1][e] < 0 || cost[2][e] < 0)) {
+                throw new IllegalArgumentException("Pareto search needs non-negative criteria, edge " + edge.getFrom()
+                        + " -> " + edge.getTo() + " has " + cost[0][e] + ", " + cost[1][e] + ", " + cost[2][e]);
+            }
+        }
+        return new ParetoSearch(graph, policy, cost);
+    }
+
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    public Result findRoutes(Node start, Node goal) {
+        return findRoutes(start, goal, Integer.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxRoutes Largest number of routes to return; a larger Pareto set is thinned
+     *                  out, keeping the fastest, cheapest and greenest route first.
+     * @param budgetNanos Time after which the search stops and returns the routes found so far.
+     */
+    public Result findRoutes(Node start, Node goal, int maxRoutes, long budgetNanos) {
+        long deadline = System.nanoTime() + Math.min(budgetNanos, Long.MAX_VALUE / 2);
+        int source = graph.getId(start);
+        int target = graph.getId(goal);
+        if (source < 0 || target < 0) {
+            return new Result(Collections.emptyList(), true, 0);
+        }
+
+        double[][] bound = new double[CRITERIA][];
+        for (int k = 0; k < CRITERIA; k++) {
+            bound[k] = lowerBounds(target, cost[k]);
+        }
+        if (bound[0][source] == Double.POSITIVE_INFINITY) {
+            return new Result(Collections.emptyList(), true, 0);
+        }
+
+        Labels labels = new Labels(graph.getNodeCount());
+        IndexedMinHeap queue = new IndexedMinHeap(64);
+        List<Integer> found = new ArrayList<>();
+        queue.insertOrDecrease(labels.add(source, -1, 0, 0, 0), 0);
+
+        boolean complete = true;
+        int polled = 0;
+        while (!queue.isEmpty()) {
+            if ((++polled & 63) == 0 && System.nanoTime() > deadline) {
+                complete = false;
+                break;
+            }
+            int label = queue.poll();
+            if (labels.dead[label]) continue;
+            int u = labels.node[label];
+            if (u == target) {
+                found.add(label);
+                continue;
+            }
+            if (prunedByTarget(labels, found, label, u, bound)) continue;
+
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                int v = graph.getTarget(e);
+                if (!policy.allows(graph.getRoadClass(e)) || bound[0][v] == Double.POSITIVE_INFINITY) continue;
+                double time = labels.time[label] + cost[0][e];
+                double price = labels.price[label] + cost[1][e];
+                double co2 = labels.co2[label] + cost[2][e];
+                if (labels.dominatedAt(v, time, price, co2)
+                        || dominatedByFound(labels, found, time + bound[0][v], price + bound[1][v], co2 + bound[2][v])) {
+                    continue;
+                }
+                int next = labels.add(v, label, time, price, co2);
+                queue.insertOrDecrease(next, time + price + co2);
+            }
+        }
+        return new Result(select(labels, found, maxRoutes), complete, labels.size);
+    }
+
+    private boolean prunedByTarget(Labels labels, List<Integer> found, int label, int u, double[][] bound) {
+        return dominatedByFound(labels, found, labels.time[label] + bound[0][u],
+                labels.price[label] + bound[1][u], labels.co2[label] + bound[2][u]);
+    }
+
+    private static boolean dominatedByFound(Labels labels, List<Integer> found, double time, double price, double co2) {
+        for (int f : found) {
+            if (labels.time[f] <= time && labels.price[f] <= price && labels.co2[f] <= co2) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Keeps the best route for every criterion, then fills up with the routes spread
+     * most evenly over travel time.
+     */
+    private List<Route> select(Labels labels, List<Integer> found, int maxRoutes) {
+        List<Route> routes = new ArrayList<>();
+        for (int label : found) {
+            routes.add(labels.route(label, graph));
+        }
+        routes.sort(Comparator.comparingDouble(Route::getTravelTime).thenComparingDouble(Route::getPrice));
+        if (routes.size() <= maxRoutes) {
+            return routes;
+        }
+        Set<Route> kept = new LinkedHashSet<>();
+        kept.add(routes.get(0));
+        kept.add(Collections.min(routes, Comparator.comparingDouble(Route::getPrice)));
+        kept.add(Collections.min(routes, Comparator.comparingDouble(Route::getCO2Emission)));
+        for (int i = 0; kept.size() < maxRoutes && i < maxRoutes; i++) {
+            kept.add(routes.get((int) ((long) i * (routes.size() - 1) / Math.max(1, maxRoutes - 1))));
+        }
+        List<Route> selected = new ArrayList<>(kept);
+        selected.sort(Comparator.comparingDouble(Route::getTravelTime));
+        return selected.subList(0, Math.min(maxRoutes, selected.size()));
+    }
+
+    /**
+     * Backward Dijkstra from the target over one criterion.
+     */
+    private double[] lowerBounds(int target, double[] column) {
+        int n = graph.getNodeCount();
+        double[] dist = new double[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        IndexedMinHeap heap = new IndexedMinHeap(n);
+        dist[target] = 0;
+        heap.insertOrDecrease(target, 0);
+        while (!heap.isEmpty()) {
+            int v = heap.poll();
+            for (int i = graph.firstIncoming(v); i < graph.endIncoming(v); i++) {
+                int e = graph.getIncomingEdge(i);
+                if (!policy.allows(graph.getRoadClass(e))) continue;
+                int u = graph.getSource(e);
+                double d = dist[v] + column[e];
+                if (d < dist[u]) {
+                    dist[u] = d;
+                    heap.insertOrDecrease(u, d);
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Label store of one query: criteria and parent pointers in growing primitive arrays,
+     * and per node an int-linked bucket of the labels not dominated there.
+     */
+    private static final class Labels {
+        double[] time = new double[256];
+        double[] price = new double[256];
+        double[] co2 = new double[256];
+        int[] node = new int[256];
+        int[] parent = new int[256];
+        int[] nextInBucket = new int[256];
+        boolean[] dead = new boolean[256];
+        final int[] bucket;
+        int size;
+
+        Labels(int nodeCount) {
+            bucket = new int[nodeCount];
+            Arrays.fill(bucket, -1);
+        }
+
+        int add(int v, int from, double t, double p, double c) {
+            if (size == node.length) {
+                int capacity = size * 2;
+                time = Arrays.copyOf(time, capacity);
+                price = Arrays.copyOf(price, capacity);
+                co2 = Arrays.copyOf(co2, capacity);
+                node = Arrays.copyOf(node, capacity);
+                parent = Arrays.copyOf(parent, capacity);
+                nextInBucket = Arrays.copyOf(nextInBucket, capacity);
+                dead = Arrays.copyOf(dead, capacity);
+            }
+            int label = size++;
+            time[label] = t;
+            price[label] = p;
+            co2[label] = c;
+            node[label] = v;
+            parent[label] = from;
+            nextInBucket[label] = bucket[v];
+            bucket[v] = label;
+            return label;
+        }
+
+        /**
+         * @return True if a label at the node is at least as good in every criterion.
+         *         Otherwise drops the node's labels the new one would dominate.
+         */
+        boolean dominatedAt(int v, double t, double p, double c) {
+            int previous = -1;
+            for (int label = bucket[v]; label >= 0; label = nextInBucket[label]) {
+                if (time[label] <= t && price[label] <= p && co2[label] <= c) {
+                    return true;
+                }
+                if (t <= time[label] && p <= price[label] && c <= co2[label]) {
+                    dead[label] = true; // still queued, skipped when polled
+                    if (previous < 0) bucket[v] = nextInBucket[label]; else nextInBucket[previous] = nextInBucket[label];
+                } else {
+                    previous = label;
+                }
+            }
+            return false;
+        }
+
+        Route route(int label, CompactGraph graph) {
+            ArrayDeque<Node> nodes = new ArrayDeque<>();
+            for (int l = label; l >= 0; l = parent[l]) {
+                nodes.addFirst(graph.getNode(node[l]));
+            }
+            return new Route(new ArrayList<>(nodes), time[label], price[label], co2[label]);
+        }
+    }
+
+    /**
+     * The routes found and whether the search finished within its budget; an incomplete
+     * result holds routes that are Pareto-optimal but may miss some of the set.
+     */
+    public static final class Result {
+        private final List<Route> routes;
+        private final boolean complete;
+        private final int labelCount;
+
+        Result(List<Route> routes, boolean complete, int labelCount) {
+            this.routes = routes;
+            this.complete = complete;
+            this.labelCount = labelCount;
+        }
+
+        /**
+         * @return The routes, fastest first; empty if the goal cannot be reached.
+         */
+        public List<Route> getRoutes() {
+            return routes;
+        }
+
+        public boolean isComplete() {
+            return complete;
+        }
+
+        public int getLabelCount() {
+            return labelCount;
+        }
+    }
+
+    public static final class Route {
+        private final List<Node> nodes;
+        private final double travelTime;
+        private final double price;
+        private final double co2Emission;
+
+        Route(List<Node> nodes, double travelTime, double price, double co2Emission) {
+            this.nodes = nodes;
+            this.travelTime = travelTime;
+            this.price = price;
+            this.co2Emission = co2Emission;
+        }
+
+        public List<Node> getNodes() {
+            return nodes;
+        }
+
+        public double getTravelTime() {
+            return travelTime;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public double getCO2Emission() {
+            return co2Emission;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s time=%.2f price=%.2f co2=%.2f", nodes, travelTime, price, co2Emission);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.drivebot.algorithms;
+
+/**
+ * Work counters filled in by a search, for comparing engines and heuristics.
+ * Not thread-safe; use one instance per search or per thread.
+ */
+public final class SearchStats {
+    /**
+     * Shared instance that counts nothing, for searches nobody reads the counters of.
+     */
+    public static final SearchStats NONE = new SearchStats(false);
+
+    private final boolean counting;
+    private long nodesSettled;
+    private long edgesRelaxed;
+    private long heapPushes;
+    private long decreaseKeys;
+
+    public SearchStats() {
+        this(true);
+    }
+
+    private SearchStats(boolean counting) {
+        this.counting = counting;
+    }
+
+    public void nodeSettled() {
+        if (counting) nodesSettled++;
+    }
+
+    public void edgeRelaxed() {
+        if (counting) edgesRelaxed++;
+    }
+
+    /**
+     * Adds the pushes and decrease-keys a search made on its heap. The heaps are indexed,
+     * so an improved key is a decrease-key where a lazy heap would push a stale entry.
+     */
+    public void heapUsed(IndexedMinHeap heap) {
+        if (!counting) return;
+        heapPushes += heap.getPushCount();
+        decreaseKeys += heap.getDecreaseKeyCount();
+    }
+
+    public long getNodesSettled() {
+        return nodesSettled;
+    }
+
+    public long getEdgesRelaxed() {
+        return edgesRelaxed;
+    }
+
+    public long getHeapPushes() {
+        return heapPushes;
+    }
+
+    public long getDecreaseKeys() {
+        return decreaseKeys;
+    }
+
+    public void reset() {
+        nodesSettled = 0;
+        edgesRelaxed = 0;
+        heapPushes = 0;
+        decreaseKeys = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "settled=" + nodesSettled + ", relaxed=" + edgesRelaxed
+                + ", pushes=" + heapPushes + ", decreases=" + decreaseKeys;
+    }
+}
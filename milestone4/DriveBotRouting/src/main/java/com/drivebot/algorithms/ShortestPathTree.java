@@ -0,0 +1,60 @@
+package com.drivebot.algorithms;
+
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Node;
+
+import java.util.*;
+
+/**
+ * Distances and parent pointers of a one-to-all search over a {@link CompactGraph}.
+ */
+public final class ShortestPathTree {
+    private final CompactGraph graph;
+    private final int source;
+    private final double[] dist;
+    private final int[] parent;
+
+    ShortestPathTree(CompactGraph graph, int source, double[] dist, int[] parent) {
+        this.graph = graph;
+        this.source = source;
+        this.dist = dist;
+        this.parent = parent;
+    }
+
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    public int getSource() {
+        return source;
+    }
+
+    /**
+     * @return Cost from the source to the node, infinity if it is not reached.
+     */
+    public double getDistance(int node) {
+        return dist[node];
+    }
+
+    /**
+     * @return The node before this one on its shortest path, -1 for the source and unreached nodes.
+     */
+    public int getParent(int node) {
+        return parent[node];
+    }
+
+    public boolean isReachable(int node) {
+        return dist[node] < Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return The path from the source to the node, empty if it is not reached.
+     */
+    public List<Node> pathTo(Node node) {
+        int id = graph.getId(node);
+        if (id < 0 || !isReachable(id)) {
+            return Collections.emptyList();
+        }
+        return graph.toPath(parent, id);
+    }
+}
@@ -0,0 +1,268 @@
+package com.drivebot.algorithms;
+
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Graph;
+import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Queue-based Bellman-Ford (shortest path faster algorithm) for graphs with negative
+ * weights. Only nodes whose distance dropped are scanned again, so the search ends as
+ * soon as a round changes nothing instead of always running V-1 passes. The queue uses
+ * the Small Label First and Large Label Last orderings, which on road graphs settle most
+ * nodes on their first scan.
+ * <p>
+ * A negative cycle is detected when the tentative path to a node grows to V edges,
+ * which no simple path can have; the search then throws like {@link BellmanFord}.
+ */
+public final class Spfa {
+
+    private Spfa() {}
+
+    public static List<Node> findPath(Graph graph, Node start, Node goal) {
+        return findPath(CompactGraph.of(graph), start, goal, RoadClassPolicy.ALLOW_ALL);
+    }
+
+    public static List<Node> findPath(CompactGraph graph, Node start, Node goal) {
+        return findPath(graph, start, goal, RoadClassPolicy.ALLOW_ALL);
+    }
+
+    public static List<Node> findPath(CompactGraph graph, Node start, Node goal, RoadClassPolicy policy) {
+        int source = graph.getId(start);
+        if (source < 0 || graph.getId(goal) < 0) {
+            return Collections.emptyList();
+        }
+        return oneToAll(graph, source, policy).pathTo(goal);
+    }
+
+    public static ShortestPathTree oneToAll(CompactGraph graph, int source, RoadClassPolicy policy) {
+        int n = graph.getNodeCount();
+        double[] dist = new double[n];
+        int[] parent = new int[n];
+        int[] hops = new int[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(parent, -1);
+        dist[source] = 0.0;
+        run(graph, policy, dist, parent, hops, new int[]{source}, n - 1);
+        return new ShortestPathTree(graph, source, dist, parent);
+    }
+
+    /**
+     * Distances from a virtual source with a zero-cost edge to every node, i.e. the
+     * cheapest path ending at each node from anywhere, capped at zero. These are the
+     * Johnson potentials.
+     */
+    public static double[] fromVirtualSource(CompactGraph graph, RoadClassPolicy policy) {
+        int n = graph.getNodeCount();
+        double[] dist = new double[n];
+        int[] parent = new int[n];
+        int[] hops = new int[n];
+        int[] all = new int[n];
+        Arrays.fill(parent, -1);
+        Arrays.fill(hops, 1); // the virtual edge
+        for (int v = 0; v < n; v++) {
+            all[v] = v;
+        }
+        run(graph, policy, dist, parent, hops, all, n);
+        return dist;
+    }
+
+    /**
+     * @param maxHops Longest simple path in edges; anything longer closes a negative cycle.
+     */
+    private static void run(CompactGraph graph, RoadClassPolicy policy, double[] dist, int[] parent,
+                            int[] hops, int[] initial, int maxHops) {
+        int n = graph.getNodeCount();
+        IntDeque queue = new IntDeque(n);
+        boolean[] queued = new boolean[n];
+        double queuedSum = 0; // sum of the labels in the queue, for LLL
+        for (int v : initial) {
+            queue.addLast(v);
+            queued[v] = true;
+            queuedSum += dist[v];
+        }
+
+        while (!queue.isEmpty()) {
+            // Large Label Last: rotate labels above the queue average to the back
+            double average = queuedSum / queue.size();
+            int rotations = queue.size();
+            while (dist[queue.peekFirst()] > average && rotations-- > 0) {
+                queue.addLast(queue.pollFirst());
+            }
+            int u = queue.pollFirst();
+            queued[u] = false;
+            queuedSum -= dist[u];
+
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                if (!policy.allows(graph.getRoadClass(e))) continue;
+                int v = graph.getTarget(e);
+                double d = dist[u] + graph.getWeight(e);
+                if (d >= dist[v]) continue;
+
+                hops[v] = hops[u] + 1;
+                if (hops[v] > maxHops) {
+                    throw new RuntimeException("Graph contains a negative weight cycle");
+                }
+                if (queued[v]) {
+                    queuedSum += d - dist[v];
+                    dist[v] = d;
+                } else {
+                    dist[v] = d;
+                    queued[v] = true;
+                    queuedSum += d;
+                    // Small Label First: a label below the front's goes first
+                    if (!queue.isEmpty() && d < dist[queue.peekFirst()]) {
+                        queue.addFirst(v);
+                    } else {
+                        queue.addLast(v);
+                    }
+                }
+                parent[v] = u;
+            }
+        }
+    }
+
+    /**
+     * One-to-all search that relaxes the edges of each round's active nodes in parallel on
+     * the common fork-join pool. It stops after the first round that changes nothing; a
+     * change in round V means a negative cycle. Worth it for large one-to-all queries only.
+     */
+    public static ShortestPathTree oneToAllParallel(CompactGraph graph, int source, RoadClassPolicy policy) {
+        int n = graph.getNodeCount();
+        AtomicLongArray dist = new AtomicLongArray(n);
+        long infinity = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+        for (int v = 0; v < n; v++) {
+            dist.set(v, infinity);
+        }
+        dist.set(source, Double.doubleToRawLongBits(0.0));
+        AtomicIntegerArray activeRound = new AtomicIntegerArray(n); // round a node was last activated for
+
+        int[] frontier = {source};
+        int round = 0;
+        while (frontier.length > 0) {
+            int next = ++round + 1;
+            int[] current = frontier;
+            int chunk = Math.max(64, current.length / (4 * Runtime.getRuntime().availableProcessors()));
+            frontier = IntStream.range(0, (current.length + chunk - 1) / chunk).parallel()
+                    .flatMap(c -> {
+                        int[] activated = new int[16];
+                        int count = 0;
+                        for (int i = c * chunk; i < Math.min(current.length, (c + 1) * chunk); i++) {
+                            int u = current[i];
+                            double du = Double.longBitsToDouble(dist.get(u));
+                            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                                if (!policy.allows(graph.getRoadClass(e))) continue;
+                                int v = graph.getTarget(e);
+                                if (lowerTo(dist, v, du + graph.getWeight(e)) && activate(activeRound, v, next)) {
+                                    if (count == activated.length) activated = Arrays.copyOf(activated, count * 2);
+                                    activated[count++] = v;
+                                }
+                            }
+                        }
+                        return Arrays.stream(activated, 0, count);
+                    })
+                    .toArray();
+            // Without negative cycles round V-1 has fixed every distance
+            if (round >= n && frontier.length > 0) {
+                throw new RuntimeException("Graph contains a negative weight cycle");
+            }
+        }
+
+        double[] result = new double[n];
+        for (int v = 0; v < n; v++) {
+            result[v] = Double.longBitsToDouble(dist.get(v));
+        }
+        return new ShortestPathTree(graph, source, result, tightTree(graph, policy, source, result));
+    }
+
+    private static boolean lowerTo(AtomicLongArray dist, int v, double candidate) {
+        while (true) {
+            long bits = dist.get(v);
+            if (candidate >= Double.longBitsToDouble(bits)) return false;
+            if (dist.compareAndSet(v, bits, Double.doubleToRawLongBits(candidate))) return true;
+        }
+    }
+
+    private static boolean activate(AtomicIntegerArray activeRound, int v, int round) {
+        while (true) {
+            int seen = activeRound.get(v);
+            if (seen == round) return false;
+            if (activeRound.compareAndSet(v, seen, round)) return true;
+        }
+    }
+
+    /**
+     * Parent pointers written by racing threads can disagree with the final distances, so
+     * the tree is rebuilt afterwards from the edges the final distances make tight.
+     */
+    private static int[] tightTree(CompactGraph graph, RoadClassPolicy policy, int source, double[] dist) {
+        int n = graph.getNodeCount();
+        int[] parent = new int[n];
+        boolean[] visited = new boolean[n];
+        Arrays.fill(parent, -1);
+        IntDeque queue = new IntDeque(n);
+        queue.addLast(source);
+        visited[source] = true;
+        while (!queue.isEmpty()) {
+            int u = queue.pollFirst();
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                int v = graph.getTarget(e);
+                if (visited[v] || !policy.allows(graph.getRoadClass(e))) continue;
+                if (dist[u] + graph.getWeight(e) == dist[v]) {
+                    visited[v] = true;
+                    parent[v] = u;
+                    queue.addLast(v);
+                }
+            }
+        }
+        return parent;
+    }
+
+    /**
+     * Ring buffer of node ids; every node is in the queue at most once.
+     */
+    private static final class IntDeque {
+        private final int[] items;
+        private int head;
+        private int size;
+
+        IntDeque(int capacity) {
+            items = new int[Math.max(1, capacity)];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int peekFirst() {
+            return items[head];
+        }
+
+        int pollFirst() {
+            int item = items[head];
+            head = (head + 1) % items.length;
+            size--;
+            return item;
+        }
+
+        void addFirst(int item) {
+            head = (head - 1 + items.length) % items.length;
+            items[head] = item;
+            size++;
+        }
+
+        void addLast(int item) {
+            items[(head + size) % items.length] = item;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.drivebot.algorithms;
+
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Edge;
+import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
+import com.drivebot.model.TravelTimeProfiles;
+import com.drivebot.utils.Heuristic;
+
+import java.util.*;
+
+/**
+ * Earliest-arrival search for a departure time. Labels are arrival times and relaxing an
+ * edge evaluates its {@link TravelTimeProfiles travel-time profile} at the time the search
+ * reaches the edge, so planning a 6 pm departure needs no weight rewrite. Edges without a
+ * profile take their constant {@link Edge#getTravelTime()}. With FIFO profiles the first
+ * time the goal is settled is its earliest arrival, exactly as in static Dijkstra.
+ * <p>
+ * Built once per snapshot: the profile ids and constant times are copied into arrays, so
+ * later edits to edges only show up in a new instance. Immutable and safe to share
+ * between threads.
+ */
+public final class TimeDependentDijkstra {
+    private final CompactGraph graph;
+    private final TravelTimeProfiles profiles;
+    private final int[] profileOf;
+    private final double[] constantTime;
+
+    private TimeDependentDijkstra(CompactGraph graph, TravelTimeProfiles profiles) {
+        this.graph = graph;
+        this.profiles = profiles;
+        int m = graph.getEdgeCount();
+        profileOf = new int[m];
+        constantTime = new double[m];
+        for (int e = 0; e < m; e++) {
+            Edge edge = graph.getEdge(e);
+            profileOf[e] = edge.getTravelTimeProfile();
+            constantTime[e] = edge.getTravelTime();
+        }
+    }
+
+    public static TimeDependentDijkstra of(CompactGraph graph, TravelTimeProfiles profiles) {
+        return new TimeDependentDijkstra(graph, profiles);
+    }
+
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return Seconds it takes to drive the edge when entering it at {@code departure}.
+     */
+    public double travelTime(int edge, double departure) {
+        int profile = profileOf[edge];
+        return profile < 0 ? constantTime[edge] : profiles.evaluate(profile, departure);
+    }
+
+    /**
+     * @return Seconds the edge takes at its fastest time of day.
+     */
+    public double minimumTravelTime(int edge) {
+        int profile = profileOf[edge];
+        return profile < 0 ? constantTime[edge] : profiles.getMinimum(profile);
+    }
+
+    public Route findRoute(Node start, Node goal, double departure) {
+        return findRoute(start, goal, departure, null, RoadClassPolicy.ALLOW_ALL, new SearchStats());
+    }
+
+    /**
+     * @param heuristic Optional lower bound on the remaining travel time at any time of day,
+     *                  turning the search into time-dependent A*; null for plain Dijkstra.
+     */
+    public Route findRoute(Node start, Node goal, double departure, Heuristic heuristic,
+                           RoadClassPolicy policy, SearchStats stats) {
+        int source = graph.getId(start);
+        int target = graph.getId(goal);
+        if (source < 0 || target < 0) {
+            return new Route(Collections.emptyList(), departure, Double.POSITIVE_INFINITY);
+        }
+
+        int n = graph.getNodeCount();
+        double[] arrival = new double[n];
+        int[] prev = new int[n];
+        boolean[] settled = new boolean[n];
+        Arrays.fill(arrival, Double.POSITIVE_INFINITY);
+        Arrays.fill(prev, -1);
+        IndexedMinHeap pq = new IndexedMinHeap(n);
+
+        arrival[source] = departure;
+        pq.insertOrDecrease(source, departure + estimate(heuristic, source, target));
+
+        while (!pq.isEmpty()) {
+            int current = pq.poll();
+            stats.nodeSettled();
+            if (current == target) {
+                stats.heapUsed(pq);
+                return new Route(graph.toPath(prev, target), departure, arrival[target]);
+            }
+            settled[current] = true;
+
+            double now = arrival[current];
+            for (int e = graph.firstEdge(current); e < graph.endEdge(current); e++) {
+                int neighbor = graph.getTarget(e);
+                if (settled[neighbor] || !policy.allows(graph.getRoadClass(e))) continue;
+                stats.edgeRelaxed();
+                double reached = now + travelTime(e, now);
+                if (reached < arrival[neighbor]) {
+                    arrival[neighbor] = reached;
+                    prev[neighbor] = current;
+                    pq.insertOrDecrease(neighbor, reached + estimate(heuristic, neighbor, target));
+                }
+            }
+        }
+        stats.heapUsed(pq);
+        return new Route(Collections.emptyList(), departure, Double.POSITIVE_INFINITY);
+    }
+
+    private double estimate(Heuristic heuristic, int node, int target) {
+        return heuristic == null ? 0.0 : heuristic.estimate(graph, node, target);
+    }
+
+    /**
+     * A route with its departure and arrival times in seconds; empty when the goal is unreachable.
+     */
+    public static final class Route {
+        private final List<Node> nodes;
+        private final double departure;
+        private final double arrival;
+
+        Route(List<Node> nodes, double departure, double arrival) {
+            this.nodes = nodes;
+            this.departure = departure;
+            this.arrival = arrival;
+        }
+
+        public List<Node> getNodes() {
+            return nodes;
+        }
+
+        public boolean isEmpty() {
+            return nodes.isEmpty();
+        }
+
+        public double getDeparture() {
+            return departure;
+        }
+
+        public double getArrival() {
+            return arrival;
+        }
+
+        public double getDuration() {
+            return arrival - departure;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.drivebot.algorithms.ch;
+
+import com.drivebot.model.Node;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Result of contraction hierarchy preprocessing: node ranks plus every original and
+ * shortcut edge. Shortcuts remember the two edges they replace so query results can
+ * be unpacked back to original nodes. Immutable and safe to share between queries.
+ * <p>
+ * Searches only move upwards in rank: the forward search uses {@code upEdges} indexed
+ * by tail, the backward search uses {@code downEdges} (edges from a higher-ranked
+ * tail) indexed by head.
+ */
+public final class ContractionHierarchy {
+    private static final int FORMAT_MAGIC = 0x44424348; // "DBCH"
+    private static final int FORMAT_VERSION = 1;
+
+    final Node[] nodes;
+    final Map<Node, Integer> ids;
+    final int[] rank;
+    final int[] edgeFrom;
+    final int[] edgeTo;
+    final double[] edgeWeight;
+    final int[] firstChild;
+    final int[] secondChild;
+
+    final int[] upOffsets;
+    final int[] upEdges;
+    final int[] downOffsets;
+    final int[] downEdges;
+
+    ContractionHierarchy(Node[] nodes, int[] rank, int[] edgeFrom, int[] edgeTo,
+                         double[] edgeWeight, int[] firstChild, int[] secondChild) {
+        this.nodes = nodes;
+        this.rank = rank;
+        this.edgeFrom = edgeFrom;
+        this.edgeTo = edgeTo;
+        this.edgeWeight = edgeWeight;
+        this.firstChild = firstChild;
+        this.secondChild = secondChild;
+
+        ids = new HashMap<>(nodes.length * 2);
+        for (int v = 0; v < nodes.length; v++) {
+            ids.put(nodes[v], v);
+        }
+
+        int n = nodes.length;
+        upOffsets = new int[n + 1];
+        downOffsets = new int[n + 1];
+        for (int e = 0; e < edgeFrom.length; e++) {
+            if (rank[edgeFrom[e]] < rank[edgeTo[e]]) {
+                upOffsets[edgeFrom[e] + 1]++;
+            } else {
+                downOffsets[edgeTo[e] + 1]++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            upOffsets[v + 1] += upOffsets[v];
+            downOffsets[v + 1] += downOffsets[v];
+        }
+        upEdges = new int[upOffsets[n]];
+        downEdges = new int[downOffsets[n]];
+        int[] upFill = Arrays.copyOf(upOffsets, n);
+        int[] downFill = Arrays.copyOf(downOffsets, n);
+        for (int e = 0; e < edgeFrom.length; e++) {
+            if (rank[edgeFrom[e]] < rank[edgeTo[e]]) {
+                upEdges[upFill[edgeFrom[e]]++] = e;
+            } else {
+                downEdges[downFill[edgeTo[e]]++] = e;
+            }
+        }
+    }
+
+    public int getNodeCount() {
+        return nodes.length;
+    }
+
+    public int getEdgeCount() {
+        return edgeFrom.length;
+    }
+
+    public int getShortcutCount() {
+        int shortcuts = 0;
+        for (int child : firstChild) {
+            if (child >= 0) shortcuts++;
+        }
+        return shortcuts;
+    }
+
+    public int getRank(Node node) {
+        Integer id = ids.get(node);
+        return id == null ? -1 : rank[id];
+    }
+
+    /**
+     * @return A query with its own search workspace. Queries are cheap to reuse but not thread-safe.
+     */
+    public ContractionHierarchyQuery newQuery() {
+        return new ContractionHierarchyQuery(this);
+    }
+
+    public List<Node> findPath(Node start, Node goal) {
+        return newQuery().findPath(start, goal);
+    }
+
+    public void writeTo(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(FORMAT_MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(nodes.length);
+        for (int v = 0; v < nodes.length; v++) {
+            out.writeUTF(nodes[v].getId());
+            out.writeDouble(nodes[v].getX());
+            out.writeDouble(nodes[v].getY());
+            out.writeInt(rank[v]);
+        }
+        out.writeInt(edgeFrom.length);
+        for (int e = 0; e < edgeFrom.length; e++) {
+            out.writeInt(edgeFrom[e]);
+            out.writeInt(edgeTo[e]);
+            out.writeDouble(edgeWeight[e]);
+            out.writeInt(firstChild[e]);
+            out.writeInt(secondChild[e]);
+        }
+        out.flush();
+    }
+
+    public static ContractionHierarchy readFrom(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != FORMAT_MAGIC) {
+            throw new IOException("Not a serialized contraction hierarchy");
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported contraction hierarchy format version " + version);
+        }
+        int n = in.readInt();
+        Node[] nodes = new Node[n];
+        int[] rank = new int[n];
+        for (int v = 0; v < n; v++) {
+            nodes[v] = new Node(in.readUTF(), in.readDouble(), in.readDouble());
+            rank[v] = in.readInt();
+        }
+        int m = in.readInt();
+        int[] from = new int[m];
+        int[] to = new int[m];
+        double[] weight = new double[m];
+        int[] child1 = new int[m];
+        int[] child2 = new int[m];
+        for (int e = 0; e < m; e++) {
+            from[e] = in.readInt();
+            to[e] = in.readInt();
+            weight[e] = in.readDouble();
+            child1[e] = in.readInt();
+            child2[e] = in.readInt();
+        }
+        return new ContractionHierarchy(nodes, rank, from, to, weight, child1, child2);
+    }
+}
@@ -0,0 +1,232 @@
+package com.drivebot.algorithms.ch;
+
+import com.drivebot.algorithms.IndexedMinHeap;
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Node;
+import com.drivebot.model.RoadClassPolicy;
+
+import java.util.Arrays;
+
+/**
+ * Contracts the nodes of a {@link CompactGraph} one by one, cheapest first, and adds a
+ * shortcut {@code u -> x} whenever removing {@code v} would lose the shortest path
+ * {@code u -> v -> x}. Node order is driven by edge difference plus the number of
+ * already contracted neighbours, with lazy priority updates.
+ */
+public final class ContractionHierarchyBuilder {
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+
+    private final CompactGraph graph;
+    private final int n;
+
+    // Edge store: original edges first, shortcuts appended during contraction
+    private int edgeCount;
+    private int[] from;
+    private int[] to;
+    private double[] weight;
+    private int[] firstChild;
+    private int[] secondChild;
+
+    // Dynamic adjacency as edge id lists
+    private final int[][] out;
+    private final int[][] in;
+    private final int[] outSize;
+    private final int[] inSize;
+
+    private final boolean[] contracted;
+    private final int[] contractedNeighbours;
+    private final int[] rank;
+
+    // Witness search workspace, reset through the touched list
+    private final double[] witnessDist;
+    private final int[] touched;
+    private int touchedCount;
+    private final IndexedMinHeap witnessHeap;
+
+    private ContractionHierarchyBuilder(CompactGraph graph, RoadClassPolicy policy) {
+        this.graph = graph;
+        this.n = graph.getNodeCount();
+        int m = graph.getEdgeCount();
+
+        from = new int[Math.max(m, 16)];
+        to = new int[from.length];
+        weight = new double[from.length];
+        firstChild = new int[from.length];
+        secondChild = new int[from.length];
+
+        out = new int[n][];
+        in = new int[n][];
+        outSize = new int[n];
+        inSize = new int[n];
+        for (int v = 0; v < n; v++) {
+            out[v] = new int[4];
+            in[v] = new int[4];
+        }
+
+        contracted = new boolean[n];
+        contractedNeighbours = new int[n];
+        rank = new int[n];
+
+        witnessDist = new double[n];
+        Arrays.fill(witnessDist, Double.POSITIVE_INFINITY);
+        touched = new int[n];
+        witnessHeap = new IndexedMinHeap(n);
+
+        for (int u = 0; u < n; u++) {
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                if (!policy.allows(graph.getRoadClass(e))) continue;
+                int v = graph.getTarget(e);
+                double w = graph.getWeight(e);
+                if (w < 0) {
+                    throw new IllegalArgumentException("Contraction hierarchies need non-negative weights");
+                }
+                if (u != v) {
+                    addEdge(u, v, w, -1, -1);
+                }
+            }
+        }
+    }
+
+    public static ContractionHierarchy build(CompactGraph graph) {
+        return build(graph, RoadClassPolicy.ALLOW_ALL);
+    }
+
+    /**
+     * @param policy Road classes left out of the hierarchy, e.g. freeways for cars that may not use them.
+     */
+    public static ContractionHierarchy build(CompactGraph graph, RoadClassPolicy policy) {
+        return new ContractionHierarchyBuilder(graph, policy).contractAll();
+    }
+
+    private ContractionHierarchy contractAll() {
+        IndexedMinHeap queue = new IndexedMinHeap(n);
+        for (int v = 0; v < n; v++) {
+            queue.insertOrDecrease(v, priority(v));
+        }
+
+        int nextRank = 0;
+        while (!queue.isEmpty()) {
+            int v = queue.poll();
+            double p = priority(v);
+            if (!queue.isEmpty() && p > queue.peekKey()) {
+                queue.insertOrDecrease(v, p); // lazy update: not the cheapest any more
+                continue;
+            }
+            processShortcuts(v, true);
+            contracted[v] = true;
+            rank[v] = nextRank++;
+            for (int i = 0; i < outSize[v]; i++) contractedNeighbours[to[out[v][i]]]++;
+            for (int i = 0; i < inSize[v]; i++) contractedNeighbours[from[in[v][i]]]++;
+        }
+
+        Node[] nodes = new Node[n];
+        for (int v = 0; v < n; v++) {
+            nodes[v] = graph.getNode(v);
+        }
+        return new ContractionHierarchy(nodes, rank,
+                Arrays.copyOf(from, edgeCount), Arrays.copyOf(to, edgeCount), Arrays.copyOf(weight, edgeCount),
+                Arrays.copyOf(firstChild, edgeCount), Arrays.copyOf(secondChild, edgeCount));
+    }
+
+    private double priority(int v) {
+        int removed = 0;
+        for (int i = 0; i < outSize[v]; i++) if (!contracted[to[out[v][i]]]) removed++;
+        for (int i = 0; i < inSize[v]; i++) if (!contracted[from[in[v][i]]]) removed++;
+        int added = processShortcuts(v, false);
+        return (added - removed) + contractedNeighbours[v];
+    }
+
+    /**
+     * Finds the shortcuts that contracting {@code v} requires.
+     * @param add true to insert them, false to only count them.
+     */
+    private int processShortcuts(int v, boolean add) {
+        int shortcuts = 0;
+        int inCount = inSize[v];
+        for (int i = 0; i < inCount; i++) {
+            int inEdge = in[v][i];
+            int u = from[inEdge];
+            if (contracted[u]) continue;
+
+            double maxCost = -1;
+            for (int j = 0; j < outSize[v]; j++) {
+                int x = to[out[v][j]];
+                if (contracted[x] || x == u) continue;
+                maxCost = Math.max(maxCost, weight[inEdge] + weight[out[v][j]]);
+            }
+            if (maxCost < 0) continue;
+
+            witnessSearch(u, v, maxCost);
+            int outCount = outSize[v];
+            for (int j = 0; j < outCount; j++) {
+                int outEdge = out[v][j];
+                int x = to[outEdge];
+                if (contracted[x] || x == u) continue;
+                double via = weight[inEdge] + weight[outEdge];
+                if (witnessDist[x] > via) {
+                    shortcuts++;
+                    if (add) {
+                        addEdge(u, x, via, inEdge, outEdge);
+                    }
+                }
+            }
+            resetWitness();
+        }
+        return shortcuts;
+    }
+
+    private void witnessSearch(int source, int avoid, double maxCost) {
+        witnessDist[source] = 0;
+        touched[touchedCount++] = source;
+        witnessHeap.insertOrDecrease(source, 0);
+        int settled = 0;
+        while (!witnessHeap.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+            if (witnessHeap.peekKey() > maxCost) break;
+            int u = witnessHeap.poll();
+            settled++;
+            for (int i = 0; i < outSize[u]; i++) {
+                int e = out[u][i];
+                int x = to[e];
+                if (x == avoid || contracted[x]) continue;
+                double d = witnessDist[u] + weight[e];
+                if (d < witnessDist[x]) {
+                    if (witnessDist[x] == Double.POSITIVE_INFINITY) {
+                        touched[touchedCount++] = x;
+                    }
+                    witnessDist[x] = d;
+                    witnessHeap.insertOrDecrease(x, d);
+                }
+            }
+        }
+    }
+
+    private void resetWitness() {
+        for (int i = 0; i < touchedCount; i++) {
+            witnessDist[touched[i]] = Double.POSITIVE_INFINITY;
+        }
+        touchedCount = 0;
+        witnessHeap.clear();
+    }
+
+    private void addEdge(int u, int v, double w, int child1, int child2) {
+        if (edgeCount == from.length) {
+            int capacity = from.length * 2;
+            from = Arrays.copyOf(from, capacity);
+            to = Arrays.copyOf(to, capacity);
+            weight = Arrays.copyOf(weight, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            secondChild = Arrays.copyOf(secondChild, capacity);
+        }
+        int e = edgeCount++;
+        from[e] = u;
+        to[e] = v;
+        weight[e] = w;
+        firstChild[e] = child1;
+        secondChild[e] = child2;
+
+        if (outSize[u] == out[u].length) out[u] = Arrays.copyOf(out[u], out[u].length * 2);
+        out[u][outSize[u]++] = e;
+        if (inSize[v] == in[v].length) in[v] = Arrays.copyOf(in[v], in[v].length * 2);
+        in[v][inSize[v]++] = e;
+    }
+}
@@ -0,0 +1,190 @@
+package com.drivebot.algorithms.ch;
+
+import com.drivebot.algorithms.IndexedMinHeap;
+import com.drivebot.algorithms.SearchStats;
+import com.drivebot.model.Node;
+
+import java.util.*;
+
+/**
+ * Bidirectional upward Dijkstra over a {@link ContractionHierarchy}. The forward search
+ * from the start and the backward search from the goal both only climb in rank; the
+ * shortest path goes through the highest node where they meet. The workspace is reset
+ * through touched lists, so a query costs time proportional to the nodes it visits.
+ */
+public final class ContractionHierarchyQuery {
+    private final ContractionHierarchy ch;
+    private final double[] forwardDist;
+    private final double[] backwardDist;
+    private final int[] forwardEdge;
+    private final int[] backwardEdge;
+    private final int[] touched;
+    private int touchedCount;
+    private final IndexedMinHeap forwardHeap;
+    private final IndexedMinHeap backwardHeap;
+
+    private double lastDistance;
+    private int lastSettled;
+
+    ContractionHierarchyQuery(ContractionHierarchy ch) {
+        this.ch = ch;
+        int n = ch.getNodeCount();
+        forwardDist = new double[n];
+        backwardDist = new double[n];
+        forwardEdge = new int[n];
+        backwardEdge = new int[n];
+        Arrays.fill(forwardDist, Double.POSITIVE_INFINITY);
+        Arrays.fill(backwardDist, Double.POSITIVE_INFINITY);
+        touched = new int[n + 1]; // start == goal is touched twice
+        forwardHeap = new IndexedMinHeap(n);
+        backwardHeap = new IndexedMinHeap(n);
+    }
+
+    public List<Node> findPath(Node start, Node goal) {
+        return findPath(start, goal, new SearchStats());
+    }
+
+    public List<Node> findPath(Node start, Node goal, SearchStats stats) {
+        Integer source = ch.ids.get(start);
+        Integer target = ch.ids.get(goal);
+        lastDistance = Double.POSITIVE_INFINITY;
+        lastSettled = 0;
+        if (source == null || target == null) {
+            return Collections.emptyList();
+        }
+
+        reset();
+        touch(source);
+        touch(target);
+        forwardDist[source] = 0;
+        forwardEdge[source] = -1;
+        backwardDist[target] = 0;
+        backwardEdge[target] = -1;
+        forwardHeap.insertOrDecrease(source, 0);
+        backwardHeap.insertOrDecrease(target, 0);
+
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+
+        while (true) {
+            double forwardMin = forwardHeap.isEmpty() ? Double.POSITIVE_INFINITY : forwardHeap.peekKey();
+            double backwardMin = backwardHeap.isEmpty() ? Double.POSITIVE_INFINITY : backwardHeap.peekKey();
+            if (Math.min(forwardMin, backwardMin) >= best) break; // also ends when both heaps are empty
+
+            if (forwardMin <= backwardMin) {
+                int u = forwardHeap.poll();
+                lastSettled++;
+                stats.nodeSettled();
+                if (forwardDist[u] + backwardDist[u] < best) {
+                    best = forwardDist[u] + backwardDist[u];
+                    meeting = u;
+                }
+                for (int i = ch.upOffsets[u]; i < ch.upOffsets[u + 1]; i++) {
+                    int e = ch.upEdges[i];
+                    stats.edgeRelaxed();
+                    int v = ch.edgeTo[e];
+                    double d = forwardDist[u] + ch.edgeWeight[e];
+                    if (d < forwardDist[v]) {
+                        touch(v);
+                        forwardDist[v] = d;
+                        forwardEdge[v] = e;
+                        forwardHeap.insertOrDecrease(v, d);
+                    }
+                }
+            } else {
+                int u = backwardHeap.poll();
+                lastSettled++;
+                stats.nodeSettled();
+                if (forwardDist[u] + backwardDist[u] < best) {
+                    best = forwardDist[u] + backwardDist[u];
+                    meeting = u;
+                }
+                for (int i = ch.downOffsets[u]; i < ch.downOffsets[u + 1]; i++) {
+                    int e = ch.downEdges[i];
+                    stats.edgeRelaxed();
+                    int v = ch.edgeFrom[e];
+                    double d = backwardDist[u] + ch.edgeWeight[e];
+                    if (d < backwardDist[v]) {
+                        touch(v);
+                        backwardDist[v] = d;
+                        backwardEdge[v] = e;
+                        backwardHeap.insertOrDecrease(v, d);
+                    }
+                }
+            }
+        }
+
+        stats.heapUsed(forwardHeap);
+        stats.heapUsed(backwardHeap);
+        if (meeting < 0) {
+            return Collections.emptyList();
+        }
+        lastDistance = best;
+        return unpack(source, meeting);
+    }
+
+    public ContractionHierarchy getHierarchy() {
+        return ch;
+    }
+
+    /**
+     * @return Cost of the last path found, or infinity if there was none.
+     */
+    public double getLastDistance() {
+        return lastDistance;
+    }
+
+    /**
+     * @return Nodes settled by both directions during the last query.
+     */
+    public int getLastSettledCount() {
+        return lastSettled;
+    }
+
+    private List<Node> unpack(int source, int meeting) {
+        // Hierarchy edges from the start up to the meeting node, then down to the goal
+        ArrayDeque<Integer> upward = new ArrayDeque<>();
+        for (int v = meeting; forwardEdge[v] >= 0; v = ch.edgeFrom[forwardEdge[v]]) {
+            upward.push(forwardEdge[v]);
+        }
+        List<Integer> route = new ArrayList<>(upward);
+        for (int v = meeting; backwardEdge[v] >= 0; v = ch.edgeTo[backwardEdge[v]]) {
+            route.add(backwardEdge[v]);
+        }
+
+        List<Node> path = new ArrayList<>();
+        path.add(ch.nodes[source]);
+        ArrayDeque<Integer> stack = new ArrayDeque<>();
+        for (int edge : route) {
+            stack.push(edge);
+            while (!stack.isEmpty()) {
+                int e = stack.pop();
+                if (ch.firstChild[e] < 0) {
+                    path.add(ch.nodes[ch.edgeTo[e]]);
+                } else {
+                    stack.push(ch.secondChild[e]);
+                    stack.push(ch.firstChild[e]);
+                }
+            }
+        }
+        return path;
+    }
+
+    private void touch(int v) {
+        if (forwardDist[v] == Double.POSITIVE_INFINITY && backwardDist[v] == Double.POSITIVE_INFINITY) {
+            touched[touchedCount++] = v;
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < touchedCount; i++) {
+            forwardDist[touched[i]] = Double.POSITIVE_INFINITY;
+            backwardDist[touched[i]] = Double.POSITIVE_INFINITY;
+        }
+        touchedCount = 0;
+        forwardHeap.clear();
+        backwardHeap.clear();
+        forwardHeap.resetCounters();
+        backwardHeap.resetCounters();
+    }
+}
@@ -0,0 +1,70 @@
+package com.drivebot.dispatch;
+
+import com.drivebot.model.Node;
+
+import java.util.List;
+
+/**
+ * One vehicle sent to one ride, with the cost of driving to the pickup and the profit of the trip.
+ */
+public final class Assignment {
+    private final int vehicleIndex;
+    private final Node vehicle;
+    private final RideRequest ride;
+    private final double pickupCost;
+    private final List<Node> trip;
+    private final double profit;
+
+    Assignment(int vehicleIndex, Node vehicle, RideRequest ride, double pickupCost, List<Node> trip, double profit) {
+        this.vehicleIndex = vehicleIndex;
+        this.vehicle = vehicle;
+        this.ride = ride;
+        this.pickupCost = pickupCost;
+        this.trip = trip;
+        this.profit = profit;
+    }
+
+    /**
+     * @return Position of the vehicle in the batch passed to {@link Dispatcher#dispatch}.
+     */
+    public int getVehicleIndex() {
+        return vehicleIndex;
+    }
+
+    /**
+     * @return Where the vehicle was when the batch was dispatched.
+     */
+    public Node getVehicle() {
+        return vehicle;
+    }
+
+    public RideRequest getRide() {
+        return ride;
+    }
+
+    /**
+     * @return Routing cost from the vehicle to the pickup.
+     */
+    public double getPickupCost() {
+        return pickupCost;
+    }
+
+    /**
+     * @return The route from the pickup to the dropoff.
+     */
+    public List<Node> getTrip() {
+        return trip;
+    }
+
+    /**
+     * @return Sum of {@link com.drivebot.utils.PricingCalculator#computeProfit} over the trip's edges.
+     */
+    public double getProfit() {
+        return profit;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s -> %s pickup=%.2f profit=%.2f", vehicle.getId(), ride, pickupCost, profit);
+    }
+}
@@ -0,0 +1,102 @@
+package com.drivebot.dispatch;
+
+import com.drivebot.DriveBotRouter;
+import com.drivebot.SnapshotRoute;
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Node;
+import com.drivebot.utils.PricingTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Assigns a batch of idle vehicles to a batch of pending rides in one go, instead of
+ * routing every ride from every candidate vehicle:
+ * <ol>
+ *   <li>Pickup costs from one bounded one-to-many search per vehicle
+ *       ({@link DriveBotRouter#computeMatrixWithin}); pickups beyond the radius are no
+ *       candidates, and neither are rides whose dropoff cannot be reached.</li>
+ *   <li>A {@link MinCostMatching} over the candidates: as many rides as possible served,
+ *       at the smallest total pickup cost.</li>
+ *   <li>One route per matched ride from pickup to dropoff, priced by a {@link PricingTable}
+ *       of the snapshot it was routed on, built once per snapshot and batch. The rare ride that only the road policy keeps from its dropoff is dropped here
+ *       and its vehicle stays idle.</li>
+ * </ol>
+ * Trips go through {@link DriveBotRouter#computeSnapshotRoute}, so they use the router's engine
+ * and cache and are routed in parallel; only the matched rides are routed.
+ * Safe to call from several threads as long as they dispatch disjoint vehicles.
+ */
+public final class Dispatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Dispatcher.class);
+
+    private final DriveBotRouter router;
+    private final double pickupRadius;
+
+    /**
+     * @param pickupRadius Largest routing cost a vehicle may drive to a pickup.
+     */
+    public Dispatcher(DriveBotRouter router, double pickupRadius) {
+        if (!(pickupRadius >= 0)) {
+            throw new IllegalArgumentException("Pickup radius must be non-negative: " + pickupRadius);
+        }
+        this.router = router;
+        this.pickupRadius = pickupRadius;
+    }
+
+    public double getPickupRadius() {
+        return pickupRadius;
+    }
+
+    /**
+     * @param vehicles Positions of the idle vehicles.
+     * @return The assignments in vehicle order. Vehicles and rides that appear in none
+     *         stay for the next batch.
+     */
+    public List<Assignment> dispatch(List<Node> vehicles, List<RideRequest> rides) {
+        long started = System.nanoTime();
+        List<Node> pickups = rides.stream().map(RideRequest::getPickup).collect(Collectors.toList());
+        double[][] costs = router.computeMatrixWithin(vehicles, pickups, pickupRadius).getCosts();
+        for (int j = 0; j < rides.size(); j++) {
+            if (!router.isReachable(rides.get(j).getPickup(), rides.get(j).getDropoff())) {
+                for (double[] row : costs) row[j] = Double.POSITIVE_INFINITY;
+            }
+        }
+        long matching = System.nanoTime();
+        int[] match = MinCostMatching.solve(costs);
+        long routing = System.nanoTime();
+
+        // Trips routed across a publish land on different snapshots, each priced by its own table
+        Map<CompactGraph, PricingTable> pricing = new ConcurrentHashMap<>();
+        List<Assignment> assignments = IntStream.range(0, match.length).parallel()
+                .filter(i -> match[i] >= 0)
+                .mapToObj(i -> {
+                    RideRequest ride = rides.get(match[i]);
+                    SnapshotRoute trip = router.computeSnapshotRoute(ride.getPickup(), ride.getDropoff());
+                    return trip.getPath().isEmpty() ? null
+                            : new Assignment(i, vehicles.get(i), ride, costs[i][match[i]], trip.getPath(),
+                                    profit(trip, pricing));
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        long finished = System.nanoTime();
+        LOG.debug("Dispatched {} of {} rides to {} vehicles in {} ms (matrix {} ms, matching {} ms, trips {} ms)",
+                assignments.size(), rides.size(), vehicles.size(), (finished - started) / 1_000_000,
+                (matching - started) / 1_000_000, (routing - matching) / 1_000_000, (finished - routing) / 1_000_000);
+        return assignments;
+    }
+
+    /**
+     * Profit of a trip, over the cheapest of parallel edges the way the router drives.
+     * @param pricing Tables by snapshot; a fresh table is only read, so trips share it.
+     * @throws IllegalArgumentException If the trip uses an edge its own snapshot does not have.
+     */
+    private static double profit(SnapshotRoute trip, Map<CompactGraph, PricingTable> pricing) {
+        PricingTable table = pricing.computeIfAbsent(trip.getSnapshot(), PricingTable::of);
+        return table.quoteProfit(table.toEdgeIds(trip.getPath()));
+    }
+}
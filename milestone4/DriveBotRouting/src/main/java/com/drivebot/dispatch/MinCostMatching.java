@@ -0,0 +1,159 @@
+package com.drivebot.dispatch;
+
+import com.drivebot.algorithms.IndexedMinHeap;
+
+import java.util.*;
+
+/**
+ * Minimum-cost bipartite matching on a sparse cost matrix (Hungarian method with shortest
+ * augmenting paths, as in Jonker-Volgenant). Only finite entries become edges, so a row
+ * costs time in proportion to its candidates, not to the number of columns.
+ * <p>
+ * Every row gets a private "unmatched" column that costs more than any full matching,
+ * so the result matches as many rows as possible and, among those matchings, has the
+ * smallest total cost. Rows are first matched greedily to their cheapest column where it
+ * is free; each remaining row then runs one Dijkstra over reduced costs that stops at the
+ * first free column it reaches.
+ */
+public final class MinCostMatching {
+
+    private MinCostMatching() {
+    }
+
+    /**
+     * @param costs {@code costs[row][column]}, infinity where the pair must not be matched.
+     * @return The column of every row, -1 where the row stays unmatched.
+     */
+    public static int[] solve(double[][] costs) {
+        int rows = costs.length;
+        int columns = rows == 0 ? 0 : costs[0].length;
+
+        // Finite entries in CSR form, row by row
+        int[] first = new int[rows + 1];
+        for (int i = 0; i < rows; i++) {
+            int finite = 0;
+            for (double c : costs[i]) {
+                if (c != Double.POSITIVE_INFINITY) finite++;
+            }
+            first[i + 1] = first[i] + finite;
+        }
+        int[] column = new int[first[rows]];
+        double[] cost = new double[first[rows]];
+        double largest = 0;
+        for (int i = 0, k = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                double c = costs[i][j];
+                if (c == Double.POSITIVE_INFINITY) continue;
+                if (Double.isNaN(c) || c == Double.NEGATIVE_INFINITY) {
+                    throw new IllegalArgumentException("Cost of " + i + ", " + j + " is " + c);
+                }
+                column[k] = j;
+                cost[k++] = c;
+                largest = Math.max(largest, Math.abs(c));
+            }
+        }
+        // More than twice what any matching of real pairs can cost, so leaving a row
+        // unmatched never pays off while a longer augmenting path exists
+        double unmatched = 2 * (largest + 1) * (Math.min(rows, columns) + 1);
+
+        // Columns [0, columns) are real, column columns + i is row i's unmatched column
+        int total = columns + rows;
+        double[] u = new double[rows];
+        double[] v = new double[total];
+        int[] rowMatch = new int[rows];
+        int[] columnMatch = new int[total];
+        Arrays.fill(rowMatch, -1);
+        Arrays.fill(columnMatch, -1);
+
+        // Row minima make every reduced cost non-negative; match where the minimum is free
+        for (int i = 0; i < rows; i++) {
+            int best = columns + i;
+            double min = unmatched;
+            for (int k = first[i]; k < first[i + 1]; k++) {
+                if (cost[k] < min) {
+                    min = cost[k];
+                    best = column[k];
+                }
+            }
+            u[i] = min;
+            if (columnMatch[best] < 0) {
+                rowMatch[i] = best;
+                columnMatch[best] = i;
+            }
+        }
+
+        double[] dist = new double[total];
+        int[] via = new int[total];          // row a column was reached from
+        int[] reached = new int[total];      // == stamp once the column has a tentative distance
+        int[] settled = new int[total];      // == stamp once the column left the heap
+        int[] settledColumns = new int[total];
+        double[] rowDist = new double[rows];
+        int[] settledRows = new int[rows];
+        IndexedMinHeap heap = new IndexedMinHeap(total);
+        int stamp = 0;
+
+        for (int r = 0; r < rows; r++) {
+            if (rowMatch[r] >= 0) continue;
+            stamp++;
+            heap.clear();
+            int columnCount = 0;
+            int rowCount = 0;
+            rowDist[r] = 0;
+            settledRows[rowCount++] = r;
+
+            int row = r;
+            double d = 0;
+            int free;
+            while (true) {
+                // Relax the row's candidates and its unmatched column
+                for (int k = first[row]; k <= first[row + 1]; k++) {
+                    int j = k < first[row + 1] ? column[k] : columns + row;
+                    if (settled[j] == stamp) continue;
+                    double c = k < first[row + 1] ? cost[k] : unmatched;
+                    double next = d + c - u[row] - v[j];
+                    if (reached[j] != stamp || next < dist[j]) {
+                        reached[j] = stamp;
+                        dist[j] = next;
+                        via[j] = row;
+                        heap.insertOrDecrease(j, next);
+                    }
+                }
+                int j = heap.poll();
+                settled[j] = stamp;
+                if (columnMatch[j] < 0) {
+                    free = j;
+                    break;
+                }
+                settledColumns[columnCount++] = j;
+                row = columnMatch[j];
+                d = dist[j];
+                rowDist[row] = d;
+                settledRows[rowCount++] = row;
+            }
+
+            // Shift the duals so the path becomes tight and reduced costs stay non-negative
+            double length = dist[free];
+            for (int k = 0; k < rowCount; k++) {
+                u[settledRows[k]] += length - rowDist[settledRows[k]];
+            }
+            for (int k = 0; k < columnCount; k++) {
+                v[settledColumns[k]] -= length - dist[settledColumns[k]];
+            }
+
+            // Flip the augmenting path back from the free column
+            for (int j = free; ; ) {
+                int i = via[j];
+                int previous = rowMatch[i];
+                rowMatch[i] = j;
+                columnMatch[j] = i;
+                if (i == r) break;
+                j = previous;
+            }
+        }
+
+        for (int i = 0; i < rows; i++) {
+            if (rowMatch[i] >= columns) rowMatch[i] = -1;
+        }
+        return rowMatch;
+    }
+}
@@ -0,0 +1,35 @@
+package com.drivebot.dispatch;
+
+import com.drivebot.model.Node;
+
+/**
+ * A pending ride: where the passenger waits and where they want to go.
+ */
+public final class RideRequest {
+    private final String id;
+    private final Node pickup;
+    private final Node dropoff;
+
+    public RideRequest(String id, Node pickup, Node dropoff) {
+        this.id = id;
+        this.pickup = pickup;
+        this.dropoff = dropoff;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Node getPickup() {
+        return pickup;
+    }
+
+    public Node getDropoff() {
+        return dropoff;
+    }
+
+    @Override
+    public String toString() {
+        return id + "(" + pickup.getId() + " -> " + dropoff.getId() + ")";
+    }
+}
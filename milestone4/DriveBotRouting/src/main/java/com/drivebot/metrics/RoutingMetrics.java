@@ -0,0 +1,198 @@
+package com.drivebot.metrics;
+
+import com.drivebot.SearchMethod;
+import com.drivebot.algorithms.SearchStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-query search counters aggregated across threads: the method that answered, the
+ * latency, and the nodes settled, edges relaxed and heap operations of the search.
+ * Everything is kept in {@link LongAdder}s and {@link StripedHistogram}s, so recording
+ * never locks. A router without metrics does not time its queries at all.
+ * <p>
+ * The figures can be read through {@link #summary()}, registered as an MXBean, or logged
+ * periodically with {@link #startReporting(long)}.
+ */
+public final class RoutingMetrics implements RoutingMetricsMXBean, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RoutingMetrics.class);
+
+    private final LongAdder[] queries = new LongAdder[SearchMethod.values().length];
+    private final StripedHistogram latencyNanos = new StripedHistogram();
+    private final StripedHistogram nodesSettled = new StripedHistogram();
+    private final StripedHistogram edgesRelaxed = new StripedHistogram();
+    private final LongAdder heapPushes = new LongAdder();
+    private final LongAdder decreaseKeys = new LongAdder();
+
+    private ObjectName registeredName;
+    private ScheduledExecutorService reporter;
+
+    public RoutingMetrics() {
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param stats Work of the search, or null when the query did not search (cache hits, dead ends).
+     */
+    public void record(SearchMethod method, long latencyNanos, SearchStats stats) {
+        queries[method.ordinal()].increment();
+        this.latencyNanos.record(latencyNanos);
+        if (stats != null) {
+            nodesSettled.record(stats.getNodesSettled());
+            edgesRelaxed.record(stats.getEdgesRelaxed());
+            heapPushes.add(stats.getHeapPushes());
+            decreaseKeys.add(stats.getDecreaseKeys());
+        }
+    }
+
+    public long getQueryCount(SearchMethod method) {
+        return queries[method.ordinal()].sum();
+    }
+
+    public StripedHistogram getLatencyHistogram() {
+        return latencyNanos;
+    }
+
+    public StripedHistogram getNodesSettledHistogram() {
+        return nodesSettled;
+    }
+
+    public StripedHistogram getEdgesRelaxedHistogram() {
+        return edgesRelaxed;
+    }
+
+    @Override
+    public long getQueryCount() {
+        long total = 0;
+        for (LongAdder count : queries) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public Map<String, Long> getQueriesByMethod() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (SearchMethod method : SearchMethod.values()) {
+            long count = getQueryCount(method);
+            if (count > 0) counts.put(method.name(), count);
+        }
+        return counts;
+    }
+
+    @Override
+    public long getLatencyP50Micros() {
+        return latencyNanos.getValueAtPercentile(50) / 1000;
+    }
+
+    @Override
+    public long getLatencyP99Micros() {
+        return latencyNanos.getValueAtPercentile(99) / 1000;
+    }
+
+    @Override
+    public long getLatencyMaxMicros() {
+        return latencyNanos.getMax() / 1000;
+    }
+
+    @Override
+    public double getMeanNodesSettled() {
+        return nodesSettled.getMean();
+    }
+
+    @Override
+    public double getMeanEdgesRelaxed() {
+        return edgesRelaxed.getMean();
+    }
+
+    @Override
+    public long getHeapPushCount() {
+        return heapPushes.sum();
+    }
+
+    @Override
+    public long getDecreaseKeyCount() {
+        return decreaseKeys.sum();
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder count : queries) {
+            count.reset();
+        }
+        latencyNanos.reset();
+        nodesSettled.reset();
+        edgesRelaxed.reset();
+        heapPushes.reset();
+        decreaseKeys.reset();
+    }
+
+    /**
+     * @return One line with the query mix, latency percentiles and mean search work.
+     */
+    public String summary() {
+        return String.format("queries=%d %s latency p50=%dus p99=%dus max=%dus settled=%.1f relaxed=%.1f pushes=%d decreases=%d",
+                getQueryCount(), getQueriesByMethod(), getLatencyP50Micros(), getLatencyP99Micros(),
+                getLatencyMaxMicros(), getMeanNodesSettled(), getMeanEdgesRelaxed(),
+                getHeapPushCount(), getDecreaseKeyCount());
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server as
+     * {@code com.drivebot:type=RoutingMetrics,name=<name>}.
+     */
+    public synchronized ObjectName registerMBean(String name) throws JMException {
+        unregisterMBean();
+        ObjectName objectName = new ObjectName("com.drivebot:type=RoutingMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        registeredName = objectName;
+        return objectName;
+    }
+
+    public synchronized void unregisterMBean() throws JMException {
+        if (registeredName != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(registeredName)) server.unregisterMBean(registeredName);
+            registeredName = null;
+        }
+    }
+
+    /**
+     * Logs {@link #summary()} at info level every period from a daemon thread.
+     */
+    public synchronized void startReporting(long periodMillis) {
+        stopReporting();
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "routing-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> LOG.info(summary()), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopReporting() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    @Override
+    public void close() throws JMException {
+        stopReporting();
+        unregisterMBean();
+    }
+}
@@ -0,0 +1,29 @@
+package com.drivebot.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of a {@link RoutingMetrics}; latencies are in microseconds.
+ */
+public interface RoutingMetricsMXBean {
+
+    long getQueryCount();
+
+    Map<String, Long> getQueriesByMethod();
+
+    long getLatencyP50Micros();
+
+    long getLatencyP99Micros();
+
+    long getLatencyMaxMicros();
+
+    double getMeanNodesSettled();
+
+    double getMeanEdgesRelaxed();
+
+    long getHeapPushCount();
+
+    long getDecreaseKeyCount();
+
+    void reset();
+}
@@ -0,0 +1,251 @@
+package com.drivebot.model;
+
+import java.util.*;
+
+/**
+ * Frozen compressed-sparse-row (CSR) view of a {@link Graph}.
+ * Nodes get dense int ids in the graph's iteration order; the outgoing edges of
+ * node {@code u} are the edge ids in {@code [firstEdge(u), endEdge(u))}.
+ * Incoming edges are indexed the same way: {@code getIncomingEdge(i)} for
+ * {@code i} in {@code [firstIncoming(v), endIncoming(v))} are the ids of edges into {@code v}.
+ * The object {@link Graph} stays the mutable editing model, take a new
+ * snapshot after editing it. Snapshots are immutable and safe to share between threads;
+ * {@link #withWeights(double[], long)} derives a new one that only differs in weights.
+ */
+public final class CompactGraph {
+    private final Node[] nodes;
+    private final Map<Node, Integer> ids;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] sources;
+    private final int[] inOffsets;
+    private final int[] inEdges;
+    private final double[] weights;
+    private final byte[] roadClasses;
+    private final Edge[] edges;
+    private final Map<Edge, Integer> edgeIds;
+    private final boolean negativeEdge;
+    private final long weightEpoch;
+    private final long structureVersion;
+
+    private CompactGraph(Node[] nodes, Map<Node, Integer> ids, int[] offsets, int[] targets,
+                         double[] weights, byte[] roadClasses, Edge[] edges,
+                         long weightEpoch, long structureVersion) {
+        this.nodes = nodes;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.sources = new int[targets.length];
+        this.inOffsets = new int[nodes.length + 1];
+        this.inEdges = new int[targets.length];
+        this.edgeIds = new IdentityHashMap<>(edges.length);
+        this.weights = weights;
+        this.roadClasses = roadClasses;
+        this.edges = edges;
+        this.negativeEdge = containsNegative(weights);
+        this.weightEpoch = weightEpoch;
+        this.structureVersion = structureVersion;
+
+        for (int u = 0; u < nodes.length; u++) {
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                sources[e] = u;
+                inOffsets[targets[e] + 1]++;
+                edgeIds.put(edges[e], e);
+            }
+        }
+        for (int v = 0; v < nodes.length; v++) {
+            inOffsets[v + 1] += inOffsets[v];
+        }
+        int[] fill = Arrays.copyOf(inOffsets, nodes.length);
+        for (int e = 0; e < targets.length; e++) {
+            inEdges[fill[targets[e]]++] = e;
+        }
+    }
+
+    /**
+     * Shares the topology of {@code base} and takes over {@code weights}, which the caller must not modify afterwards.
+     */
+    private CompactGraph(CompactGraph base, double[] weights, long weightEpoch) {
+        this.nodes = base.nodes;
+        this.ids = base.ids;
+        this.offsets = base.offsets;
+        this.targets = base.targets;
+        this.sources = base.sources;
+        this.inOffsets = base.inOffsets;
+        this.inEdges = base.inEdges;
+        this.roadClasses = base.roadClasses;
+        this.edges = base.edges;
+        this.edgeIds = base.edgeIds;
+        this.structureVersion = base.structureVersion;
+        this.weights = weights;
+        this.negativeEdge = containsNegative(weights);
+        this.weightEpoch = weightEpoch;
+    }
+
+    public static CompactGraph of(Graph graph) {
+        Set<Node> allNodes = graph.getAllNodes();
+        int n = allNodes.size();
+        Node[] nodes = new Node[n];
+        Map<Node, Integer> ids = new HashMap<>(n * 2);
+        int[] offsets = new int[n + 1];
+
+        int id = 0;
+        for (Node node : allNodes) {
+            nodes[id] = node;
+            ids.put(node, id);
+            offsets[id + 1] = offsets[id] + graph.getEdges(node).size();
+            id++;
+        }
+
+        int m = offsets[n];
+        int[] targets = new int[m];
+        double[] weights = new double[m];
+        byte[] roadClasses = new byte[m];
+        Edge[] edges = new Edge[m];
+
+        int e = 0;
+        for (Node node : nodes) {
+            for (Edge edge : graph.getEdges(node)) {
+                targets[e] = ids.get(edge.getTo());
+                weights[e] = edge.getWeight();
+                roadClasses[e] = edge.getRoadClassCode();
+                edges[e] = edge;
+                e++;
+            }
+        }
+        return new CompactGraph(nodes, ids, offsets, targets, weights, roadClasses, edges,
+                graph.getWeightEpoch(), graph.getStructureVersion());
+    }
+
+    /**
+     * @param weights New weight of every edge id; the array is owned by the returned snapshot.
+     * @param weightEpoch The graph weight epoch the new weights belong to.
+     * @return A snapshot with the same nodes and edges as this one and the given weights.
+     */
+    public CompactGraph withWeights(double[] weights, long weightEpoch) {
+        if (weights.length != targets.length) {
+            throw new IllegalArgumentException("Expected " + targets.length + " weights, got " + weights.length);
+        }
+        return new CompactGraph(this, weights, weightEpoch);
+    }
+
+    /**
+     * @return A copy of the weight array, e.g. to patch and pass to {@link #withWeights(double[], long)}.
+     */
+    public double[] copyWeights() {
+        return weights.clone();
+    }
+
+    /**
+     * @return The {@link Graph#getWeightEpoch()} these weights were taken at.
+     */
+    public long getWeightEpoch() {
+        return weightEpoch;
+    }
+
+    /**
+     * @return The {@link Graph#getStructureVersion()} the nodes and edges were taken at.
+     */
+    public long getStructureVersion() {
+        return structureVersion;
+    }
+
+    public int getNodeCount() {
+        return nodes.length;
+    }
+
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * @return The dense id of the node, or -1 if the node is not part of this snapshot.
+     */
+    public int getId(Node node) {
+        Integer id = ids.get(node);
+        return id == null ? -1 : id;
+    }
+
+    public Node getNode(int id) {
+        return nodes[id];
+    }
+
+    public int firstEdge(int node) {
+        return offsets[node];
+    }
+
+    public int endEdge(int node) {
+        return offsets[node + 1];
+    }
+
+    public int getTarget(int edge) {
+        return targets[edge];
+    }
+
+    public int getSource(int edge) {
+        return sources[edge];
+    }
+
+    public int firstIncoming(int node) {
+        return inOffsets[node];
+    }
+
+    public int endIncoming(int node) {
+        return inOffsets[node + 1];
+    }
+
+    /**
+     * @return Id of the {@code i}-th edge in the incoming index, see {@link #firstIncoming(int)}.
+     */
+    public int getIncomingEdge(int i) {
+        return inEdges[i];
+    }
+
+    public double getWeight(int edge) {
+        return weights[edge];
+    }
+
+    public byte getRoadClass(int edge) {
+        return roadClasses[edge];
+    }
+
+    public Edge getEdge(int edge) {
+        return edges[edge];
+    }
+
+    /**
+     * @return The id of the edge in this snapshot, or -1 if it was added after the snapshot was taken.
+     */
+    public int getEdgeId(Edge edge) {
+        Integer id = edgeIds.get(edge);
+        return id == null ? -1 : id;
+    }
+
+    public boolean hasNegativeEdge() {
+        return negativeEdge;
+    }
+
+    private static boolean containsNegative(double[] weights) {
+        for (double weight : weights) {
+            if (weight < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walks a predecessor array back from {@code goal} and maps the ids to nodes.
+     * @param prev Predecessor of every node id, -1 for the start and unreached nodes.
+     * @param goal Id of the last node on the path.
+     * @return The path from the start to the goal.
+     */
+    public List<Node> toPath(int[] prev, int goal) {
+        ArrayList<Node> path = new ArrayList<>();
+        for (int current = goal; current != -1; current = prev[current]) {
+            path.add(nodes[current]);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+}
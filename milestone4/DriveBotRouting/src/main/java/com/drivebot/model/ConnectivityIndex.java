@@ -0,0 +1,253 @@
+package com.drivebot.model;
+
+import java.util.*;
+
+/**
+ * Strongly-connected-component labelling of a {@link Graph}, used to answer
+ * "can start reach goal" without searching.
+ * <p>
+ * Labels come out of Tarjan's algorithm in reverse topological order, so an edge
+ * between two components always points from the larger label to the smaller one.
+ * That gives O(1) answers for the common cases (same component: reachable, smaller
+ * start label: unreachable); the rest walks the small condensation DAG.
+ * <p>
+ * The index follows edits to its graph: edges that keep the label order only
+ * touch the condensation, edges that could merge or split components mark the
+ * labelling stale and it is rebuilt on the next query.
+ */
+public final class ConnectivityIndex {
+    private final Graph graph;
+    private final Map<Node, Integer> labels = new HashMap<>();
+    private final List<Map<Integer, Integer>> successors = new ArrayList<>(); // label -> (label -> edge count)
+    private boolean stale = true;
+    private int rebuilds;
+
+    ConnectivityIndex(Graph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * @return A copy of the current labelling that no longer follows edits to the graph.
+     *         It is never modified again, so any number of threads may query it.
+     */
+    public ConnectivityIndex freeze() {
+        ensureFresh();
+        ConnectivityIndex copy = new ConnectivityIndex(graph);
+        copy.labels.putAll(labels);
+        for (Map<Integer, Integer> out : successors) {
+            copy.successors.add(new HashMap<>(out));
+        }
+        copy.stale = false;
+        return copy;
+    }
+
+    public boolean isReachable(Node start, Node goal) {
+        ensureFresh();
+        Integer from = labels.get(start);
+        Integer to = labels.get(goal);
+        if (from == null || to == null) {
+            return start.equals(goal);
+        }
+        if (from.intValue() == to.intValue()) {
+            return true;
+        }
+        if (from < to) {
+            return false;
+        }
+        return reachableComponents(from, to).get(to);
+    }
+
+    public boolean isStronglyConnected(Node a, Node b) {
+        ensureFresh();
+        Integer la = labels.get(a);
+        Integer lb = labels.get(b);
+        return la != null && la.equals(lb);
+    }
+
+    /**
+     * @return The component label of the node, or -1 if the node is not in the graph.
+     */
+    public int getComponent(Node node) {
+        ensureFresh();
+        Integer label = labels.get(node);
+        return label == null ? -1 : label;
+    }
+
+    public int getComponentCount() {
+        ensureFresh();
+        return successors.size();
+    }
+
+    /**
+     * @return How often the labelling was recomputed from scratch.
+     */
+    public int getRebuildCount() {
+        return rebuilds;
+    }
+
+    /**
+     * Checks every source against every target, walking the condensation once per
+     * distinct source component.
+     * @return Index pairs {@code {sourceIndex, targetIndex}} with no route between them.
+     */
+    public List<int[]> findUnreachablePairs(List<Node> sources, List<Node> targets) {
+        ensureFresh();
+        int[] targetLabels = new int[targets.size()];
+        for (int j = 0; j < targets.size(); j++) {
+            Integer label = labels.get(targets.get(j));
+            targetLabels[j] = label == null ? -1 : label;
+        }
+
+        Map<Integer, BitSet> reachableByComponent = new HashMap<>();
+        List<int[]> unreachable = new ArrayList<>();
+        for (int i = 0; i < sources.size(); i++) {
+            Integer from = labels.get(sources.get(i));
+            BitSet reachable = from == null ? new BitSet()
+                    : reachableByComponent.computeIfAbsent(from, label -> reachableComponents(label, 0));
+            for (int j = 0; j < targetLabels.length; j++) {
+                if (targetLabels[j] < 0 || !reachable.get(targetLabels[j])) {
+                    if (!sources.get(i).equals(targets.get(j))) {
+                        unreachable.add(new int[]{i, j});
+                    }
+                }
+            }
+        }
+        return unreachable;
+    }
+
+    void onNodeAdded(Node node) {
+        if (stale || labels.containsKey(node)) return;
+        labels.put(node, successors.size());
+        successors.add(new HashMap<>());
+    }
+
+    void onEdgeAdded(Edge edge) {
+        if (stale) return;
+        onNodeAdded(edge.getFrom());
+        onNodeAdded(edge.getTo());
+        int from = labels.get(edge.getFrom());
+        int to = labels.get(edge.getTo());
+        if (from == to) return;
+        if (from > to) {
+            successors.get(from).merge(to, 1, Integer::sum);
+        } else {
+            stale = true; // may close a cycle and merge components
+        }
+    }
+
+    void onEdgeRemoved(Edge edge) {
+        if (stale) return;
+        int from = labels.get(edge.getFrom());
+        int to = labels.get(edge.getTo());
+        if (from == to) {
+            stale = true; // may split the component
+            return;
+        }
+        Map<Integer, Integer> out = successors.get(from);
+        if (out.merge(to, -1, Integer::sum) == 0) {
+            out.remove(to);
+        }
+    }
+
+    private BitSet reachableComponents(int from, int lowestLabel) {
+        BitSet visited = new BitSet(successors.size());
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(from);
+        visited.set(from);
+        while (!stack.isEmpty()) {
+            int current = stack.pop();
+            for (int next : successors.get(current).keySet()) {
+                if (next >= lowestLabel && !visited.get(next)) {
+                    visited.set(next);
+                    stack.push(next);
+                }
+            }
+        }
+        return visited;
+    }
+
+    private void ensureFresh() {
+        if (stale) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Iterative Tarjan over a CSR snapshot, so long road chains cannot overflow the stack.
+     */
+    private void rebuild() {
+        CompactGraph csr = CompactGraph.of(graph);
+        int n = csr.getNodeCount();
+        int[] index = new int[n];
+        int[] lowLink = new int[n];
+        int[] component = new int[n];
+        int[] nextEdge = new int[n];
+        boolean[] onStack = new boolean[n];
+        int[] sccStack = new int[n];
+        int[] callStack = new int[n];
+        Arrays.fill(index, -1);
+
+        int counter = 0;
+        int sccTop = 0;
+        int components = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (index[root] >= 0) continue;
+            int callTop = 0;
+            callStack[callTop++] = root;
+            index[root] = lowLink[root] = counter++;
+            nextEdge[root] = csr.firstEdge(root);
+            sccStack[sccTop++] = root;
+            onStack[root] = true;
+
+            while (callTop > 0) {
+                int v = callStack[callTop - 1];
+                if (nextEdge[v] < csr.endEdge(v)) {
+                    int w = csr.getTarget(nextEdge[v]++);
+                    if (index[w] < 0) {
+                        index[w] = lowLink[w] = counter++;
+                        nextEdge[w] = csr.firstEdge(w);
+                        sccStack[sccTop++] = w;
+                        onStack[w] = true;
+                        callStack[callTop++] = w;
+                    } else if (onStack[w]) {
+                        lowLink[v] = Math.min(lowLink[v], index[w]);
+                    }
+                    continue;
+                }
+
+                callTop--;
+                if (callTop > 0) {
+                    int parent = callStack[callTop - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                }
+                if (lowLink[v] == index[v]) {
+                    int w;
+                    do {
+                        w = sccStack[--sccTop];
+                        onStack[w] = false;
+                        component[w] = components;
+                    } while (w != v);
+                    components++;
+                }
+            }
+        }
+
+        labels.clear();
+        successors.clear();
+        for (int c = 0; c < components; c++) {
+            successors.add(new HashMap<>());
+        }
+        for (int v = 0; v < n; v++) {
+            labels.put(csr.getNode(v), component[v]);
+            for (int e = csr.firstEdge(v); e < csr.endEdge(v); e++) {
+                int w = csr.getTarget(e);
+                if (component[v] != component[w]) {
+                    successors.get(component[v]).merge(component[w], 1, Integer::sum);
+                }
+            }
+        }
+        stale = false;
+        rebuilds++;
+    }
+}
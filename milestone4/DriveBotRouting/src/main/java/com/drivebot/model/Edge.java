@@ -6,12 +6,17 @@ public class Edge {
     private double weight;
     private double baseCost;
     private double travelTime;
+    private int travelTimeProfile = -1; // id in the graph's TravelTimeProfiles, -1 for the constant travelTime
     private double demandFactor;
     private double trafficFactor;       // <-- Added back so GraphUpdater compiles
     private double availabilityFactor;
     private double CO2Emission;
+    private double energyConsumption;   // kWh to drive the edge, negative where it recuperates
     private double socialSubsidy;
     private double operationalCost;
+    private byte roadClass;
+    private Graph graph;                // graph whose change log tracks this edge
+    private boolean dirty;
 
     public Edge(Node from, Node to, double weight) {
         this.from = from;
@@ -25,6 +30,7 @@ public class Edge {
         this.CO2Emission = 0.0;
         this.socialSubsidy = 0.0;
         this.operationalCost = 0.0;
+        this.roadClass = RoadClass.classify(from, to).code();
     }
 
     public Node getFrom() {
@@ -39,7 +45,25 @@ public class Edge {
         return weight;
     }
 
+    /**
+     * Sets the weight directly, e.g. to a negative social subsidy. On an edge of a graph the
+     * change advances the graph's weight epoch and reaches its weight listeners, so routers
+     * publish it with their next query.
+     */
     public void setWeight(double weight) {
+        double oldWeight = this.weight;
+        this.weight = weight;
+        if (graph != null && weight != oldWeight) {
+            graph.onWeightSet(this, oldWeight, weight);
+        }
+    }
+
+    /**
+     * Sets a weight recomputed from the edge's factors without announcing it; only for
+     * {@link com.drivebot.utils.GraphUpdater}, which advances the epoch and notifies
+     * listeners once for a whole batch.
+     */
+    public void setComputedWeight(double weight) {
         this.weight = weight;
     }
 
@@ -49,6 +73,7 @@ public class Edge {
 
     public void setBaseCost(double baseCost) {
         this.baseCost = baseCost;
+        markDirty();
     }
 
     public double getTravelTime() {
@@ -59,6 +84,20 @@ public class Edge {
         this.travelTime = travelTime;
     }
 
+    /**
+     * @return The id of the edge's travel-time profile, or -1 if it always takes {@link #getTravelTime()}.
+     */
+    public int getTravelTimeProfile() {
+        return travelTimeProfile;
+    }
+
+    /**
+     * @param profile An id from the graph's {@link Graph#getTravelTimeProfiles()}, or -1 to go back to the constant travel time.
+     */
+    public void setTravelTimeProfile(int profile) {
+        this.travelTimeProfile = profile;
+    }
+
     public double getDemandFactor() {
         return demandFactor;
     }
@@ -73,6 +112,7 @@ public class Edge {
 
     public void setTrafficFactor(double trafficFactor) {
         this.trafficFactor = trafficFactor;
+        markDirty();
     }
 
     public double getAvailabilityFactor() {
@@ -81,6 +121,7 @@ public class Edge {
 
     public void setAvailabilityFactor(double availabilityFactor) {
         this.availabilityFactor = availabilityFactor;
+        markDirty();
     }
 
     public double getCO2Emission() {
@@ -91,6 +132,17 @@ public class Edge {
         this.CO2Emission = CO2Emission;
     }
 
+    /**
+     * @return Battery energy in kWh an electric vehicle uses on the edge; negative when it recuperates more than it uses.
+     */
+    public double getEnergyConsumption() {
+        return energyConsumption;
+    }
+
+    public void setEnergyConsumption(double energyConsumption) {
+        this.energyConsumption = energyConsumption;
+    }
+
     public double getSocialSubsidy() {
         return socialSubsidy;
     }
@@ -106,4 +158,56 @@ public class Edge {
     public void setOperationalCost(double operationalCost) {
         this.operationalCost = operationalCost;
     }
+
+    public RoadClass getRoadClass() {
+        return RoadClass.fromCode(roadClass);
+    }
+
+    public byte getRoadClassCode() {
+        return roadClass;
+    }
+
+    /**
+     * Reclassifies the edge. Snapshots copy road classes with the structure, so on an edge of
+     * a graph a change advances the graph's structure version and routers rebuild on their
+     * next publish.
+     */
+    public void setRoadClass(RoadClass roadClass) {
+        byte code = roadClass.code();
+        if (code != this.roadClass) {
+            this.roadClass = code;
+            if (graph != null) {
+                graph.onRoadClassChanged();
+            }
+        }
+    }
+
+    void attach(Graph graph) {
+        this.graph = graph;
+        this.dirty = false;
+        markDirty();
+    }
+
+    void detach() {
+        this.graph = null;
+    }
+
+    boolean isAttached() {
+        return graph != null;
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    void clearDirty() {
+        this.dirty = false;
+    }
+
+    private void markDirty() {
+        if (graph != null && !dirty) {
+            dirty = true;
+            graph.markDirty(this);
+        }
+    }
 }
@@ -3,30 +3,64 @@ package com.drivebot.model;
 import java.util.*;
 
 public class Graph {
-    private final Map<Node, List<Edge>> adjacencyList = new HashMap<>();
+    private final Map<Node, List<Edge>> adjacencyList = new LinkedHashMap<>();
+    private final Map<Node, List<Edge>> incomingList = new HashMap<>();
+    private final List<Edge> pendingChanges = new ArrayList<>();
+    // Volatile so routers can poll for changes from reader threads without locking
+    private volatile boolean changesPending;
+    private volatile long weightEpoch;
+    private volatile long structureVersion;
+    private ConnectivityIndex connectivity;
+    private SpatialIndex spatialIndex;
+    private final TravelTimeProfiles travelTimeProfiles = new TravelTimeProfiles();
+    private final List<WeightChangeListener> weightListeners = new ArrayList<>();
 
     public void addNode(Node node) {
-        adjacencyList.putIfAbsent(node, new ArrayList<>());
+        if (adjacencyList.putIfAbsent(node, new ArrayList<>()) == null) {
+            incomingList.put(node, new ArrayList<>());
+            structureVersion++;
+            if (connectivity != null) {
+                connectivity.onNodeAdded(node);
+            }
+            if (spatialIndex != null) {
+                spatialIndex.onNodeAdded(node);
+            }
+        }
     }
 
     public void addEdge(Node from, Node to, double weight) {
-        adjacencyList.putIfAbsent(from, new ArrayList<>());
-        adjacencyList.putIfAbsent(to, new ArrayList<>());
-        adjacencyList.get(from).add(new Edge(from, to, weight));
+        addEdge(new Edge(from, to, weight));
     }
 
     public void addEdge(Edge edge) {
         Node from = edge.getFrom();
-        adjacencyList.putIfAbsent(from, new ArrayList<>());
-        adjacencyList.putIfAbsent(edge.getTo(), new ArrayList<>());
+        if (adjacencyList.putIfAbsent(from, new ArrayList<>()) == null && spatialIndex != null) {
+            spatialIndex.onNodeAdded(from);
+        }
+        if (adjacencyList.putIfAbsent(edge.getTo(), new ArrayList<>()) == null && spatialIndex != null) {
+            spatialIndex.onNodeAdded(edge.getTo());
+        }
+        incomingList.putIfAbsent(from, new ArrayList<>());
+        incomingList.putIfAbsent(edge.getTo(), new ArrayList<>());
         adjacencyList.get(from).add(edge);
+        incomingList.get(edge.getTo()).add(edge);
+        edge.attach(this);
+        structureVersion++;
+        if (connectivity != null) {
+            connectivity.onEdgeAdded(edge);
+        }
     }
 
     public void removeEdge(Edge edge) {
         if (edge == null) return;
         List<Edge> edgesFromNode = adjacencyList.get(edge.getFrom());
-        if (edgesFromNode != null) {
-            edgesFromNode.remove(edge);
+        if (edgesFromNode != null && edgesFromNode.remove(edge)) {
+            incomingList.get(edge.getTo()).remove(edge);
+            edge.detach();
+            structureVersion++;
+            if (connectivity != null) {
+                connectivity.onEdgeRemoved(edge);
+            }
         }
     }
 
@@ -34,6 +68,13 @@ public class Graph {
         return adjacencyList.getOrDefault(node, Collections.emptyList());
     }
 
+    /**
+     * @return The edges ending at the node, kept in step with the outgoing lists.
+     */
+    public List<Edge> getIncomingEdges(Node node) {
+        return incomingList.getOrDefault(node, Collections.emptyList());
+    }
+
     public Set<Node> getAllNodes() {
         return adjacencyList.keySet();
     }
@@ -77,6 +118,102 @@ public class Graph {
         return false;
     }
 
+    /**
+     * @return The component index of this graph, created on first use and kept up to date by the edit methods.
+     */
+    public ConnectivityIndex getConnectivity() {
+        if (connectivity == null) {
+            connectivity = new ConnectivityIndex(this);
+        }
+        return connectivity;
+    }
+
+    /**
+     * @return The coordinate index of this graph's nodes, created on first use and kept up to date as nodes are added.
+     */
+    public SpatialIndex getSpatialIndex() {
+        if (spatialIndex == null) {
+            spatialIndex = new SpatialIndex(adjacencyList.keySet());
+        }
+        return spatialIndex;
+    }
+
+    /**
+     * @return The store the ids of {@link Edge#setTravelTimeProfile(int)} refer to.
+     */
+    public TravelTimeProfiles getTravelTimeProfiles() {
+        return travelTimeProfiles;
+    }
+
+    void markDirty(Edge edge) {
+        pendingChanges.add(edge);
+        changesPending = true;
+    }
+
+    public boolean hasPendingChanges() {
+        return changesPending;
+    }
+
+    /**
+     * Hands out the edges whose base cost, traffic or availability changed since the
+     * last call, and empties the change log. Edges removed in the meantime are skipped.
+     * @return The changed edges, each listed once.
+     */
+    public List<Edge> drainPendingChanges() {
+        List<Edge> changed = new ArrayList<>(pendingChanges.size());
+        for (Edge edge : pendingChanges) {
+            if (!edge.isDirty()) continue; // already handed out
+            edge.clearDirty();
+            if (edge.isAttached()) {
+                changed.add(edge);
+            }
+        }
+        pendingChanges.clear();
+        changesPending = false;
+        return changed;
+    }
+
+    /**
+     * @return Counter that increases every time edge weights are recomputed with at least one
+     *         change, and on every direct {@link Edge#setWeight} that changes a weight.
+     */
+    public long getWeightEpoch() {
+        return weightEpoch;
+    }
+
+    /**
+     * @return Counter that increases whenever a node or edge is added, an edge is removed or
+     *         an edge changes its road class.
+     */
+    public long getStructureVersion() {
+        return structureVersion;
+    }
+
+    public long advanceWeightEpoch() {
+        return ++weightEpoch;
+    }
+
+    void onWeightSet(Edge edge, double oldWeight, double newWeight) {
+        advanceWeightEpoch();
+        fireWeightChanged(edge, oldWeight, newWeight);
+    }
+
+    void onRoadClassChanged() {
+        structureVersion++;
+    }
+
+    public void addWeightChangeListener(WeightChangeListener listener) {
+        weightListeners.add(listener);
+    }
+
+    public void removeWeightChangeListener(WeightChangeListener listener) {
+        weightListeners.remove(listener);
+    }
 
+    public void fireWeightChanged(Edge edge, double oldWeight, double newWeight) {
+        for (WeightChangeListener listener : weightListeners) {
+            listener.onWeightChanged(edge, oldWeight, newWeight);
+        }
+    }
 }
 
@@ -6,6 +6,7 @@ public class Node {
     private final String id;
     private final double x;
     private final double y;
+    private double chargingPower; // kW, 0 where vehicles cannot charge
 
     public Node(String id, double x, double y) {
         this.id = id;
@@ -25,6 +26,21 @@ public class Node {
         return y;
     }
 
+    /**
+     * @return Power in kW a vehicle charges with at this node, 0 if there is no charging station.
+     */
+    public double getChargingPower() {
+        return chargingPower;
+    }
+
+    public void setChargingPower(double chargingPower) {
+        this.chargingPower = chargingPower;
+    }
+
+    public boolean isChargingStation() {
+        return chargingPower > 0;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
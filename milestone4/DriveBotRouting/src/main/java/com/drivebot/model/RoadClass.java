@@ -0,0 +1,39 @@
+package com.drivebot.model;
+
+/**
+ * Functional class of a road segment. Edges are classified once when they are created
+ * and keep the class as a single byte, see {@link Edge#getRoadClassCode()}.
+ */
+public enum RoadClass {
+    FREEWAY,
+    ARTERIAL,
+    RESIDENTIAL,
+    UNCLASSIFIED;
+
+    private static final RoadClass[] VALUES = values();
+
+    public byte code() {
+        return (byte) ordinal();
+    }
+
+    public static RoadClass fromCode(byte code) {
+        return VALUES[code];
+    }
+
+    /**
+     * Classifies a segment from its endpoint ids: interstates ("I-280") and anything
+     * named "freeway" are freeways, everything else stays unclassified until a loader
+     * sets the class explicitly.
+     */
+    public static RoadClass classify(Node from, Node to) {
+        if (isFreewayId(from.getId()) || isFreewayId(to.getId())) {
+            return FREEWAY;
+        }
+        return UNCLASSIFIED;
+    }
+
+    private static boolean isFreewayId(String id) {
+        String lower = id.toLowerCase();
+        return lower.contains("i-") || lower.contains("freeway");
+    }
+}
@@ -0,0 +1,48 @@
+package com.drivebot.model;
+
+/**
+ * Set of road classes a vehicle type may not drive on, kept as a bitmask over
+ * {@link RoadClass} codes so routing can test an edge with one AND.
+ */
+public final class RoadClassPolicy {
+    public static final RoadClassPolicy ALLOW_ALL = new RoadClassPolicy(0);
+    public static final RoadClassPolicy NO_FREEWAYS = excluding(RoadClass.FREEWAY);
+
+    private final int excludedMask;
+
+    private RoadClassPolicy(int excludedMask) {
+        this.excludedMask = excludedMask;
+    }
+
+    public static RoadClassPolicy excluding(RoadClass... classes) {
+        int mask = 0;
+        for (RoadClass roadClass : classes) {
+            mask |= 1 << roadClass.code();
+        }
+        return new RoadClassPolicy(mask);
+    }
+
+    public boolean allows(byte roadClassCode) {
+        return (excludedMask & (1 << roadClassCode)) == 0;
+    }
+
+    public boolean allows(RoadClass roadClass) {
+        return allows(roadClass.code());
+    }
+
+    public boolean allowsAll() {
+        return excludedMask == 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RoadClassPolicy)) return false;
+        return excludedMask == ((RoadClassPolicy) o).excludedMask;
+    }
+
+    @Override
+    public int hashCode() {
+        return excludedMask;
+    }
+}
@@ -0,0 +1,294 @@
+package com.drivebot.model;
+
+import java.util.*;
+
+/**
+ * Uniform grid over the coordinates of a {@link Graph}'s nodes, for snapping raw x/y
+ * positions to the road network. Coordinates live in primitive arrays and every cell
+ * keeps its nodes as an int-linked list, so queries allocate nothing but their result.
+ * <p>
+ * Nearest-node queries scan rings of cells around the query point and stop once the ring
+ * is farther away than the best node found. Nodes outside the grid's bounds are filed
+ * under the nearest border cell, whose region then extends to infinity on that side; the
+ * grid is rebuilt once the node count has grown a few times over or too many nodes fall
+ * outside, so {@link Graph#addNode(Node)} costs amortized O(1).
+ * <p>
+ * Queries do not modify the index, so any number of threads may query it while nobody
+ * edits the graph.
+ */
+public final class SpatialIndex {
+    private static final int NODES_PER_CELL = 2;
+
+    private Node[] nodes = new Node[16];
+    private double[] xs = new double[16];
+    private double[] ys = new double[16];
+    private int[] next = new int[16];
+    private int size;
+
+    private double minX;
+    private double minY;
+    private double cellSize;
+    private int columns;
+    private int rows;
+    private int[] head;
+    private int builtSize;
+    private int outliers;
+    private int rebuilds;
+
+    SpatialIndex(Collection<Node> initial) {
+        for (Node node : initial) {
+            append(node);
+        }
+        rebuild();
+    }
+
+    void onNodeAdded(Node node) {
+        int id = append(node);
+        if (size > 4 * builtSize + 16 || 4 * outliers > size + 16) {
+            rebuild();
+        } else {
+            insert(id);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return How many times the grid was laid out, including the first time.
+     */
+    public int getRebuildCount() {
+        return rebuilds;
+    }
+
+    /**
+     * @return The node closest to the point, or null if the graph has no nodes.
+     */
+    public Node nearest(double x, double y) {
+        if (size == 0) {
+            return null;
+        }
+        int cx0 = column(x);
+        int cy0 = row(y);
+        int maxRing = Math.max(columns, rows);
+        int best = -1;
+        double bestDist = Double.POSITIVE_INFINITY;
+        for (int r = 0; r <= maxRing; r++) {
+            double ringDist = (r - 1) * cellSize;
+            if (r > 0 && ringDist * ringDist >= bestDist) break;
+            for (int cy = Math.max(0, cy0 - r); cy <= Math.min(rows - 1, cy0 + r); cy++) {
+                // Full rows at the top and bottom of the ring, only the two sides in between
+                int step = cy == cy0 - r || cy == cy0 + r ? 1 : 2 * r;
+                for (int cx = cx0 - r; cx <= cx0 + r; cx += step) {
+                    if (cx < 0 || cx >= columns || cellDistance(cx, cy, x, y) >= bestDist) continue;
+                    for (int i = head[cy * columns + cx]; i >= 0; i = next[i]) {
+                        double d = distance(i, x, y);
+                        if (d < bestDist) {
+                            bestDist = d;
+                            best = i;
+                        }
+                    }
+                }
+            }
+        }
+        return nodes[best];
+    }
+
+    /**
+     * @return Up to {@code k} nodes closest to the point, nearest first.
+     */
+    public List<Node> nearest(double x, double y, int k) {
+        k = Math.min(k, size);
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        // Max-heap of the k best candidates on squared distance
+        double[] heapDist = new double[k];
+        int[] heapIds = new int[k];
+        int count = 0;
+        int cx0 = column(x);
+        int cy0 = row(y);
+        int maxRing = Math.max(columns, rows);
+        for (int r = 0; r <= maxRing; r++) {
+            double ringDist = (r - 1) * cellSize;
+            if (r > 0 && count == k && ringDist * ringDist >= heapDist[0]) break;
+            for (int cy = Math.max(0, cy0 - r); cy <= Math.min(rows - 1, cy0 + r); cy++) {
+                int step = cy == cy0 - r || cy == cy0 + r ? 1 : 2 * r;
+                for (int cx = cx0 - r; cx <= cx0 + r; cx += step) {
+                    if (cx < 0 || cx >= columns) continue;
+                    if (count == k && cellDistance(cx, cy, x, y) >= heapDist[0]) continue;
+                    for (int i = head[cy * columns + cx]; i >= 0; i = next[i]) {
+                        double d = distance(i, x, y);
+                        if (count < k) {
+                            heapDist[count] = d;
+                            heapIds[count] = i;
+                            siftUp(heapDist, heapIds, count++);
+                        } else if (d < heapDist[0]) {
+                            heapDist[0] = d;
+                            heapIds[0] = i;
+                            siftDown(heapDist, heapIds, count);
+                        }
+                    }
+                }
+            }
+        }
+        Node[] result = new Node[count];
+        for (int n = count; n > 0; n--) {
+            result[n - 1] = nodes[heapIds[0]];
+            heapDist[0] = heapDist[n - 1];
+            heapIds[0] = heapIds[n - 1];
+            siftDown(heapDist, heapIds, n - 1);
+        }
+        return Arrays.asList(result);
+    }
+
+    /**
+     * @return Every node within {@code radius} of the point, in no particular order.
+     */
+    public List<Node> withinRadius(double x, double y, double radius) {
+        List<Node> result = new ArrayList<>();
+        if (size == 0 || radius < 0) {
+            return result;
+        }
+        double limit = radius * radius;
+        int fromX = column(x - radius);
+        int toX = column(x + radius);
+        int fromY = row(y - radius);
+        int toY = row(y + radius);
+        for (int cy = fromY; cy <= toY; cy++) {
+            for (int cx = fromX; cx <= toX; cx++) {
+                if (cellDistance(cx, cy, x, y) > limit) continue;
+                for (int i = head[cy * columns + cx]; i >= 0; i = next[i]) {
+                    if (distance(i, x, y) <= limit) {
+                        result.add(nodes[i]);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private int append(Node node) {
+        if (size == nodes.length) {
+            int capacity = size * 2;
+            nodes = Arrays.copyOf(nodes, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+        nodes[size] = node;
+        xs[size] = node.getX();
+        ys[size] = node.getY();
+        return size++;
+    }
+
+    /**
+     * Lays the grid over the current bounding box with about {@link #NODES_PER_CELL} nodes per cell.
+     */
+    private void rebuild() {
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        minX = Double.POSITIVE_INFINITY;
+        minY = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        if (size == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+        double width = maxX - minX;
+        double height = maxY - minY;
+        int cells = Math.max(1, size / NODES_PER_CELL);
+        cellSize = width > 0 && height > 0
+                ? Math.sqrt(width * height / cells)
+                : Math.max(width, height) / cells; // all nodes on a line
+        if (!(cellSize > 0)) {
+            cellSize = 1;
+        }
+        columns = (int) Math.min(cells, width / cellSize) + 1;
+        rows = (int) Math.min(cells, height / cellSize) + 1;
+        head = new int[columns * rows];
+        Arrays.fill(head, -1);
+        outliers = 0;
+        for (int i = 0; i < size; i++) {
+            insert(i);
+        }
+        builtSize = size;
+        rebuilds++;
+    }
+
+    private void insert(int id) {
+        double x = xs[id];
+        double y = ys[id];
+        if (x < minX || y < minY || x >= minX + columns * cellSize || y >= minY + rows * cellSize) {
+            outliers++;
+        }
+        int cell = row(y) * columns + column(x);
+        next[id] = head[cell];
+        head[cell] = id;
+    }
+
+    private int column(double x) {
+        double c = Math.floor((x - minX) / cellSize);
+        return c <= 0 ? 0 : c >= columns - 1 ? columns - 1 : (int) c;
+    }
+
+    private int row(double y) {
+        double r = Math.floor((y - minY) / cellSize);
+        return r <= 0 ? 0 : r >= rows - 1 ? rows - 1 : (int) r;
+    }
+
+    private double distance(int id, double x, double y) {
+        double dx = xs[id] - x;
+        double dy = ys[id] - y;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Squared distance from the point to the cell's region; border cells reach to infinity
+     * on their outer sides because they also hold the nodes outside the grid.
+     */
+    private double cellDistance(int cx, int cy, double x, double y) {
+        double left = cx == 0 ? Double.NEGATIVE_INFINITY : minX + cx * cellSize;
+        double right = cx == columns - 1 ? Double.POSITIVE_INFINITY : minX + (cx + 1) * cellSize;
+        double bottom = cy == 0 ? Double.NEGATIVE_INFINITY : minY + cy * cellSize;
+        double top = cy == rows - 1 ? Double.POSITIVE_INFINITY : minY + (cy + 1) * cellSize;
+        double dx = x < left ? left - x : x > right ? x - right : 0;
+        double dy = y < bottom ? bottom - y : y > top ? y - top : 0;
+        return dx * dx + dy * dy;
+    }
+
+    private static void siftUp(double[] dist, int[] ids, int slot) {
+        while (slot > 0) {
+            int parent = (slot - 1) / 2;
+            if (dist[parent] >= dist[slot]) break;
+            swap(dist, ids, parent, slot);
+            slot = parent;
+        }
+    }
+
+    private static void siftDown(double[] dist, int[] ids, int size) {
+        int slot = 0;
+        while (true) {
+            int child = 2 * slot + 1;
+            if (child >= size) break;
+            if (child + 1 < size && dist[child + 1] > dist[child]) child++;
+            if (dist[slot] >= dist[child]) break;
+            swap(dist, ids, slot, child);
+            slot = child;
+        }
+    }
+
+    private static void swap(double[] dist, int[] ids, int a, int b) {
+        double d = dist[a];
+        dist[a] = dist[b];
+        dist[b] = d;
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+    }
+}
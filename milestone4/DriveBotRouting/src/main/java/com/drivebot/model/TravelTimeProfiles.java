@@ -0,0 +1,196 @@
+package com.drivebot.model;
+
+import java.util.*;
+
+/**
+ * Piecewise-linear travel-time profiles over a day, shared by the edges of a graph.
+ * A profile is a list of breakpoints (seconds since midnight, travel time in seconds);
+ * between breakpoints the travel time is interpolated linearly and after the last one it
+ * wraps around to the first, so every profile repeats daily.
+ * <p>
+ * All breakpoints live in two flat arrays and identical profiles are stored once, so
+ * thousands of edges with the same rush-hour curve share one entry; an edge refers to
+ * its profile by id through {@link Edge#setTravelTimeProfile(int)}.
+ * <p>
+ * Profiles must be FIFO: leaving later never arrives earlier, i.e. no segment falls
+ * faster than one second per second. That keeps time-dependent Dijkstra exact.
+ * Adding profiles is not thread-safe. Evaluating them is, even while another thread adds:
+ * every add publishes the arrays in one volatile write and only writes past the part
+ * earlier publications cover, so a reader sees each profile complete or not at all.
+ */
+public final class TravelTimeProfiles {
+    public static final double DAY = 24 * 60 * 60;
+
+    private double[] times = new double[64];
+    private double[] values = new double[64];
+    private int[] offsets = new int[17];
+    private double[] minimum = new double[16];
+    private int count;
+    private int breakpoints;
+    private final Map<Key, Integer> ids = new HashMap<>();
+    private volatile Table table = new Table(times, values, offsets, minimum, 0, 0);
+
+    /**
+     * @param times Breakpoint times in {@code [0, DAY)}, strictly increasing.
+     * @param travelTimes Non-negative travel time at each breakpoint.
+     * @return The id of the profile, the same id for profiles added before with the same breakpoints.
+     * @throws IllegalArgumentException If the breakpoints are malformed or the profile is not FIFO.
+     */
+    public int add(double[] times, double[] travelTimes) {
+        validate(times, travelTimes);
+        Key key = new Key(times.clone(), travelTimes.clone());
+        Integer existing = ids.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        int n = times.length;
+        if (breakpoints + n > this.times.length) {
+            int capacity = Math.max(breakpoints + n, this.times.length * 2);
+            this.times = Arrays.copyOf(this.times, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+        if (count + 1 == minimum.length) {
+            minimum = Arrays.copyOf(minimum, minimum.length * 2);
+            offsets = Arrays.copyOf(offsets, minimum.length + 1);
+        }
+        System.arraycopy(times, 0, this.times, breakpoints, n);
+        System.arraycopy(travelTimes, 0, this.values, breakpoints, n);
+        double min = Double.POSITIVE_INFINITY;
+        for (double t : travelTimes) {
+            min = Math.min(min, t);
+        }
+        minimum[count] = min;
+        breakpoints += n;
+        offsets[count + 1] = breakpoints;
+        ids.put(key, count);
+        count++;
+        table = new Table(this.times, values, offsets, minimum, count, breakpoints);
+        return count - 1;
+    }
+
+    /**
+     * @return A profile with the same travel time all day.
+     */
+    public int constant(double travelTime) {
+        return add(new double[]{0}, new double[]{travelTime});
+    }
+
+    public int size() {
+        return table.count;
+    }
+
+    /**
+     * @return Number of breakpoints stored over all distinct profiles.
+     */
+    public int getBreakpointCount() {
+        return table.breakpoints;
+    }
+
+    /**
+     * @return The travel time of the profile when leaving at {@code departure} seconds;
+     *         departures past one day wrap around.
+     */
+    public double evaluate(int profile, double departure) {
+        Table table = this.table;
+        double[] times = table.times;
+        double[] values = table.values;
+        int first = table.offsets[profile];
+        int last = table.offsets[profile + 1] - 1;
+        if (first == last) {
+            return values[first];
+        }
+        double t = departure % DAY;
+        if (t < 0) t += DAY;
+
+        if (t < times[first] || t >= times[last]) {
+            // Wrapping segment from the last breakpoint to the first one of the next day
+            double start = times[last];
+            double span = times[first] + DAY - start;
+            double offset = t >= start ? t - start : t + DAY - start;
+            return values[last] + (values[first] - values[last]) * offset / span;
+        }
+        int lo = first;
+        int hi = last;
+        while (hi - lo > 1) { // times[lo] <= t < times[hi]
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] <= t) lo = mid; else hi = mid;
+        }
+        return values[lo] + (values[hi] - values[lo]) * (t - times[lo]) / (times[hi] - times[lo]);
+    }
+
+    /**
+     * @return The smallest travel time of the profile at any time of day.
+     */
+    public double getMinimum(int profile) {
+        return table.minimum[profile];
+    }
+
+    private static void validate(double[] times, double[] travelTimes) {
+        if (times.length == 0 || times.length != travelTimes.length) {
+            throw new IllegalArgumentException("A profile needs one travel time per breakpoint");
+        }
+        for (int i = 0; i < times.length; i++) {
+            if (!(times[i] >= 0 && times[i] < DAY) || (i > 0 && times[i] <= times[i - 1])) {
+                throw new IllegalArgumentException("Breakpoint times must increase within one day: " + times[i]);
+            }
+            if (!(travelTimes[i] >= 0) || Double.isInfinite(travelTimes[i])) {
+                throw new IllegalArgumentException("Travel times must be finite and non-negative: " + travelTimes[i]);
+            }
+        }
+        for (int i = 0; i < times.length && times.length > 1; i++) {
+            int j = (i + 1) % times.length;
+            double span = j == 0 ? times[0] + DAY - times[i] : times[j] - times[i];
+            if (travelTimes[j] - travelTimes[i] < -span) {
+                throw new IllegalArgumentException("Profile is not FIFO after " + times[i]
+                        + ": travel time drops faster than time passes");
+            }
+        }
+    }
+
+    /**
+     * What readers see: the arrays as of the last add, of which they only read the first
+     * {@code count} profiles.
+     */
+    private static final class Table {
+        final double[] times;
+        final double[] values;
+        final int[] offsets;
+        final double[] minimum;
+        final int count;
+        final int breakpoints;
+
+        Table(double[] times, double[] values, int[] offsets, double[] minimum, int count, int breakpoints) {
+            this.times = times;
+            this.values = values;
+            this.offsets = offsets;
+            this.minimum = minimum;
+            this.count = count;
+            this.breakpoints = breakpoints;
+        }
+    }
+
+    private static final class Key {
+        final double[] times;
+        final double[] values;
+        final int hash;
+
+        Key(double[] times, double[] values) {
+            this.times = times;
+            this.values = values;
+            this.hash = 31 * Arrays.hashCode(times) + Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return Arrays.equals(times, other.times) && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
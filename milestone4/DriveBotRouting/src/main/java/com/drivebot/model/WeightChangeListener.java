@@ -0,0 +1,14 @@
+package com.drivebot.model;
+
+/**
+ * Receives the edges whose routing weight {@link com.drivebot.utils.GraphUpdater} changed.
+ */
+public interface WeightChangeListener {
+    /**
+     * Called once per changed edge, after the new weight is set.
+     * @param edge The edge that changed.
+     * @param oldWeight Weight before the update.
+     * @param newWeight Weight after the update.
+     */
+    void onWeightChanged(Edge edge, double oldWeight, double newWeight);
+}
@@ -0,0 +1,346 @@
+package com.drivebot.traffic;
+
+import com.drivebot.DriveBotRouter;
+import com.drivebot.model.Edge;
+import com.drivebot.model.Graph;
+import com.drivebot.model.Node;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Feeds traffic updates into a {@link DriveBotRouter} in batches.
+ * <p>
+ * Readers ({@link #readLines(Reader)}, {@link #readBinary(InputStream)}, or
+ * {@link #submit(TrafficUpdate)} directly) put updates into a bounded queue and block
+ * while it is full, which pushes back on the feed (on a socket, through TCP flow control).
+ * One applier thread collects updates for up to one window, keeps only the latest
+ * factors per edge, and applies the batch in a single {@link DriveBotRouter#update}:
+ * queries see either none or all of a batch, and each batch is one new weight epoch.
+ */
+public final class TrafficIngestor implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(TrafficIngestor.class);
+    private static final int BINARY_MAGIC = 0x44425455; // "DBTU"
+
+    private final DriveBotRouter router;
+    private final BlockingQueue<Received> queue;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final Thread applier;
+    private volatile boolean running = true;
+
+    // Edge lookup by node ids, rebuilt when the graph structure changes; applier thread only
+    private Map<String, Map<String, Edge>> edgeIndex;
+    private long indexedStructure = -1;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder unknownEdges = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder blockedSubmits = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicLong processed = new AtomicLong();
+    private volatile long lastLagNanos;
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    /**
+     * @param queueCapacity Updates that may wait before readers block.
+     * @param windowMillis How long a batch keeps collecting after its first update.
+     * @param maxBatch Largest batch; a full batch is applied without waiting for the window.
+     */
+    public TrafficIngestor(DriveBotRouter router, int queueCapacity, long windowMillis, int maxBatch) {
+        this.router = router;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxBatch = maxBatch;
+        this.applier = new Thread(this::applyLoop, "traffic-ingestor");
+        this.applier.setDaemon(true);
+        this.applier.start();
+    }
+
+    /**
+     * Queues an update, blocking while the queue is full.
+     */
+    public void submit(TrafficUpdate update) throws InterruptedException {
+        if (!running) {
+            throw new IllegalStateException("Ingestor is closed");
+        }
+        Received item = new Received(update, System.nanoTime());
+        if (!queue.offer(item)) {
+            blockedSubmits.increment();
+            queue.put(item);
+        }
+        received.increment();
+    }
+
+    /**
+     * Reads line-format updates until the end of the stream.
+     * @return Number of updates read.
+     */
+    public long readLines(Reader source) throws IOException, InterruptedException {
+        BufferedReader reader = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source);
+        long count = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank() || line.startsWith("#")) continue;
+            submit(TrafficUpdate.parseLine(line));
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Reads a binary feed (see {@link #writeBinaryHeader(DataOutputStream)}) until the end of the stream.
+     * @return Number of updates read.
+     */
+    public long readBinary(InputStream source) throws IOException, InterruptedException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(source));
+        if (in.readInt() != BINARY_MAGIC) {
+            throw new IOException("Not a binary traffic feed");
+        }
+        long count = 0;
+        while (true) {
+            TrafficUpdate update;
+            try {
+                update = TrafficUpdate.readFrom(in);
+            } catch (EOFException end) {
+                return count;
+            }
+            submit(update);
+            count++;
+        }
+    }
+
+    /**
+     * Starts a binary feed; follow it with {@link TrafficUpdate#writeTo(DataOutputStream)} per update.
+     */
+    public static void writeBinaryHeader(DataOutputStream out) throws IOException {
+        out.writeInt(BINARY_MAGIC);
+    }
+
+    public static Reader lineReader(InputStream source) {
+        return new InputStreamReader(source, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Waits until every update submitted so far has been applied, coalesced or dropped.
+     * @return False if the timeout passed first.
+     */
+    public boolean awaitApplied(long timeoutMillis) throws InterruptedException {
+        long target = received.sum();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (processed) {
+            while (processed.get() < target) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) return false;
+                processed.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops taking updates, applies what is queued and ends the applier thread.
+     * If the calling thread is interrupted while waiting, it returns early with its
+     * interrupt flag set and the applier finishes the queue on its own.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            applier.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    /**
+     * @return Edge updates applied after coalescing.
+     */
+    public long getAppliedCount() {
+        return applied.sum();
+    }
+
+    /**
+     * @return Updates superseded by a later one for the same edge in the same batch.
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return Updates dropped because the graph has no such edge.
+     */
+    public long getUnknownEdgeCount() {
+        return unknownEdges.sum();
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * @return How often a reader had to wait for queue space.
+     */
+    public long getBlockedSubmitCount() {
+        return blockedSubmits.sum();
+    }
+
+    /**
+     * @return Updates lost because applying their batch failed.
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return Time from receiving the oldest update of the last batch to its publication.
+     */
+    public long getLastLagNanos() {
+        return lastLagNanos;
+    }
+
+    public long getMaxLagNanos() {
+        return maxLagNanos.get();
+    }
+
+    private void applyLoop() {
+        List<Received> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Received first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = first.receivedNanos + windowNanos;
+                while (batch.size() < maxBatch) {
+                    if (queue.drainTo(batch, maxBatch - batch.size()) > 0) continue;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    Received next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                apply(batch);
+            } catch (RuntimeException e) {
+                LOG.warn("Dropped a batch of {} traffic updates, starting with edges {}",
+                        batch.size(), firstEdges(batch), e);
+                failed.add(batch.size());
+                markProcessed(batch.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private static String firstEdges(List<Received> batch) {
+        StringJoiner edges = new StringJoiner(", ", "[", batch.size() > 3 ? ", ...]" : "]");
+        for (int i = 0; i < Math.min(3, batch.size()); i++) {
+            TrafficUpdate update = batch.get(i).update;
+            edges.add(update.getFromId() + " -> " + update.getToId());
+        }
+        return edges.toString();
+    }
+
+    private void apply(List<Received> batch) {
+        Resolved resolved = new Resolved();
+        router.update(graph -> {
+            // Resolve the whole batch before touching an edge, so a failure leaves nothing pending
+            resolve(graph, batch, resolved);
+            for (Map.Entry<Edge, double[]> entry : resolved.latest.entrySet()) {
+                double[] factors = entry.getValue();
+                if (!Double.isNaN(factors[0])) entry.getKey().setTrafficFactor(factors[0]);
+                if (!Double.isNaN(factors[1])) entry.getKey().setAvailabilityFactor(factors[1]);
+            }
+        });
+        applied.add(resolved.latest.size());
+        coalesced.add(resolved.coalesced);
+        unknownEdges.add(resolved.unknown);
+
+        long lag = System.nanoTime() - batch.get(0).receivedNanos;
+        lastLagNanos = lag;
+        maxLagNanos.accumulateAndGet(lag, Math::max);
+        batches.increment();
+        markProcessed(batch.size());
+    }
+
+    /**
+     * Latest factors per edge, in order of first appearance. Reads the graph only.
+     */
+    private void resolve(Graph graph, List<Received> batch, Resolved resolved) {
+        refreshIndex(graph);
+        for (Received item : batch) {
+            TrafficUpdate update = item.update;
+            Edge edge = edgeIndex.getOrDefault(update.getFromId(), Collections.emptyMap()).get(update.getToId());
+            if (edge == null) {
+                resolved.unknown++;
+                continue;
+            }
+            double[] factors = resolved.latest.get(edge);
+            if (factors == null) {
+                resolved.latest.put(edge, new double[]{update.getTrafficFactor(), update.getAvailabilityFactor()});
+                continue;
+            }
+            resolved.coalesced++;
+            if (!Double.isNaN(update.getTrafficFactor())) factors[0] = update.getTrafficFactor();
+            if (!Double.isNaN(update.getAvailabilityFactor())) factors[1] = update.getAvailabilityFactor();
+        }
+    }
+
+    private void markProcessed(int count) {
+        synchronized (processed) {
+            processed.addAndGet(count);
+            processed.notifyAll();
+        }
+    }
+
+    private void refreshIndex(Graph graph) {
+        if (edgeIndex != null && indexedStructure == graph.getStructureVersion()) {
+            return;
+        }
+        edgeIndex = new HashMap<>();
+        for (Node node : graph.getAllNodes()) {
+            Map<String, Edge> outgoing = new HashMap<>();
+            for (Edge edge : graph.getEdges(node)) {
+                outgoing.putIfAbsent(edge.getTo().getId(), edge); // same as Graph.getEdge
+            }
+            edgeIndex.put(node.getId(), outgoing);
+        }
+        indexedStructure = graph.getStructureVersion();
+    }
+
+    private static final class Received {
+        final TrafficUpdate update;
+        final long receivedNanos;
+
+        Received(TrafficUpdate update, long receivedNanos) {
+            this.update = update;
+            this.receivedNanos = receivedNanos;
+        }
+    }
+
+    private static final class Resolved {
+        final Map<Edge, double[]> latest = new LinkedHashMap<>();
+        long coalesced;
+        long unknown;
+    }
+}
@@ -0,0 +1,94 @@
+package com.drivebot.traffic;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * New traffic and/or availability factor for the edge between two nodes. A factor of
+ * {@link Double#NaN} leaves that input unchanged; any other factor must be positive and finite.
+ * <p>
+ * Line format: {@code fromId,toId,trafficFactor[,availabilityFactor]}, where an empty
+ * field means unchanged, e.g. {@code A,B,1.8} or {@code A,B,,0.5}. Blank lines and
+ * lines starting with {@code #} are skipped by the readers.
+ * <p>
+ * Binary format: the two node ids as modified UTF-8, then both factors as floats.
+ */
+public final class TrafficUpdate {
+    private final String fromId;
+    private final String toId;
+    private final double trafficFactor;
+    private final double availabilityFactor;
+
+    /**
+     * @throws IllegalArgumentException If a factor is zero, negative or infinite.
+     */
+    public TrafficUpdate(String fromId, String toId, double trafficFactor, double availabilityFactor) {
+        checkFactor(trafficFactor, fromId, toId);
+        checkFactor(availabilityFactor, fromId, toId);
+        this.fromId = fromId;
+        this.toId = toId;
+        this.trafficFactor = trafficFactor;
+        this.availabilityFactor = availabilityFactor;
+    }
+
+    public static TrafficUpdate parseLine(String line) {
+        String[] fields = line.split(",", -1);
+        if (fields.length < 3 || fields.length > 4 || fields[0].isBlank() || fields[1].isBlank()) {
+            throw new IllegalArgumentException("Malformed traffic update: " + line);
+        }
+        return new TrafficUpdate(fields[0].trim(), fields[1].trim(),
+                parseFactor(fields[2], line), fields.length == 4 ? parseFactor(fields[3], line) : Double.NaN);
+    }
+
+    public static TrafficUpdate readFrom(DataInputStream in) throws IOException {
+        String from = in.readUTF();
+        String to = in.readUTF();
+        return new TrafficUpdate(from, to, in.readFloat(), in.readFloat());
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeUTF(fromId);
+        out.writeUTF(toId);
+        out.writeFloat((float) trafficFactor);
+        out.writeFloat((float) availabilityFactor);
+    }
+
+    public String getFromId() {
+        return fromId;
+    }
+
+    public String getToId() {
+        return toId;
+    }
+
+    public double getTrafficFactor() {
+        return trafficFactor;
+    }
+
+    public double getAvailabilityFactor() {
+        return availabilityFactor;
+    }
+
+    private static double parseFactor(String field, String line) {
+        if (field.isBlank()) {
+            return Double.NaN;
+        }
+        try {
+            double factor = Double.parseDouble(field.trim());
+            if (Double.isNaN(factor)) {
+                throw new IllegalArgumentException("Malformed traffic update: " + line);
+            }
+            return factor;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed traffic update: " + line, e);
+        }
+    }
+
+    private static void checkFactor(double factor, String fromId, String toId) {
+        if (!Double.isNaN(factor) && (!(factor > 0) || Double.isInfinite(factor))) {
+            throw new IllegalArgumentException(
+                    "Factors must be positive and finite: " + factor + " for " + fromId + " -> " + toId);
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package com.drivebot.utils;
+
+import com.drivebot.algorithms.IndexedMinHeap;
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Edge;
+import com.drivebot.model.Graph;
+import com.drivebot.model.Node;
+import com.drivebot.model.WeightChangeListener;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A*, Landmarks and Triangle inequality (ALT). Distances from and to a few landmark
+ * nodes are precomputed; by the triangle inequality
+ * {@code d(v,t) >= d(L,t) - d(L,v)} and {@code d(v,t) >= d(v,L) - d(t,L)}, and the
+ * largest of these bounds is the estimate. Unlike {@link EuclideanHeuristic} the
+ * bounds follow the real (traffic scaled) weights.
+ * <p>
+ * The bounds stay valid while weights only go up. The heuristic listens to its graph
+ * and drops the tables once {@link GraphUpdater} lowers any edge below the weight they
+ * were built with, or the graph is edited. Tables are only ever built from the snapshot
+ * a search hands in, and only when that snapshot is up to date; until then, and for
+ * snapshots older than the tables, the estimate falls back to 0.
+ */
+public class AltHeuristic implements Heuristic, WeightChangeListener {
+
+    public enum LandmarkStrategy {
+        /** Each landmark is the node farthest from the ones already chosen. */
+        FARTHEST,
+        /** Landmarks go where the current ones give the weakest bounds (Goldberg and Werneck). */
+        AVOID
+    }
+
+    private final Graph graph;
+    private final int landmarkCount;
+    private final LandmarkStrategy strategy;
+
+    private volatile Tables tables; // replaced as a whole, never modified once published
+    private volatile boolean stale = true;
+    private int refreshes;
+
+    public AltHeuristic(Graph graph) {
+        this(graph, 8, LandmarkStrategy.AVOID);
+    }
+
+    public AltHeuristic(Graph graph, int landmarkCount, LandmarkStrategy strategy) {
+        this.graph = graph;
+        this.landmarkCount = landmarkCount;
+        this.strategy = strategy;
+        graph.addWeightChangeListener(this);
+    }
+
+    /**
+     * Stops following the graph's weight changes.
+     */
+    public void detach() {
+        graph.removeWeightChangeListener(this);
+    }
+
+    @Override
+    public double estimate(Node current, Node goal) {
+        Tables tables = usableTables(null);
+        if (tables == null) {
+            return 0;
+        }
+        int v = tables.snapshot.getId(current);
+        int t = tables.snapshot.getId(goal);
+        if (v < 0 || t < 0) {
+            return 0;
+        }
+        return tables.bound(v, t, tables.k);
+    }
+
+    @Override
+    public double estimate(CompactGraph graph, int current, int goal) {
+        Tables tables = ensureFresh(graph);
+        if (tables == null) {
+            return 0;
+        }
+        // Snapshots of the same structure share node ids, anything else gets no bound
+        int n = tables.snapshot.getNodeCount();
+        if (current >= n || goal >= n || graph.getNode(goal) != tables.snapshot.getNode(goal)) {
+            return 0;
+        }
+        return tables.bound(current, goal, tables.k);
+    }
+
+    @Override
+    public void onWeightChanged(Edge edge, double oldWeight, double newWeight) {
+        Tables tables = this.tables;
+        if (stale || tables == null) return;
+        int id = tables.snapshot.getEdgeId(edge);
+        if (id < 0 || newWeight < tables.snapshot.getWeight(id)) {
+            stale = true;
+        }
+    }
+
+    /**
+     * @return The landmark nodes of the current tables, none until a search built them.
+     */
+    public Node[] getLandmarks() {
+        Tables tables = this.tables;
+        if (tables == null) {
+            return new Node[0];
+        }
+        Node[] nodes = new Node[tables.k];
+        for (int i = 0; i < tables.k; i++) {
+            nodes[i] = tables.snapshot.getNode(tables.landmarks[i]);
+        }
+        return nodes;
+    }
+
+    /**
+     * @return How many times the landmark tables were (re)computed.
+     */
+    public synchronized int getRefreshCount() {
+        return refreshes;
+    }
+
+    /**
+     * @param current Snapshot being searched; new tables are built from it when it is up
+     *                to date, so the graph itself is never read off the writer thread.
+     * @return Tables admissible for {@code current}, or null when there are none yet.
+     */
+    private Tables ensureFresh(CompactGraph current) {
+        Tables tables = usableTables(current);
+        if (tables != null || !isLatest(current)) {
+            return tables;
+        }
+        synchronized (this) {
+            tables = usableTables(current);
+            if (tables == null && isLatest(current)) {
+                stale = false; // changes from here on mark the new tables stale
+                tables = build(current);
+                this.tables = tables;
+                refreshes++;
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Tables built at some epoch bound every later snapshot of the same structure until a
+     * weight drops below them, but not an older snapshot whose weights may still be lower.
+     * @param current Snapshot being searched, null for the graph itself.
+     */
+    private Tables usableTables(CompactGraph current) {
+        Tables tables = this.tables;
+        if (tables == null) {
+            return null;
+        }
+        if (tables.snapshot == current) {
+            return tables;
+        }
+        long structure = current != null ? current.getStructureVersion() : graph.getStructureVersion();
+        long epoch = current != null ? current.getWeightEpoch() : graph.getWeightEpoch();
+        boolean admissible = !stale
+                && tables.snapshot.getStructureVersion() == structure
+                && tables.snapshot.getWeightEpoch() <= epoch;
+        return admissible ? tables : null;
+    }
+
+    private boolean isLatest(CompactGraph current) {
+        return current != null
+                && current.getStructureVersion() == graph.getStructureVersion()
+                && current.getWeightEpoch() == graph.getWeightEpoch();
+    }
+
+    /**
+     * Chooses the landmarks and fills both tables before anything can see them.
+     */
+    private Tables build(CompactGraph snapshot) {
+        int n = snapshot.getNodeCount();
+        int k = snapshot.hasNegativeEdge() ? 0 : Math.min(landmarkCount, n);
+        Tables tables = new Tables(snapshot, k);
+
+        Random random = new Random(n);
+        double[] forward = new double[n];
+        double[] backward = new double[n];
+        for (int i = 0; i < k; i++) {
+            tables.landmarks[i] = (i == 0 || strategy == LandmarkStrategy.FARTHEST)
+                    ? farthestLandmark(tables, i, random)
+                    : avoidLandmark(tables, i, random);
+            shortestDistances(snapshot, tables.landmarks[i], false, forward, null);
+            shortestDistances(snapshot, tables.landmarks[i], true, backward, null);
+            for (int v = 0; v < n; v++) {
+                tables.fromLandmark[v * k + i] = forward[v];
+                tables.toLandmark[v * k + i] = backward[v];
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Picks the node with the largest finite distance from the landmarks chosen so far,
+     * preferring nodes none of them reach yet.
+     */
+    private int farthestLandmark(Tables tables, int chosen, Random random) {
+        int n = tables.snapshot.getNodeCount();
+        int k = tables.k;
+        if (chosen == 0) {
+            double[] dist = new double[n];
+            shortestDistances(tables.snapshot, random.nextInt(n), false, dist, null);
+            return argMaxFinite(dist, -1);
+        }
+        double[] nearest = new double[n];
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < chosen; i++) {
+            for (int v = 0; v < n; v++) {
+                double d = Math.min(tables.fromLandmark[v * k + i], tables.toLandmark[v * k + i]);
+                nearest[v] = Math.min(nearest[v], d);
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            if (nearest[v] == Double.POSITIVE_INFINITY) {
+                return v;
+            }
+        }
+        return argMaxFinite(nearest, -1);
+    }
+
+    /**
+     * Grows a shortest path tree from a random root, weights every node by how much the
+     * current landmarks underestimate its distance, and walks down the heaviest subtree
+     * without a landmark to a leaf.
+     */
+    private int avoidLandmark(Tables tables, int chosen, Random random) {
+        int n = tables.snapshot.getNodeCount();
+        int root = random.nextInt(n);
+        double[] dist = new double[n];
+        int[] parent = new int[n];
+        int[] order = new int[n];
+        int reached = shortestDistances(tables.snapshot, root, false, dist, new int[][]{parent, order});
+
+        boolean[] isLandmark = new boolean[n];
+        for (int i = 0; i < chosen; i++) {
+            isLandmark[tables.landmarks[i]] = true;
+        }
+        double[] size = new double[n];
+        boolean[] covered = new boolean[n];
+        for (int idx = reached - 1; idx >= 0; idx--) {
+            int v = order[idx];
+            double gap = dist[v] - tables.bound(root, v, chosen);
+            covered[v] |= isLandmark[v];
+            size[v] = covered[v] ? 0 : size[v] + gap;
+            if (parent[v] >= 0) {
+                size[parent[v]] += size[v];
+                covered[parent[v]] |= covered[v];
+            }
+        }
+        if (size[root] <= 0) {
+            return farthestLandmark(tables, chosen, random);
+        }
+
+        int[] childCount = new int[n + 1];
+        for (int idx = 0; idx < reached; idx++) {
+            int v = order[idx];
+            if (parent[v] >= 0) childCount[parent[v] + 1]++;
+        }
+        for (int v = 0; v < n; v++) childCount[v + 1] += childCount[v];
+        int[] children = new int[reached];
+        int[] fill = Arrays.copyOf(childCount, n);
+        for (int idx = 0; idx < reached; idx++) {
+            int v = order[idx];
+            if (parent[v] >= 0) children[fill[parent[v]]++] = v;
+        }
+
+        int current = root;
+        while (true) {
+            int next = -1;
+            for (int c = childCount[current]; c < childCount[current + 1]; c++) {
+                int child = children[c];
+                if (size[child] > 0 && (next < 0 || size[child] > size[next])) {
+                    next = child;
+                }
+            }
+            if (next < 0) return current;
+            current = next;
+        }
+    }
+
+    /**
+     * One-to-all Dijkstra over the snapshot, forwards or over incoming edges.
+     * @param tree Optional {parent, settle order} arrays to fill.
+     * @return Number of nodes reached.
+     */
+    private static int shortestDistances(CompactGraph snapshot, int source, boolean reverse, double[] dist, int[][] tree) {
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        if (tree != null) Arrays.fill(tree[0], -1);
+        IndexedMinHeap heap = new IndexedMinHeap(dist.length);
+        dist[source] = 0;
+        heap.insertOrDecrease(source, 0);
+        int reached = 0;
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            if (tree != null) tree[1][reached] = u;
+            reached++;
+            int first = reverse ? snapshot.firstIncoming(u) : snapshot.firstEdge(u);
+            int end = reverse ? snapshot.endIncoming(u) : snapshot.endEdge(u);
+            for (int i = first; i < end; i++) {
+                int e = reverse ? snapshot.getIncomingEdge(i) : i;
+                int v = reverse ? snapshot.getSource(e) : snapshot.getTarget(e);
+                double d = dist[u] + snapshot.getWeight(e);
+                if (d < dist[v]) {
+                    dist[v] = d;
+                    if (tree != null) tree[0][v] = u;
+                    heap.insertOrDecrease(v, d);
+                }
+            }
+        }
+        return reached;
+    }
+
+    private static int argMaxFinite(double[] values, int fallback) {
+        int best = fallback;
+        for (int v = 0; v < values.length; v++) {
+            if (values[v] < Double.POSITIVE_INFINITY && (best < 0 || values[v] > values[best])) {
+                best = v;
+            }
+        }
+        return best < 0 ? 0 : best;
+    }
+
+    /**
+     * Landmarks and both distance tables of one snapshot.
+     */
+    private static final class Tables {
+        final CompactGraph snapshot;
+        final int k;
+        final int[] landmarks;
+        final double[] fromLandmark; // [v * k + i] = d(landmark i, v)
+        final double[] toLandmark;   // [v * k + i] = d(v, landmark i)
+
+        Tables(CompactGraph snapshot, int k) {
+            this.snapshot = snapshot;
+            this.k = k;
+            int n = snapshot.getNodeCount();
+            landmarks = new int[k];
+            fromLandmark = new double[n * k];
+            toLandmark = new double[n * k];
+        }
+
+        /**
+         * Largest triangle-inequality bound from the first {@code count} landmarks.
+         */
+        double bound(int v, int t, int count) {
+            double best = 0;
+            int vRow = v * k;
+            int tRow = t * k;
+            for (int i = 0; i < count; i++) {
+                // Unreachable landmarks give NaN or -infinity here and never win the max
+                double forward = fromLandmark[tRow + i] - fromLandmark[vRow + i];
+                double backward = toLandmark[vRow + i] - toLandmark[tRow + i];
+                if (forward > best) best = forward;
+                if (backward > best) best = backward;
+            }
+            return best;
+        }
+    }
+}
@@ -3,10 +3,44 @@ package com.drivebot.utils;
 import com.drivebot.model.Edge;
 import com.drivebot.model.Graph;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class GraphUpdater {
 
-    public static void updateGraphWeights(Graph graph) {
-        for (Edge edge : graph.getAllEdges()) {
+    /**
+     * Recomputes the weights of the edges in the graph's change log only.
+     * @return Number of edges whose weight changed; the graph's weight epoch advances when it is non-zero.
+     */
+    public static int updateGraphWeights(Graph graph) {
+        return applyPendingChanges(graph).size();
+    }
+
+    /**
+     * Same as {@link #updateGraphWeights(Graph)}, for callers that patch weight snapshots.
+     * @return The edges whose weight changed.
+     */
+    public static List<Edge> applyPendingChanges(Graph graph) {
+        if (!graph.hasPendingChanges()) {
+            return Collections.emptyList();
+        }
+        return applyChanges(graph, graph.drainPendingChanges());
+    }
+
+    /**
+     * Recomputes every edge weight, regardless of the change log.
+     * @return Number of edges whose weight changed.
+     */
+    public static int recomputeAllWeights(Graph graph) {
+        graph.drainPendingChanges();
+        return applyChanges(graph, graph.getAllEdges()).size();
+    }
+
+    private static List<Edge> applyChanges(Graph graph, List<Edge> edges) {
+        List<Edge> changed = new ArrayList<>();
+        List<Double> oldWeights = new ArrayList<>();
+        for (Edge edge : edges) {
             if (edge.getWeight() < 0) {
                 continue;
             }
@@ -16,7 +50,20 @@ public class GraphUpdater {
             double availabilityFactor = edge.getAvailabilityFactor();
 
             double adjustedWeight = baseCost * trafficFactor / availabilityFactor;
-            edge.setWeight(adjustedWeight);
+            double oldWeight = edge.getWeight();
+            if (adjustedWeight != oldWeight) {
+                edge.setComputedWeight(adjustedWeight);
+                changed.add(edge);
+                oldWeights.add(oldWeight);
+            }
+        }
+        if (!changed.isEmpty()) {
+            // Listeners hear about the changes only once the new epoch is visible
+            graph.advanceWeightEpoch();
+            for (int i = 0; i < changed.size(); i++) {
+                graph.fireWeightChanged(changed.get(i), oldWeights.get(i), changed.get(i).getWeight());
+            }
         }
+        return changed;
     }
 }
@@ -1,5 +1,6 @@
 package com.drivebot.utils;
 
+import com.drivebot.model.CompactGraph;
 import com.drivebot.model.Node;
 
 public interface Heuristic {
@@ -10,4 +11,12 @@ public interface Heuristic {
      * @return Estimated cost to reach the goal.
      */
     double estimate(Node current, Node goal);
+
+    /**
+     * Same estimate for searches over a {@link CompactGraph}, by dense node id.
+     * Heuristics with per-node tables override this to skip the node lookups.
+     */
+    default double estimate(CompactGraph graph, int current, int goal) {
+        return estimate(graph.getNode(current), graph.getNode(goal));
+    }
 }
@@ -15,6 +15,9 @@ public class PricingCalculator {
     private static final double lambdaE = 0.05; // CO₂ emissions penalty
     private static final double lambdaS = 1.0;  // social subsidy bonus
 
+    /** True when every exponent is 1 and the price is a plain weighted sum. */
+    private static final boolean LINEAR = c1 == 1.0 && c2 == 1.0 && c3 == 1.0 && c4 == 1.0;
+
     public static double computePrice(Edge edge) {
         double d = edge.getBaseCost(); // distance
         double tau = edge.getTravelTime(); // estimated time
@@ -23,12 +26,7 @@ public class PricingCalculator {
         double e = edge.getCO2Emission();
         double s = edge.getSocialSubsidy();
 
-        return a1 * Math.pow(d, c1) +
-                a2 * Math.pow(tau, c2) +
-                a3 * Math.pow(delta, c3) +
-                a4 * Math.pow(eta, c4) +
-                lambdaE * e -
-                lambdaS * s;
+        return price(d, tau, delta, eta, e, s);
     }
 
     public static double computeProfit(Edge edge) {
@@ -36,4 +34,16 @@ public class PricingCalculator {
         double cost = edge.getOperationalCost();
         return price - cost;
     }
+
+    static double price(double d, double tau, double delta, double eta, double e, double s) {
+        if (LINEAR) {
+            return a1 * d + a2 * tau + a3 * delta + a4 * eta + lambdaE * e - lambdaS * s;
+        }
+        return a1 * Math.pow(d, c1) +
+                a2 * Math.pow(tau, c2) +
+                a3 * Math.pow(delta, c3) +
+                a4 * Math.pow(eta, c4) +
+                lambdaE * e -
+                lambdaS * s;
+    }
 }
@@ -0,0 +1,273 @@
+package com.drivebot.utils;
+
+import com.drivebot.model.CompactGraph;
+import com.drivebot.model.Edge;
+import com.drivebot.model.Node;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * {@link PricingCalculator} over every edge of a {@link CompactGraph} at once. The price
+ * inputs live in one primitive column per factor, indexed by snapshot edge id, and the
+ * prices and profits are recomputed only for edges whose inputs changed since the last
+ * quote. When many edges changed the whole columns are recomputed in one branch-free loop
+ * the JIT can vectorize.
+ * <p>
+ * Route fares are sums of edge prices; {@link #fareProfile(int[])} returns their prefix
+ * sums so any stretch of a route (pickup to drop-off) is quoted with one subtraction.
+ * A table is not thread-safe: one thread edits and quotes, or callers synchronize.
+ */
+public final class PricingTable {
+
+    /** Past this share of dirty edges a full column pass beats recomputing them one by one. */
+    private static final int FULL_PASS_RATIO = 8;
+
+    private final CompactGraph graph;
+    private final int edgeCount;
+
+    private final double[] distance;
+    private final double[] travelTime;
+    private final double[] demand;
+    private final double[] availability;
+    private final double[] co2;
+    private final double[] subsidy;
+    private final double[] operationalCost;
+    private final double[] price;
+    private final double[] profit;
+
+    private final boolean[] dirty;
+    private final int[] dirtyEdges;
+    private int dirtyCount;
+
+    private PricingTable(CompactGraph graph) {
+        this.graph = graph;
+        this.edgeCount = graph.getEdgeCount();
+        distance = new double[edgeCount];
+        travelTime = new double[edgeCount];
+        demand = new double[edgeCount];
+        availability = new double[edgeCount];
+        co2 = new double[edgeCount];
+        subsidy = new double[edgeCount];
+        operationalCost = new double[edgeCount];
+        price = new double[edgeCount];
+        profit = new double[edgeCount];
+        dirty = new boolean[edgeCount];
+        dirtyEdges = new int[edgeCount];
+    }
+
+    /**
+     * Copies the price inputs of every edge of the snapshot and prices them all.
+     */
+    public static PricingTable of(CompactGraph graph) {
+        PricingTable table = new PricingTable(graph);
+        for (int e = 0; e < table.edgeCount; e++) {
+            table.load(e, graph.getEdge(e));
+        }
+        table.recomputeAll();
+        return table;
+    }
+
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Re-reads the price inputs of an edge after it was edited, e.g. the edges
+     * {@link GraphUpdater#applyPendingChanges} returns.
+     * @return False if the edge is not part of this table's snapshot.
+     */
+    public boolean reload(Edge edge) {
+        int id = graph.getEdgeId(edge);
+        if (id < 0) {
+            return false;
+        }
+        load(id, edge);
+        markDirty(id);
+        return true;
+    }
+
+    /**
+     * @return Number of the edges that are part of this table's snapshot.
+     */
+    public int reload(Collection<Edge> edges) {
+        int reloaded = 0;
+        for (Edge edge : edges) {
+            if (reload(edge)) reloaded++;
+        }
+        return reloaded;
+    }
+
+    public void setDemandFactor(int edge, double demandFactor) {
+        demand[edge] = demandFactor;
+        markDirty(edge);
+    }
+
+    public void setAvailabilityFactor(int edge, double availabilityFactor) {
+        availability[edge] = availabilityFactor;
+        markDirty(edge);
+    }
+
+    public void setTravelTime(int edge, double time) {
+        travelTime[edge] = time;
+        markDirty(edge);
+    }
+
+    public void setSocialSubsidy(int edge, double socialSubsidy) {
+        subsidy[edge] = socialSubsidy;
+        markDirty(edge);
+    }
+
+    /**
+     * Prices the edges changed since the last call. Quotes call this themselves.
+     * @return Number of edges repriced.
+     */
+    public int recompute() {
+        int count = dirtyCount;
+        if (count == 0) {
+            return 0;
+        }
+        if (count * FULL_PASS_RATIO >= edgeCount) {
+            recomputeAll();
+        } else {
+            for (int i = 0; i < count; i++) {
+                int e = dirtyEdges[i];
+                price[e] = PricingCalculator.price(distance[e], travelTime[e], demand[e],
+                        availability[e], co2[e], subsidy[e]);
+                profit[e] = price[e] - operationalCost[e];
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            dirty[dirtyEdges[i]] = false;
+        }
+        dirtyCount = 0;
+        return count;
+    }
+
+    public double getPrice(int edge) {
+        recompute();
+        return price[edge];
+    }
+
+    public double getProfit(int edge) {
+        recompute();
+        return profit[edge];
+    }
+
+    /**
+     * Maps a node path to the edge ids it drives over, taking the cheapest of parallel edges
+     * the way the router does.
+     * @throws IllegalArgumentException If two consecutive nodes are not connected in the snapshot.
+     */
+    public int[] toEdgeIds(List<Node> path) {
+        int[] edges = new int[Math.max(0, path.size() - 1)];
+        int u = path.isEmpty() ? -1 : graph.getId(path.get(0));
+        for (int i = 0; i < edges.length; i++) {
+            int v = graph.getId(path.get(i + 1));
+            int best = -1;
+            if (u >= 0) {
+                for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                    if (graph.getTarget(e) == v && (best < 0 || graph.getWeight(e) < graph.getWeight(best))) {
+                        best = e;
+                    }
+                }
+            }
+            if (best < 0) {
+                throw new IllegalArgumentException("No edge from " + path.get(i) + " to " + path.get(i + 1));
+            }
+            edges[i] = best;
+            u = v;
+        }
+        return edges;
+    }
+
+    /**
+     * @return The fare of the route: the sum of its edge prices.
+     */
+    public double quote(int[] route) {
+        recompute();
+        double fare = 0;
+        for (int e : route) {
+            fare += price[e];
+        }
+        return fare;
+    }
+
+    public double quote(List<Node> path) {
+        return quote(toEdgeIds(path));
+    }
+
+    /**
+     * @return The profit of the route: its fare minus the operational cost of its edges.
+     */
+    public double quoteProfit(int[] route) {
+        recompute();
+        double total = 0;
+        for (int e : route) {
+            total += profit[e];
+        }
+        return total;
+    }
+
+    /**
+     * @return Prefix sums of the route's edge prices; {@code profile[j] - profile[i]} is the
+     *         fare from the i-th to the j-th node of the route.
+     */
+    public double[] fareProfile(int[] route) {
+        recompute();
+        double[] profile = new double[route.length + 1];
+        for (int i = 0; i < route.length; i++) {
+            profile[i + 1] = profile[i] + price[route[i]];
+        }
+        return profile;
+    }
+
+    /**
+     * Quotes a batch of candidate routes, repricing changed edges once for all of them.
+     * @return The fare of every route, in order.
+     */
+    public double[] quoteAll(int[][] routes) {
+        recompute();
+        double[] fares = new double[routes.length];
+        for (int r = 0; r < routes.length; r++) {
+            double fare = 0;
+            for (int e : routes[r]) {
+                fare += price[e];
+            }
+            fares[r] = fare;
+        }
+        return fares;
+    }
+
+    private void load(int id, Edge edge) {
+        distance[id] = edge.getBaseCost();
+        travelTime[id] = edge.getTravelTime();
+        demand[id] = edge.getDemandFactor();
+        availability[id] = edge.getAvailabilityFactor();
+        co2[id] = edge.getCO2Emission();
+        subsidy[id] = edge.getSocialSubsidy();
+        operationalCost[id] = edge.getOperationalCost();
+    }
+
+    private void markDirty(int edge) {
+        if (!dirty[edge]) {
+            dirty[edge] = true;
+            dirtyEdges[dirtyCount++] = edge;
+        }
+    }
+
+    private void recomputeAll() {
+        // price() is small and LINEAR a constant, so it inlines to straight-line column
+        // arithmetic the JIT can vectorize, while the formula stays in one place
+        for (int e = 0; e < edgeCount; e++) {
+            double p = PricingCalculator.price(distance[e], travelTime[e], demand[e],
+                    availability[e], co2[e], subsidy[e]);
+            price[e] = p;
+            profit[e] = p - operationalCost[e];
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.drivebot.tests;
+
+import com.drivebot.DriveBotRouter;
+import com.drivebot.RoutingEngine;
+import com.drivebot.algorithms.AStar;
+import com.drivebot.algorithms.BidirectionalAStar;
+import com.drivebot.algorithms.BidirectionalDijkstra;
+import com.drivebot.algorithms.Dijkstra;
+import com.drivebot.algorithms.SearchStats;
+import com.drivebot.model.*;
+import com.drivebot.utils.EuclideanHeuristic;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BidirectionalSearchTest {
+
+    // --------------------------
+    // INCOMING ADJACENCY TEST
+    // --------------------------
+    @Test
+    public void testIncomingEdgesFollowEdits() {
+        System.out.println("\n--- Test: Incoming Adjacency ---");
+        Graph graph = new Graph();
+        Node a = new Node("A", 0, 0);
+        Node b = new Node("B", 1, 0);
+        Edge ab = new Edge(a, b, 1);
+        graph.addEdge(ab);
+        graph.addEdge(b, a, 2);
+
+        assertEquals(List.of(ab), graph.getIncomingEdges(b));
+        assertEquals(1, graph.getIncomingEdges(a).size());
+
+        graph.removeEdge(ab);
+        assertTrue(graph.getIncomingEdges(b).isEmpty());
+    }
+
+    // --------------------------
+    // RANDOMIZED VALIDATION
+    // --------------------------
+    @Test
+    public void testBidirectionalSearchesMatchDijkstra() {
+        System.out.println("\n--- Test: Bidirectional Search vs Dijkstra ---");
+        EuclideanHeuristic heuristic = new EuclideanHeuristic();
+        long unidirectional = 0;
+        long bidirectional = 0;
+
+        for (long seed = 1; seed <= 4; seed++) {
+            Graph graph = TestGraphs.createRandomGeometricGraph(seed, 300);
+            CompactGraph compact = CompactGraph.of(graph);
+            Random random = new Random(seed);
+
+            for (int i = 0; i < 60; i++) {
+                Node start = compact.getNode(random.nextInt(compact.getNodeCount()));
+                Node goal = compact.getNode(random.nextInt(compact.getNodeCount()));
+                List<Node> expected = Dijkstra.findPath(compact, start, goal);
+
+                List<Node> biDijkstra = BidirectionalDijkstra.findPath(compact, start, goal);
+                List<Node> biDijkstraObject = BidirectionalDijkstra.findPath(graph, start, goal);
+                List<Node> biAStar = BidirectionalAStar.findPath(compact, start, goal, heuristic);
+                List<Node> biAStarObject = BidirectionalAStar.findPath(graph, start, goal, heuristic);
+
+                for (List<Node> actual : List.of(biDijkstra, biDijkstraObject, biAStar, biAStarObject)) {
+                    assertEquals(expected.isEmpty(), actual.isEmpty());
+                    if (!expected.isEmpty()) {
+                        assertEquals(start, actual.get(0));
+                        assertEquals(goal, actual.get(actual.size() - 1));
+                        assertEquals(TestGraphs.pathCost(graph, expected), TestGraphs.pathCost(graph, actual), 1e-9);
+                    }
+                }
+
+                SearchStats uni = new SearchStats();
+                SearchStats bi = new SearchStats();
+                AStar.findPath(compact, start, goal, heuristic, RoadClassPolicy.ALLOW_ALL, uni);
+                BidirectionalAStar.findPath(compact, start, goal, heuristic, RoadClassPolicy.ALLOW_ALL, bi);
+                unidirectional += uni.getNodesSettled();
+                bidirectional += bi.getNodesSettled();
+            }
+        }
+        System.out.println("Settled nodes, A*: " + unidirectional + " | bidirectional A*: " + bidirectional);
+    }
+
+    // --------------------------
+    // ROUTER ENGINE TEST
+    // --------------------------
+    @Test
+    public void testRouterSelectsBidirectionalEngines() {
+        System.out.println("\n--- Test: Router with Bidirectional Engines ---");
+        Graph graph = TestGraphs.createRandomGeometricGraph(9, 100);
+        Node start = graph.getNodeById("N1");
+        Node goal = graph.getNodeById("N50");
+        List<Node> expected = Dijkstra.findPath(graph, start, goal);
+
+        for (RoutingEngine engine : List.of(RoutingEngine.BIDIRECTIONAL_DIJKSTRA, RoutingEngine.BIDIRECTIONAL_ASTAR)) {
+            DriveBotRouter router = new DriveBotRouter(graph, new EuclideanHeuristic(), engine, RoadClassPolicy.ALLOW_ALL);
+            assertEquals(TestGraphs.pathCost(graph, expected), TestGraphs.pathCost(graph, router.computeRoute(start, goal)), 1e-9);
+        }
+    }
+}
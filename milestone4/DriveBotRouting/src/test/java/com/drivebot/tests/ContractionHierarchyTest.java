@@ -0,0 +1,124 @@
+package com.drivebot.tests;
+
+import com.drivebot.DriveBotRouter;
+import com.drivebot.RoutingEngine;
+import com.drivebot.SearchMethod;
+import com.drivebot.algorithms.Dijkstra;
+import com.drivebot.algorithms.ch.ContractionHierarchy;
+import com.drivebot.algorithms.ch.ContractionHierarchyBuilder;
+import com.drivebot.algorithms.ch.ContractionHierarchyQuery;
+import com.drivebot.metrics.RoutingMetrics;
+import com.drivebot.model.*;
+import com.drivebot.utils.EuclideanHeuristic;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContractionHierarchyTest {
+
+    // --------------------------
+    // RANDOMIZED VALIDATION AGAINST DIJKSTRA
+    // --------------------------
+    @Test
+    public void testQueriesMatchDijkstraOnRandomGraphs() {
+        System.out.println("\n--- Test: Contraction Hierarchies vs Dijkstra ---");
+        for (long seed = 1; seed <= 5; seed++) {
+            Graph graph = TestGraphs.createRandomGraph(seed, 150, 600);
+            CompactGraph compact = CompactGraph.of(graph);
+            ContractionHierarchy ch = ContractionHierarchyBuilder.build(compact);
+            ContractionHierarchyQuery query = ch.newQuery();
+
+            Random random = new Random(seed * 31);
+            for (int i = 0; i < 100; i++) {
+                Node start = compact.getNode(random.nextInt(compact.getNodeCount()));
+                Node goal = compact.getNode(random.nextInt(compact.getNodeCount()));
+
+                List<Node> expected = Dijkstra.findPath(compact, start, goal);
+                List<Node> actual = query.findPath(start, goal);
+
+                assertEquals(expected.isEmpty(), actual.isEmpty(), "Reachability differs for " + start + " -> " + goal);
+                if (!expected.isEmpty()) {
+                    assertEquals(start, actual.get(0));
+                    assertEquals(goal, actual.get(actual.size() - 1));
+                    assertEquals(TestGraphs.pathCost(graph, expected), TestGraphs.pathCost(graph, actual), 1e-9);
+                    assertEquals(TestGraphs.pathCost(graph, expected), query.getLastDistance(), 1e-9);
+                }
+            }
+            System.out.printf("Seed %d: %d edges, %d shortcuts%n", seed, ch.getEdgeCount(), ch.getShortcutCount());
+        }
+    }
+
+    // --------------------------
+    // SERIALIZATION TEST
+    // --------------------------
+    @Test
+    public void testSerializedHierarchyAnswersTheSame() throws IOException {
+        System.out.println("\n--- Test: Contraction Hierarchy Serialization ---");
+        Graph graph = TestGraphs.createRandomGraph(7, 80, 300);
+        CompactGraph compact = CompactGraph.of(graph);
+        ContractionHierarchy ch = ContractionHierarchyBuilder.build(compact);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ch.writeTo(bytes);
+        ContractionHierarchy loaded = ContractionHierarchy.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(ch.getEdgeCount(), loaded.getEdgeCount());
+        for (int i = 0; i < compact.getNodeCount(); i += 7) {
+            Node start = compact.getNode(i);
+            Node goal = compact.getNode((i * 13) % compact.getNodeCount());
+            assertEquals(ch.findPath(start, goal), loaded.findPath(start, goal));
+        }
+        System.out.println("Serialized size: " + bytes.size() + " bytes");
+    }
+
+    // --------------------------
+    // ROUTER ENGINE TEST
+    // --------------------------
+    @Test
+    public void testRouterUsesHierarchyAndRebuildsAfterUpdates() throws InterruptedException {
+        System.out.println("\n--- Test: Router with Contraction Hierarchies ---");
+        Graph graph = new Graph();
+        Node a = new Node("A", 0, 0);
+        Node b = new Node("B", 1, 0);
+        Node c = new Node("C", 2, 0);
+        Edge ab = new Edge(a, b, 2);
+        graph.addEdge(ab);
+        graph.addEdge(new Edge(b, c, 2));
+        graph.addEdge(new Edge(a, c, 5));
+
+        DriveBotRouter router = new DriveBotRouter(graph, new EuclideanHeuristic(),
+                RoutingEngine.CONTRACTION_HIERARCHIES, RoadClassPolicy.NO_FREEWAYS);
+        RoutingMetrics metrics = new RoutingMetrics();
+        router.setMetrics(metrics);
+        assertEquals(List.of(a, b, c), router.computeRoute(a, c));
+        assertEquals(List.of(a, b, c), awaitHierarchyRoute(router, metrics, a, c));
+
+        // The new snapshot is answered at once, before its own hierarchy is contracted
+        ab.setTrafficFactor(5.0);
+        assertEquals(List.of(a, c), router.computeRoute(a, c));
+        assertEquals(List.of(a, c), awaitHierarchyRoute(router, metrics, a, c));
+    }
+
+    /**
+     * Routes until a query is answered by the hierarchy, which is contracted in the background.
+     */
+    private List<Node> awaitHierarchyRoute(DriveBotRouter router, RoutingMetrics metrics, Node start, Node goal)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (System.currentTimeMillis() < deadline) {
+            long before = metrics.getQueryCount(SearchMethod.CONTRACTION_HIERARCHIES);
+            List<Node> path = router.computeRoute(start, goal);
+            if (metrics.getQueryCount(SearchMethod.CONTRACTION_HIERARCHIES) > before) {
+                return path;
+            }
+            Thread.sleep(10);
+        }
+        return fail("The hierarchy was not built in time.");
+    }
+}
@@ -1,14 +1,45 @@
 package com.drivebot.tests;
 
 import com.drivebot.DriveBotRouter;
+import com.drivebot.RouteCache;
+import com.drivebot.SearchMethod;
+import com.drivebot.SnapshotRoute;
+import com.drivebot.TravelMatrix;
 import com.drivebot.algorithms.AStar;
+import com.drivebot.algorithms.BatteryConstrainedSearch;
+import com.drivebot.algorithms.BellmanFord;
+import com.drivebot.algorithms.Dijkstra;
+import com.drivebot.algorithms.IncrementalPlanner;
+import com.drivebot.algorithms.IndexedMinHeap;
+import com.drivebot.algorithms.JohnsonPotentials;
+import com.drivebot.algorithms.KShortestPaths;
+import com.drivebot.algorithms.ParetoSearch;
+import com.drivebot.algorithms.SearchStats;
+import com.drivebot.algorithms.ShortestPathTree;
+import com.drivebot.algorithms.Spfa;
+import com.drivebot.algorithms.TimeDependentDijkstra;
+import com.drivebot.dispatch.Assignment;
+import com.drivebot.dispatch.Dispatcher;
+import com.drivebot.dispatch.MinCostMatching;
+import com.drivebot.dispatch.RideRequest;
+import com.drivebot.metrics.RoutingMetrics;
 import com.drivebot.model.*;
+import com.drivebot.traffic.TrafficIngestor;
+import com.drivebot.traffic.TrafficUpdate;
+import com.drivebot.utils.AltHeuristic;
 import com.drivebot.utils.EuclideanHeuristic;
 import com.drivebot.utils.GraphUpdater;
 import com.drivebot.utils.PricingCalculator;
+import com.drivebot.utils.PricingTable;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -133,30 +164,25 @@ public class RoutingAlgorithmTest {
 
         Graph graph = createTestGraph();
 
-        // Simulate roadblock: remove B→C connection
+        // Simulate roadblocks: remove B→C and A→C so C cannot be reached
         Edge bc = graph.getEdge("B", "C");
         graph.removeEdge(bc);
+        graph.removeEdge(graph.getEdge("A", "C"));
 
         Node start = graph.getNodeById("A");
         Node goal = graph.getNodeById("C");
 
-        // Capture console output to verify stuck message
-        java.io.ByteArrayOutputStream outContent = new java.io.ByteArrayOutputStream();
-        System.setOut(new java.io.PrintStream(outContent));
-
-        // Use DriveBotRouter (runs dead-end detection)
+        // Use DriveBotRouter (runs dead-end detection), recording which search answered
         DriveBotRouter router = new DriveBotRouter(graph, new EuclideanHeuristic(), true);
+        RoutingMetrics metrics = new RoutingMetrics();
+        router.setMetrics(metrics);
         List<Node> path = router.computeRoute(start, goal);
 
-        // Restore standard output
-        System.setOut(new java.io.PrintStream(new java.io.FileOutputStream(java.io.FileDescriptor.out)));
-
-        String consoleOutput = outContent.toString();
-
         // Assertions
         assertTrue(path.isEmpty(), "No available route should result in empty path.");
-        assertTrue(consoleOutput.toLowerCase().contains("dead end detected"),
-                "Console output should indicate dead end detection.");
+        assertEquals(1, metrics.getQueryCount(SearchMethod.DEAD_END),
+                "The query should be answered by dead end detection.");
+        assertEquals(1, metrics.getQueryCount());
 
         // Complexity analysis
         String algoUsed = graph.hasNegativeEdge() ? "Bellman–Ford" : "A* Search";
@@ -376,5 +402,1353 @@ public class RoutingAlgorithmTest {
 
         assertEquals(List.of(santaClara, paloAlto, dalyCity, sanFrancisco), path);
     }
-}
 
+    // --------------------------
+    // COMPACT (CSR) GRAPH TEST
+    // --------------------------
+    @Test
+    public void testCompactGraphMatchesObjectGraph() {
+        System.out.println("\n--- Test: Compact Graph Snapshot ---");
+        Graph graph = createTestGraph();
+        GraphUpdater.updateGraphWeights(graph);
+
+        Node a = graph.getNodeById("A");
+        Node c = graph.getNodeById("C");
+        CompactGraph compact = CompactGraph.of(graph);
+
+        assertEquals(3, compact.getNodeCount());
+        assertEquals(3, compact.getEdgeCount());
+        assertEquals(a, compact.getNode(compact.getId(a)));
+        assertEquals(-1, compact.getId(new Node("Z", 9, 9)));
+
+        List<Node> expected = Dijkstra.findPath(graph, a, c);
+        assertEquals(expected, Dijkstra.findPath(compact, a, c));
+        assertEquals(expected, AStar.findPath(compact, a, c, new EuclideanHeuristic()));
+        assertEquals(expected, BellmanFord.findPath(compact, a, c));
+
+        // Snapshot is frozen: editing the graph does not change it
+        graph.removeEdge(graph.getEdge("B", "C"));
+        assertEquals(expected, Dijkstra.findPath(compact, a, c));
+        assertEquals(List.of(a, c), Dijkstra.findPath(CompactGraph.of(graph), a, c));
+
+        System.out.println("CSR Path: " + expected);
+    }
+
+    // --------------------------
+    // INDEXED HEAP TEST
+    // --------------------------
+    @Test
+    public void testIndexedHeapDecreaseKey() {
+        System.out.println("\n--- Test: Indexed Decrease-Key Heap ---");
+        IndexedMinHeap heap = new IndexedMinHeap(4);
+        Random random = new Random(42);
+        double[] best = new double[100];
+        java.util.Arrays.fill(best, Double.POSITIVE_INFINITY);
+
+        for (int i = 0; i < 1000; i++) {
+            int id = random.nextInt(best.length);
+            double key = random.nextDouble() * 100;
+            heap.insertOrDecrease(id, key);
+            best[id] = Math.min(best[id], key);
+        }
+
+        // Every id is queued once, no matter how often its key was lowered
+        assertEquals(best.length, heap.size());
+        assertEquals(best.length, heap.getPushCount());
+
+        double previous = Double.NEGATIVE_INFINITY;
+        while (!heap.isEmpty()) {
+            double key = heap.peekKey();
+            int id = heap.poll();
+            assertEquals(best[id], key);
+            assertTrue(key >= previous, "Heap must pop keys in ascending order.");
+            previous = key;
+        }
+        System.out.println("Pushes: " + heap.getPushCount() + " | Decrease-keys: " + heap.getDecreaseKeyCount());
+    }
+
+    // --------------------------
+    // INCREMENTAL WEIGHT UPDATE TEST
+    // --------------------------
+    @Test
+    public void testIncrementalWeightUpdate() {
+        System.out.println("\n--- Test: Incremental Weight Update ---");
+        Graph graph = createTestGraph();
+
+        assertEquals(0, GraphUpdater.updateGraphWeights(graph), "Unchanged factors keep their weights.");
+        long epoch = graph.getWeightEpoch();
+        assertFalse(graph.hasPendingChanges());
+
+        Edge ab = graph.getEdge("A", "B");
+        Edge bc = graph.getEdge("B", "C");
+        ab.setTrafficFactor(3.0);
+        ab.setAvailabilityFactor(0.5);
+        bc.setWeight(42); // not a tracked input, stays until its factors change
+        assertEquals(epoch + 1, graph.getWeightEpoch(), "A direct weight edit is a new epoch of its own.");
+
+        assertTrue(graph.hasPendingChanges());
+        assertEquals(1, GraphUpdater.updateGraphWeights(graph));
+        assertEquals(epoch + 2, graph.getWeightEpoch());
+        assertEquals(12.0, ab.getWeight(), 1e-9);
+        assertEquals(42.0, bc.getWeight(), 1e-9);
+
+        assertEquals(0, GraphUpdater.updateGraphWeights(graph));
+        assertEquals(epoch + 2, graph.getWeightEpoch());
+
+        assertEquals(1, GraphUpdater.recomputeAllWeights(graph));
+        assertEquals(2.0, bc.getWeight(), 1e-9);
+        System.out.println("Weight epoch: " + graph.getWeightEpoch());
+    }
+
+    // --------------------------
+    // ROAD CLASS POLICY TEST
+    // --------------------------
+    @Test
+    public void testFreewayRoadClassIsSkippedNotReweighted() {
+        System.out.println("\n--- Test: Road Class Policy ---");
+        Graph graph = new Graph();
+
+        Node a = new Node("A", 0, 0);
+        Node freeway = new Node("I-280 Exit", 1, 0);
+        Node b = new Node("B", 1, 5);
+        Node c = new Node("C", 2, 0);
+
+        Edge aFreeway = new Edge(a, freeway, 1);
+        Edge freewayC = new Edge(freeway, c, 1);
+        Edge ab = new Edge(a, b, 5);
+        Edge bc = new Edge(b, c, 5);
+        graph.addEdge(aFreeway);
+        graph.addEdge(freewayC);
+        graph.addEdge(ab);
+        graph.addEdge(bc);
+
+        assertEquals(RoadClass.FREEWAY, aFreeway.getRoadClass());
+        assertEquals(RoadClass.UNCLASSIFIED, ab.getRoadClass());
+
+        DriveBotRouter carRouter = new DriveBotRouter(graph, new EuclideanHeuristic(), true);
+        assertEquals(List.of(a, b, c), carRouter.computeRoute(a, c));
+        assertEquals(1.0, aFreeway.getWeight(), 1e-9, "Exclusion must not overwrite the real weight.");
+
+        DriveBotRouter unrestricted = new DriveBotRouter(graph, new EuclideanHeuristic(), false, RoadClassPolicy.ALLOW_ALL);
+        assertEquals(List.of(a, freeway, c), unrestricted.computeRoute(a, c));
+
+        CompactGraph compact = CompactGraph.of(graph);
+        assertEquals(List.of(a, b, c), Dijkstra.findPath(compact, a, c, RoadClassPolicy.NO_FREEWAYS));
+    }
+
+    // --------------------------
+    // CONNECTIVITY INDEX TEST
+    // --------------------------
+    @Test
+    public void testConnectivityIndexFollowsEdits() {
+        System.out.println("\n--- Test: Connectivity Index ---");
+        Graph graph = createTestGraph();
+        Node a = graph.getNodeById("A");
+        Node b = graph.getNodeById("B");
+        Node c = graph.getNodeById("C");
+        ConnectivityIndex index = graph.getConnectivity();
+
+        assertTrue(index.isReachable(a, c));
+        assertFalse(index.isReachable(c, a));
+        assertEquals(3, index.getComponentCount());
+
+        // B is a sink once B→C is gone, but the goal is still reachable via A→C
+        graph.removeEdge(graph.getEdge("B", "C"));
+        assertTrue(index.isReachable(a, c));
+        assertFalse(index.isReachable(b, c));
+
+        // Closing a cycle merges everything into one component
+        graph.addEdge(new Edge(c, a, 1));
+        graph.addEdge(new Edge(b, a, 1));
+        assertTrue(index.isStronglyConnected(a, b));
+        assertTrue(index.isReachable(b, c));
+        assertEquals(1, index.getComponentCount());
+
+        Node d = new Node("D", 5, 5);
+        graph.addNode(d);
+        int rebuilds = index.getRebuildCount();
+        List<int[]> unreachable = index.findUnreachablePairs(List.of(a, d), List.of(c, d));
+        assertEquals(rebuilds, index.getRebuildCount(), "Adding an isolated node needs no rebuild.");
+        assertEquals(2, unreachable.size());
+        assertArrayEquals(new int[]{0, 1}, unreachable.get(0));
+        assertArrayEquals(new int[]{1, 0}, unreachable.get(1));
+    }
+
+    // --------------------------
+    // ALT LANDMARK HEURISTIC TEST
+    // --------------------------
+    @Test
+    public void testAltHeuristicSettlesFewerNodes() {
+        System.out.println("\n--- Test: ALT Landmark Heuristic ---");
+        int size = 30;
+        Random random = new Random(3);
+        Graph graph = new Graph();
+        Node[][] grid = new Node[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                grid[i][j] = new Node(i + "_" + j, i, j);
+                graph.addNode(grid[i][j]);
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (i + 1 < size) {
+                    graph.addEdge(new Edge(grid[i][j], grid[i + 1][j], 1));
+                    graph.addEdge(new Edge(grid[i + 1][j], grid[i][j], 1));
+                }
+                if (j + 1 < size) {
+                    graph.addEdge(new Edge(grid[i][j], grid[i][j + 1], 1));
+                    graph.addEdge(new Edge(grid[i][j + 1], grid[i][j], 1));
+                }
+            }
+        }
+        // Heavy traffic everywhere makes the Euclidean bound weak
+        for (Edge edge : graph.getAllEdges()) {
+            edge.setTrafficFactor(2 + random.nextDouble() * 3);
+        }
+        GraphUpdater.updateGraphWeights(graph);
+
+        CompactGraph compact = CompactGraph.of(graph);
+        AltHeuristic alt = new AltHeuristic(graph, 6, AltHeuristic.LandmarkStrategy.AVOID);
+        Node start = grid[2][3];
+        Node goal = grid[27][25];
+
+        SearchStats euclidStats = new SearchStats();
+        SearchStats altStats = new SearchStats();
+        List<Node> euclidPath = AStar.findPath(compact, start, goal, new EuclideanHeuristic(), RoadClassPolicy.ALLOW_ALL, euclidStats);
+        List<Node> altPath = AStar.findPath(compact, start, goal, alt, RoadClassPolicy.ALLOW_ALL, altStats);
+
+        assertEquals(TestGraphs.pathCost(graph, euclidPath), TestGraphs.pathCost(graph, altPath), 1e-9);
+        assertTrue(altStats.getNodesSettled() < euclidStats.getNodesSettled(),
+                "Landmarks should settle fewer nodes than the Euclidean bound.");
+        System.out.println("Euclidean: " + euclidStats + " | ALT: " + altStats);
+
+        // Lowering a weight below the table value forces a refresh, results stay optimal
+        int refreshes = alt.getRefreshCount();
+        Edge shortcut = graph.getEdge("10_10", "11_10");
+        shortcut.setTrafficFactor(0.01);
+        GraphUpdater.updateGraphWeights(graph);
+        // The old snapshot keeps its own tables; a stale graph is never read to rebuild them
+        assertTrue(alt.estimate(compact, compact.getId(start), compact.getId(goal)) > 0);
+        assertEquals(0, alt.estimate(start, goal), 0.0);
+        assertEquals(refreshes, alt.getRefreshCount());
+
+        CompactGraph updated = CompactGraph.of(graph);
+        List<Node> expected = Dijkstra.findPath(graph, start, goal);
+        List<Node> actual = AStar.findPath(updated, start, goal, alt, RoadClassPolicy.ALLOW_ALL, new SearchStats());
+        assertEquals(refreshes + 1, alt.getRefreshCount());
+        assertEquals(TestGraphs.pathCost(graph, expected), TestGraphs.pathCost(graph, actual), 1e-9);
+        alt.detach();
+    }
+
+    // --------------------------
+    // CONCURRENT ROUTING TEST
+    // --------------------------
+    @Test
+    public void testConcurrentRoutingOverPublishedSnapshots() throws Exception {
+        System.out.println("\n--- Test: Concurrent Routing over Snapshots ---");
+        Graph graph = new Graph();
+        Node a = new Node("A", 0, 0);
+        Node b = new Node("B", 1, 1);
+        Node c = new Node("C", 1, -1);
+        Node d = new Node("D", 2, 0);
+        Edge ab = new Edge(a, b, 2);
+        Edge bd = new Edge(b, d, 2);
+        Edge ac = new Edge(a, c, 3);
+        Edge cd = new Edge(c, d, 3);
+        for (Edge edge : List.of(ab, bd, ac, cd)) graph.addEdge(edge);
+
+        DriveBotRouter router = new DriveBotRouter(graph, null, false, RoadClassPolicy.ALLOW_ALL);
+        CompactGraph before = router.getSnapshot();
+        assertEquals(List.of(a, b, d), router.computeRoute(a, d));
+
+        // Publishing new weights leaves the old snapshot untouched and keeps the topology
+        router.update(g -> ab.setTrafficFactor(10.0));
+        CompactGraph after = router.getSnapshot();
+        assertNotSame(before, after);
+        assertEquals(2.0, before.getWeight(before.getEdgeId(ab)), 1e-9);
+        assertEquals(20.0, after.getWeight(after.getEdgeId(ab)), 1e-9);
+        assertEquals(before.getEdgeId(ab), after.getEdgeId(ab));
+        assertEquals(List.of(a, c, d), router.computeRoute(a, d));
+
+        // Readers route while a writer keeps flipping the cheaper side
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            boolean viaB = true;
+            while (running.get()) {
+                boolean cheapB = viaB;
+                router.update(g -> {
+                    ab.setTrafficFactor(cheapB ? 1.0 : 10.0);
+                    ac.setTrafficFactor(cheapB ? 10.0 : 1.0);
+                });
+                viaB = !viaB;
+            }
+        });
+        writer.start();
+        List<Future<Integer>> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            readers.add(pool.submit(() -> {
+                int routed = 0;
+                for (int i = 0; i < 200; i++) {
+                    List<Node> path = router.computeRoute(a, d);
+                    assertTrue(path.equals(List.of(a, b, d)) || path.equals(List.of(a, c, d)), "Unexpected path " + path);
+                    routed++;
+                }
+                return routed;
+            }));
+        }
+        for (Future<Integer> reader : readers) {
+            assertEquals(200, reader.get());
+        }
+        running.set(false);
+        writer.join();
+
+        router.update(g -> {
+            ab.setTrafficFactor(1.0);
+            ac.setTrafficFactor(1.0);
+        });
+        assertEquals(List.of(a, b, d), router.computeRoute(a, d));
+
+        // A query during a slow update routes on the last published snapshot instead of waiting
+        java.util.concurrent.CountDownLatch editing = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+        Thread slowWriter = new Thread(() -> router.update(g -> {
+            ab.setTrafficFactor(10.0);
+            editing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        slowWriter.start();
+        editing.await();
+        assertEquals(List.of(a, b, d), pool.submit(() -> router.computeRoute(a, d))
+                .get(5, java.util.concurrent.TimeUnit.SECONDS));
+        release.countDown();
+        slowWriter.join();
+        assertEquals(List.of(a, c, d), router.computeRoute(a, d));
+        pool.shutdown();
+    }
+
+    // --------------------------
+    // TRAVEL MATRIX TEST
+    // --------------------------
+    @Test
+    public void testTravelMatrixMatchesPairwiseRoutes() {
+        System.out.println("\n--- Test: Many-to-Many Travel Matrix ---");
+        Random random = new Random(11);
+        Graph graph = TestGraphs.createRandomGraph(11, 200, 600);
+        Node[] nodes = graph.getAllNodes().toArray(new Node[0]);
+
+        List<Node> sources = new ArrayList<>();
+        List<Node> targets = new ArrayList<>();
+        for (int i = 0; i < 12; i++) sources.add(nodes[random.nextInt(nodes.length)]);
+        for (int i = 0; i < 15; i++) targets.add(nodes[random.nextInt(nodes.length)]);
+        targets.add(sources.get(0));
+        targets.add(new Node("Elsewhere", 0, 0));
+
+        DriveBotRouter router = new DriveBotRouter(graph, null, false, RoadClassPolicy.ALLOW_ALL);
+        TravelMatrix matrix = router.computeMatrix(sources, targets, true);
+        CompactGraph compact = CompactGraph.of(graph);
+        int unreachable = 0;
+        for (int i = 0; i < sources.size(); i++) {
+            for (int j = 0; j < targets.size(); j++) {
+                List<Node> expected = Dijkstra.findPath(compact, sources.get(i), targets.get(j));
+                if (expected.isEmpty()) {
+                    assertEquals(Double.POSITIVE_INFINITY, matrix.getCost(i, j));
+                    assertTrue(matrix.getPath(i, j).isEmpty());
+                    unreachable++;
+                } else {
+                    assertEquals(TestGraphs.pathCost(graph, expected), matrix.getCost(i, j), 1e-9);
+                    assertEquals(matrix.getCost(i, j), TestGraphs.pathCost(graph, matrix.getPath(i, j)), 1e-9);
+                }
+            }
+        }
+        assertEquals(0.0, matrix.getCost(0, targets.size() - 2));
+        assertFalse(router.computeMatrix(sources, targets).hasPaths());
+        System.out.println("Pairs: " + sources.size() * targets.size() + ", unreachable: " + unreachable);
+    }
+
+    // --------------------------
+    // ROUTE CACHE TEST
+    // --------------------------
+    @Test
+    public void testRouteCacheInvalidatesOnlyAffectedRoutes() {
+        System.out.println("\n--- Test: Route Cache ---");
+        Graph graph = new Graph();
+        Node a = new Node("A", 0, 0);
+        Node b = new Node("B", 1, 1);
+        Node c = new Node("C", 1, -1);
+        Node d = new Node("D", 2, 0);
+        Node e = new Node("E", 5, 5);
+        Edge ab = new Edge(a, b, 2);
+        Edge cd = new Edge(c, d, 3);
+        Edge de = new Edge(d, e, 4);
+        graph.addEdge(ab);
+        graph.addEdge(new Edge(b, d, 2));
+        graph.addEdge(new Edge(a, c, 3));
+        graph.addEdge(cd);
+        graph.addEdge(de);
+
+        DriveBotRouter router = new DriveBotRouter(graph, null, false, RoadClassPolicy.ALLOW_ALL);
+        RouteCache cache = new RouteCache(2);
+        router.setRouteCache(cache);
+
+        assertEquals(List.of(a, b, d), router.computeRoute(a, d));
+        assertEquals(List.of(a, b, d), router.computeRoute(a, d));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        // A more expensive edge off the cached route keeps the entry
+        de.setTrafficFactor(3.0);
+        assertEquals(List.of(a, b, d), router.computeRoute(a, d));
+        assertEquals(2, cache.getHitCount());
+
+        // ... one on it drops the entry, and the answer follows the new weights
+        ab.setTrafficFactor(5.0);
+        assertEquals(List.of(a, c, d), router.computeRoute(a, d));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.getInvalidationCount());
+
+        // Any cheaper edge drops everything
+        router.computeRoute(a, e);
+        cd.setTrafficFactor(0.5);
+        router.computeRoute(a, d);
+        assertEquals(3, cache.getInvalidationCount());
+
+        // Least recently used pairs are evicted beyond the size bound
+        router.computeRoute(a, e);
+        router.computeRoute(b, e);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        // Concurrent lookups and stores stay correct and within the bound
+        Node[] all = {a, b, c, d, e};
+        DriveBotRouter uncached = new DriveBotRouter(graph, null, false, RoadClassPolicy.ALLOW_ALL);
+        java.util.stream.IntStream.range(0, 400).parallel().forEach(i -> {
+            Node from = all[i % all.length];
+            Node to = all[(i / all.length) % all.length];
+            assertEquals(uncached.computeRoute(from, to), router.computeRoute(from, to));
+        });
+        assertTrue(cache.size() <= 2);
+        System.out.println("Hits: " + cache.getHitCount() + ", misses: " + cache.getMissCount());
+    }
+
+    // --------------------------
+    // JOHNSON POTENTIALS TEST
+    // --------------------------
+    @Test
+    public void testJohnsonPotentialsMatchBellmanFord() {
+        System.out.println("\n--- Test: Johnson Potentials with Negative Subsidies ---");
+        Random random = new Random(21);
+        Graph graph = createSubsidyGraph(random, 120, 500);
+        Node[] nodes = graph.getAllNodes().toArray(new Node[0]);
+        assertTrue(graph.hasNegativeEdge());
+
+        CompactGraph compact = CompactGraph.of(graph);
+        JohnsonPotentials potentials = JohnsonPotentials.compute(compact, RoadClassPolicy.ALLOW_ALL);
+        for (int e = 0; e < compact.getEdgeCount(); e++) {
+            assertTrue(potentials.getReducedWeight(e) >= 0);
+        }
+        DriveBotRouter router = new DriveBotRouter(graph, null, false, RoadClassPolicy.ALLOW_ALL);
+        for (int i = 0; i < 60; i++) {
+            Node start = nodes[random.nextInt(nodes.length)];
+            Node goal = nodes[random.nextInt(nodes.length)];
+            List<Node> expected = BellmanFord.findPath(compact, start, goal);
+            List<Node> actual = potentials.findPath(start, goal);
+            assertEquals(expected.isEmpty(), actual.isEmpty());
+            assertEquals(TestGraphs.pathCost(graph, expected), TestGraphs.pathCost(graph, actual), 1e-9);
+            assertEquals(TestGraphs.pathCost(graph, expected), TestGraphs.pathCost(graph, router.computeRoute(start, goal)), 1e-9);
+        }
+
+        List<Node> sources = List.of(nodes[0], nodes[7], nodes[42]);
+        List<Node> targets = List.of(nodes[3], nodes[7], nodes[64], nodes[99]);
+        TravelMatrix matrix = router.computeMatrix(sources, targets, true);
+        TravelMatrix near = router.computeMatrixWithin(sources, targets, 10);
+        for (int i = 0; i < sources.size(); i++) {
+            for (int j = 0; j < targets.size(); j++) {
+                List<Node> expected = BellmanFord.findPath(compact, sources.get(i), targets.get(j));
+                double cost = expected.isEmpty() ? Double.POSITIVE_INFINITY : TestGraphs.pathCost(graph, expected);
+                if (sources.get(i).equals(targets.get(j))) cost = 0.0;
+                assertEquals(cost, matrix.getCost(i, j), 1e-9);
+                if (cost < Double.POSITIVE_INFINITY) {
+                    assertEquals(cost, TestGraphs.pathCost(graph, matrix.getPath(i, j)), 1e-9);
+                }
+                assertEquals(cost <= 10 ? cost : Double.POSITIVE_INFINITY, near.getCost(i, j), 1e-9);
+            }
+        }
+
+        graph.addEdge(new Edge(nodes[1], nodes[0], -1000));
+        graph.addEdge(new Edge(nodes[0], nodes[1], 1));
+        assertThrows(RuntimeException.class,
+                () -> JohnsonPotentials.compute(CompactGraph.of(graph), RoadClassPolicy.ALLOW_ALL));
+    }
+
+    // --------------------------
+    // DIRECT WEIGHT EDIT TEST
+    // --------------------------
+    @Test
+    public void testDirectWeightEditReachesPublishedSnapshot() {
+        System.out.println("\n--- Test: Direct Weight Edit After Publish ---");
+        Graph graph = new Graph();
+        Node a = new Node("A", 0, 0);
+        Node b = new Node("B", 1, 1);
+        Node c = new Node("C", 2, 0);
+        Edge bc = new Edge(b, c, 2);
+        graph.addEdge(new Edge(a, b, 2));
+        graph.addEdge(bc);
+        graph.addEdge(new Edge(a, c, 3));
+        DriveBotRouter router = new DriveBotRouter(graph, null, false, RoadClassPolicy.ALLOW_ALL);
+        assertEquals(List.of(a, c), router.computeRoute(a, c));
+
+        // A subsidy set after the first publish makes the detour the cheapest route
+        bc.setWeight(-5);
+        assertTrue(router.getSnapshot().hasNegativeEdge());
+        assertEquals(List.of(a, b, c), router.computeRoute(a, c));
+        assertEquals(-3.0, router.computeMatrix(List.of(a), List.of(c)).getCost(0, 0), 1e-9);
+    }
+
+    @Test
+    public void testRoadClassChangeReachesPublishedSnapshot() {
+        System.out.println("\n--- Test: Road Class Change After Publish ---");
+        Graph graph = new Graph();
+        Node a = new Node("A", 0, 0);
+        Node b = new Node("B", 1, 1);
+        Node c = new Node("C", 2, 0);
+        Edge ac = new Edge(a, c, 3);
+        graph.addEdge(new Edge(a, b, 2));
+        graph.addEdge(new Edge(b, c, 2));
+        graph.addEdge(ac);
+        DriveBotRouter router = new DriveBotRouter(graph, null, false);
+        assertEquals(List.of(a, c), router.computeRoute(a, c));
+
+        // Upgrading the direct road to a freeway takes it out of the default policy
+        long structure = graph.getStructureVersion();
+        ac.setRoadClass(RoadClass.FREEWAY);
+        assertEquals(structure + 1, graph.getStructureVersion());
+        assertEquals(List.of(a, b, c), router.computeRoute(a, c));
+
+        ac.setRoadClass(RoadClass.ARTERIAL);
+        assertEquals(List.of(a, c), router.computeRoute(a, c));
+    }
+
+    // --------------------------
+    // SPFA TEST
+    // --------------------------
+    @Test
+    public void testSpfaMatchesBellmanFord() {
+        System.out.println("\n--- Test: SPFA vs Bellman–Ford ---");
+        Random random = new Random(5);
+        Graph graph = createSubsidyGraph(random, 300, 1200);
+        CompactGraph compact = CompactGraph.of(graph);
+
+        for (int i = 0; i < 10; i++) {
+            int source = random.nextInt(compact.getNodeCount());
+            Node start = compact.getNode(source);
+            ShortestPathTree sequential = Spfa.oneToAll(compact, source, RoadClassPolicy.ALLOW_ALL);
+            ShortestPathTree parallel = Spfa.oneToAllParallel(compact, source, RoadClassPolicy.ALLOW_ALL);
+            for (int t = 0; t < compact.getNodeCount(); t += 7) {
+                Node goal = compact.getNode(t);
+                List<Node> expected = BellmanFord.findPath(compact, start, goal);
+                assertEquals(expected.isEmpty(), !sequential.isReachable(t));
+                if (expected.isEmpty()) continue;
+                double cost = TestGraphs.pathCost(graph, expected);
+                assertEquals(cost, sequential.getDistance(t), 1e-9);
+                assertEquals(cost, parallel.getDistance(t), 1e-9);
+                assertEquals(cost, TestGraphs.pathCost(graph, Spfa.findPath(compact, start, goal)), 1e-9);
+                assertEquals(cost, TestGraphs.pathCost(graph, parallel.pathTo(goal)), 1e-9);
+            }
+        }
+
+        Node a = compact.getNode(0);
+        Node b = compact.getNode(1);
+        graph.addEdge(new Edge(a, b, -1000));
+        graph.addEdge(new Edge(b, a, 1));
+        CompactGraph cyclic = CompactGraph.of(graph);
+        assertThrows(RuntimeException.class, () -> Spfa.oneToAll(cyclic, 0, RoadClassPolicy.ALLOW_ALL));
+        assertThrows(RuntimeException.class, () -> Spfa.oneToAllParallel(cyclic, 0, RoadClassPolicy.ALLOW_ALL));
+    }
+
+    // --------------------------
+    // TRAFFIC INGESTION TEST
+    // --------------------------
+    @Test
+    public void testTrafficIngestionCoalescesAndAppliesBatches() throws Exception {
+        System.out.println("\n--- Test: Traffic Update Ingestion ---");
+        Graph graph = new Graph();
+        Node a = new Node("A", 0, 0);
+        Node b = new Node("B", 1, 1);
+        Node c = new Node("C", 1, -1);
+        Node d = new Node("D", 2, 0);
+        Edge ab = new Edge(a, b, 2);
+        Edge ac = new Edge(a, c, 3);
+        graph.addEdge(ab);
+        graph.addEdge(new Edge(b, d, 2));
+        graph.addEdge(ac);
+        graph.addEdge(new Edge(c, d, 3));
+        DriveBotRouter router = new DriveBotRouter(graph, null, false, RoadClassPolicy.ALLOW_ALL);
+        assertEquals(List.of(a, b, d), router.computeRoute(a, d));
+
+        StringBuilder feed = new StringBuilder("# from,to,traffic,availability\n");
+        for (int i = 0; i < 200; i++) {
+            feed.append("A,B,").append(1 + i % 3).append("\n");
+        }
+        feed.append("A,B,5\n").append("A,B,,0.5\n").append("A,C,,1.0\n").append("X,Y,2\n");
+
+        try (TrafficIngestor ingestor = new TrafficIngestor(router, 8, 50, 10_000)) {
+            assertEquals(204, ingestor.readLines(new java.io.StringReader(feed.toString())));
+            assertTrue(ingestor.awaitApplied(5_000));
+            assertEquals(1, ingestor.getUnknownEdgeCount());
+            assertEquals(203, ingestor.getAppliedCount() + ingestor.getCoalescedCount());
+            assertEquals(20.0, ab.getWeight(), 1e-9); // 2 * 5 / 0.5
+            assertEquals(List.of(a, c, d), router.computeRoute(a, d));
+
+            java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+            java.io.DataOutputStream out = new java.io.DataOutputStream(bytes);
+            TrafficIngestor.writeBinaryHeader(out);
+            new TrafficUpdate("A", "B", 1.0, 1.0).writeTo(out);
+            out.flush();
+            assertEquals(1, ingestor.readBinary(new java.io.ByteArrayInputStream(bytes.toByteArray())));
+            assertTrue(ingestor.awaitApplied(5_000));
+            assertEquals(List.of(a, b, d), router.computeRoute(a, d));
+            System.out.println("Batches: " + ingestor.getBatchCount() + ", coalesced: " + ingestor.getCoalescedCount()
+                    + ", blocked submits: " + ingestor.getBlockedSubmitCount() + ", max lag: " + ingestor.getMaxLagNanos() / 1000 + "us");
+        }
+        assertThrows(IllegalArgumentException.class, () -> TrafficUpdate.parseLine("A,B,-1"));
+        assertThrows(IllegalArgumentException.class, () -> new TrafficUpdate("A", "B", 0.0, Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> new TrafficUpdate("A", "B", Double.NaN, Double.POSITIVE_INFINITY));
+        java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+        java.io.DataOutputStream out = new java.io.DataOutputStream(bytes);
+        out.writeUTF("A");
+        out.writeUTF("B");
+        out.writeFloat(-1f);
+        out.writeFloat(1f);
+        assertThrows(IllegalArgumentException.class,
+                () -> TrafficUpdate.readFrom(new java.io.DataInputStream(new java.io.ByteArrayInputStream(bytes.toByteArray()))));
+    }
+
+    // --------------------------
+    // PRICING TABLE TEST
+    // --------------------------
+    @Test
+    public void testPricingTableMatchesCalculator() {
+        System.out.println("\n--- Test: Columnar Pricing Table ---");
+        Random random = new Random(17);
+        Graph graph = createSubsidyGraph(random, 100, 400);
+        for (Edge edge : graph.getAllEdges()) {
+            edge.setBaseCost(1 + random.nextInt(20));
+            edge.setTravelTime(random.nextDouble() * 30);
+            edge.setDemandFactor(0.5 + random.nextDouble());
+            edge.setCO2Emission(random.nextDouble());
+            edge.setSocialSubsidy(random.nextDouble() * 0.2);
+            edge.setOperationalCost(random.nextDouble() * 2);
+        }
+        CompactGraph compact = CompactGraph.of(graph);
+        PricingTable table = PricingTable.of(compact);
+        for (int e = 0; e < compact.getEdgeCount(); e++) {
+            assertEquals(PricingCalculator.computePrice(compact.getEdge(e)), table.getPrice(e), 1e-12);
+            assertEquals(PricingCalculator.computeProfit(compact.getEdge(e)), table.getProfit(e), 1e-12);
+        }
+
+        // Only the edited edges are repriced
+        Edge edited = compact.getEdge(3);
+        edited.setDemandFactor(4.0);
+        assertTrue(table.reload(edited));
+        table.setSocialSubsidy(5, 1.5);
+        compact.getEdge(5).setSocialSubsidy(1.5);
+        assertEquals(2, table.recompute());
+        assertEquals(PricingCalculator.computePrice(edited), table.getPrice(3), 1e-12);
+        assertEquals(PricingCalculator.computeProfit(compact.getEdge(5)), table.getProfit(5), 1e-12);
+
+        List<Node> path = Dijkstra.findPath(compact, compact.getNode(0), compact.getNode(50));
+        if (path.size() < 2) path = List.of(compact.getNode(compact.getSource(0)), compact.getNode(compact.getTarget(0)));
+        int[] route = table.toEdgeIds(path);
+        double expected = 0.0;
+        for (int i = 0; i < path.size() - 1; i++) {
+            expected += PricingCalculator.computePrice(graph.getEdge(path.get(i).getId(), path.get(i + 1).getId()));
+        }
+        assertEquals(expected, table.quote(path), 1e-9);
+        double[] profile = table.fareProfile(route);
+        assertEquals(expected, profile[route.length], 1e-9);
+        assertEquals(table.getPrice(route[0]), profile[1] - profile[0], 1e-12);
+        assertArrayEquals(new double[]{expected, 0.0}, table.quoteAll(new int[][]{route, new int[0]}), 1e-9);
+        System.out.printf("Route of %d edges quoted at %.2f%n", route.length, expected);
+    }
+
+    // --------------------------
+    // ROUTING METRICS TEST
+    // --------------------------
+    @Test
+    public void testRoutingMetricsRecordQueries() throws Exception {
+        System.out.println("\n--- Test: Routing Metrics ---");
+        Graph graph = createTestGraph();
+        Node a = graph.getNodeById("A");
+        Node c = graph.getNodeById("C");
+        Node isolated = new Node("Z", 5, 5);
+        graph.addNode(isolated);
+
+        DriveBotRouter router = new DriveBotRouter(graph, new EuclideanHeuristic(), true);
+        router.computeRoute(a, c); // not recorded
+        try (RoutingMetrics metrics = new RoutingMetrics()) {
+            router.setMetrics(metrics);
+            for (int i = 0; i < 10; i++) {
+                assertEquals(3, router.computeRoute(a, c).size());
+            }
+            assertTrue(router.computeRoute(a, isolated).isEmpty());
+            router.setRouteCache(new RouteCache(16));
+            router.computeRoute(a, c);
+            router.computeRoute(a, c);
+
+            assertEquals(13, metrics.getQueryCount());
+            assertEquals(11, metrics.getQueryCount(SearchMethod.ASTAR));
+            assertEquals(1, metrics.getQueryCount(SearchMethod.DEAD_END));
+            assertEquals(1, metrics.getQueryCount(SearchMethod.CACHED));
+            assertEquals(11, metrics.getNodesSettledHistogram().getCount());
+            assertEquals(33, metrics.getNodesSettledHistogram().getSum()); // A, B and C every time
+            assertEquals(3, metrics.getNodesSettledHistogram().getValueAtPercentile(99));
+            assertTrue(metrics.getHeapPushCount() >= 33);
+            assertTrue(metrics.getLatencyHistogram().getValueAtPercentile(50) <= metrics.getLatencyHistogram().getMax());
+
+            javax.management.ObjectName name = metrics.registerMBean("test");
+            javax.management.MBeanServer server = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+            assertEquals(13L, server.getAttribute(name, "QueryCount"));
+            System.out.println(metrics.summary());
+        }
+        assertFalse(java.lang.management.ManagementFactory.getPlatformMBeanServer()
+                .isRegistered(new javax.management.ObjectName("com.drivebot:type=RoutingMetrics,name=\"test\"")));
+    }
+
+    // --------------------------
+    // SPATIAL INDEX TEST
+    // --------------------------
+    @Test
+    public void testSpatialIndexMatchesLinearScan() {
+        System.out.println("\n--- Test: Spatial Index Snapping ---");
+        Random random = new Random(9);
+        Graph graph = new Graph();
+        for (int i = 0; i < 500; i++) {
+            graph.addNode(new Node("S" + i, random.nextDouble() * 100, random.nextDouble() * 50));
+        }
+        SpatialIndex index = graph.getSpatialIndex();
+        // Grown incrementally past the original bounds, also through addEdge
+        for (int i = 0; i < 1500; i++) {
+            Node from = new Node("T" + i, random.nextDouble() * 400 - 150, random.nextDouble() * 200 - 75);
+            if (i % 2 == 0) {
+                graph.addNode(from);
+            } else {
+                graph.addEdge(new Edge(from, graph.getAllNodes().iterator().next(), 1));
+            }
+        }
+        assertEquals(graph.getAllNodes().size(), index.size());
+        assertTrue(index.getRebuildCount() > 1);
+
+        for (int q = 0; q < 300; q++) {
+            double x = random.nextDouble() * 600 - 250;
+            double y = random.nextDouble() * 300 - 125;
+            List<Node> byDistance = new ArrayList<>(graph.getAllNodes());
+            byDistance.sort(java.util.Comparator.comparingDouble(n -> Math.hypot(n.getX() - x, n.getY() - y)));
+
+            assertEquals(byDistance.get(0), index.nearest(x, y));
+            List<Node> nearest = index.nearest(x, y, 5);
+            assertEquals(5, nearest.size());
+            for (int i = 0; i < 5; i++) {
+                assertEquals(Math.hypot(byDistance.get(i).getX() - x, byDistance.get(i).getY() - y),
+                        Math.hypot(nearest.get(i).getX() - x, nearest.get(i).getY() - y), 1e-12);
+            }
+            long inRadius = byDistance.stream().filter(n -> Math.hypot(n.getX() - x, n.getY() - y) <= 12).count();
+            assertEquals(inRadius, index.withinRadius(x, y, 12).size());
+        }
+        assertNull(new Graph().getSpatialIndex().nearest(0, 0));
+        System.out.println("Indexed " + index.size() + " nodes, grid rebuilt " + index.getRebuildCount() + " times");
+    }
+
+    // --------------------------
+    // TIME-DEPENDENT ROUTING TEST
+    // --------------------------
+    @Test
+    public void testTimeDependentRoutingFollowsRushHour() {
+        System.out.println("\n--- Test: Time-Dependent Travel Times ---");
+        Graph graph = new Graph();
+        Node a = new Node("A", 0, 0);
+        Node b = new Node("B", 1, 1);
+        Node c = new Node("C", 1, -1);
+        Node d = new Node("D", 2, 0);
+        Edge ab = new Edge(a, b, 600);
+        Edge ac = new Edge(a, c, 900);
+        graph.addEdge(ab);
+        graph.addEdge(new Edge(b, d, 600));
+        graph.addEdge(ac);
+        graph.addEdge(new Edge(c, d, 900));
+
+        // A→B takes 10 minutes at night and 40 minutes in the 7–9 am peak
+        TravelTimeProfiles profiles = graph.getTravelTimeProfiles();
+        double[] times = {6 * 3600, 7 * 3600, 9 * 3600, 10 * 3600};
+        int rushHour = profiles.add(times, new double[]{600, 2400, 2400, 600});
+        assertEquals(rushHour, profiles.add(times.clone(), new double[]{600, 2400, 2400, 600}));
+        assertEquals(1, profiles.size());
+        ab.setTravelTimeProfile(rushHour);
+        assertEquals(1500, profiles.evaluate(rushHour, 6.5 * 3600), 1e-9);
+        assertEquals(600, profiles.evaluate(rushHour, 3 * 3600 + TravelTimeProfiles.DAY), 1e-9);
+        assertThrows(IllegalArgumentException.class,
+                () -> profiles.add(new double[]{0, 60}, new double[]{600, 100})); // leaving later arrives earlier
+
+        TimeDependentDijkstra search = TimeDependentDijkstra.of(CompactGraph.of(graph), profiles);
+        TimeDependentDijkstra.Route night = search.findRoute(a, d, 3 * 3600);
+        assertEquals(List.of(a, b, d), night.getNodes());
+        assertEquals(1200, night.getDuration(), 1e-9);
+        TimeDependentDijkstra.Route peak = search.findRoute(a, d, 8 * 3600);
+        assertEquals(List.of(a, c, d), peak.getNodes());
+        assertEquals(8 * 3600 + 1800, peak.getArrival(), 1e-9);
+
+        // Constant travel times give the static shortest paths
+        Random random = new Random(4);
+        Graph randomGraph = createSubsidyGraph(random, 150, 600);
+        for (Edge edge : randomGraph.getAllEdges()) {
+            edge.setWeight(1 + random.nextInt(30));
+            edge.setTravelTime(edge.getWeight());
+        }
+        CompactGraph compact = CompactGraph.of(randomGraph);
+        TimeDependentDijkstra constant = TimeDependentDijkstra.of(compact, randomGraph.getTravelTimeProfiles());
+        for (int i = 0; i < 40; i++) {
+            Node start = compact.getNode(random.nextInt(compact.getNodeCount()));
+            Node goal = compact.getNode(random.nextInt(compact.getNodeCount()));
+            List<Node> expected = Dijkstra.findPath(compact, start, goal);
+            TimeDependentDijkstra.Route route = constant.findRoute(start, goal, 12 * 3600);
+            assertEquals(expected.isEmpty(), route.isEmpty());
+            if (!expected.isEmpty()) {
+                assertEquals(TestGraphs.pathCost(randomGraph, expected), route.getDuration(), 1e-9);
+            }
+        }
+        System.out.println("Night: " + night.getNodes() + ", peak: " + peak.getNodes());
+    }
+
+    // --------------------------
+    // PARETO ROUTING TEST
+    // --------------------------
+    @Test
+    public void testParetoSearchFindsEveryTradeOff() {
+        System.out.println("\n--- Test: Pareto Routes over Time, Price and CO2 ---");
+        Random random = new Random(12);
+        Graph graph = new Graph();
+        Node[] nodes = new Node[9];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new Node("P" + i, i, i % 3);
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 0; i < 30; i++) {
+            int u = random.nextInt(nodes.length);
+            int v = random.nextInt(nodes.length);
+            if (u == v || graph.getEdge(nodes[u].getId(), nodes[v].getId()) != null) continue;
+            Edge edge = new Edge(nodes[u], nodes[v], 1 + random.nextInt(10));
+            edge.setTravelTime(1 + random.nextInt(10));
+            edge.setCO2Emission(random.nextInt(10));
+            graph.addEdge(edge);
+        }
+        CompactGraph compact = CompactGraph.of(graph);
+        ParetoSearch search = ParetoSearch.of(compact, RoadClassPolicy.ALLOW_ALL);
+
+        for (int s = 0; s < nodes.length; s++) {
+            for (int t = 0; t < nodes.length; t++) {
+                if (s == t) continue;
+                // Brute force: the cost vectors of all simple paths, minus the dominated ones
+                List<double[]> all = new ArrayList<>();
+                collectPaths(graph, nodes[s], nodes[t], new ArrayList<>(List.of(nodes[s])), all);
+                java.util.Set<String> expected = new java.util.TreeSet<>();
+                for (double[] a : all) {
+                    boolean dominated = all.stream().anyMatch(b -> b[0] <= a[0] && b[1] <= a[1] && b[2] <= a[2]
+                            && (b[0] < a[0] || b[1] < a[1] || b[2] < a[2]));
+                    if (!dominated) expected.add(String.format("%.6f/%.6f/%.6f", a[0], a[1], a[2]));
+                }
+                ParetoSearch.Result result = search.findRoutes(nodes[s], nodes[t]);
+                assertTrue(result.isComplete());
+                java.util.Set<String> actual = new java.util.TreeSet<>();
+                for (ParetoSearch.Route route : result.getRoutes()) {
+                    actual.add(String.format("%.6f/%.6f/%.6f", route.getTravelTime(), route.getPrice(), route.getCO2Emission()));
+                    assertEquals(nodes[s], route.getNodes().get(0));
+                    assertEquals(nodes[t], route.getNodes().get(route.getNodes().size() - 1));
+                }
+                assertEquals(expected, actual, nodes[s] + " -> " + nodes[t]);
+            }
+        }
+
+        ParetoSearch.Result limited = search.findRoutes(nodes[0], nodes[8], 2, 50_000_000L);
+        assertTrue(limited.getRoutes().size() <= 2);
+        System.out.println("Pareto routes P0 -> P8: " + search.findRoutes(nodes[0], nodes[8]).getRoutes());
+    }
+
+    private void collectPaths(Graph graph, Node current, Node goal, List<Node> path, List<double[]> costs) {
+        if (current.equals(goal)) {
+            double[] cost = new double[3];
+            for (int i = 0; i < path.size() - 1; i++) {
+                Edge edge = graph.getEdge(path.get(i).getId(), path.get(i + 1).getId());
+                cost[0] += edge.getTravelTime();
+                cost[1] += PricingCalculator.computePrice(edge);
+                cost[2] += edge.getCO2Emission();
+            }
+            costs.add(cost);
+            return;
+        }
+        for (Edge edge : graph.getEdges(current)) {
+            if (path.contains(edge.getTo())) continue;
+            path.add(edge.getTo());
+            collectPaths(graph, edge.getTo(), goal, path, costs);
+            path.remove(path.size() - 1);
+        }
+    }
+
+    // --------------------------
+    // K SHORTEST PATHS TEST
+    // --------------------------
+    @Test
+    public void testKShortestPathsMatchEnumeration() {
+        System.out.println("\n--- Test: K Shortest Alternative Routes ---");
+        Random random = new Random(33);
+        Graph graph = new Graph();
+        Node[] nodes = new Node[10];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new Node("K" + i, i, 0);
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 0; i < 35; i++) {
+            int u = random.nextInt(nodes.length);
+            int v = random.nextInt(nodes.length);
+            if (u == v || graph.getEdge(nodes[u].getId(), nodes[v].getId()) != null) continue;
+            graph.addEdge(new Edge(nodes[u], nodes[v], 1 + random.nextInt(10)));
+        }
+        CompactGraph compact = CompactGraph.of(graph);
+
+        for (int t = 0; t < nodes.length; t++) {
+            KShortestPaths alternatives = KShortestPaths.towards(compact, nodes[t], RoadClassPolicy.ALLOW_ALL);
+            for (int s = 0; s < nodes.length; s++) {
+                List<double[]> all = new ArrayList<>();
+                collectPaths(graph, nodes[s], nodes[t], new ArrayList<>(List.of(nodes[s])), all);
+                List<Double> expected = new ArrayList<>();
+                for (double[] cost : all) expected.add(cost[0]); // travel time, equal to the weight here
+                expected.sort(null);
+
+                List<KShortestPaths.Route> routes = alternatives.find(nodes[s], 6);
+                assertEquals(Math.min(6, expected.size()), routes.size(), nodes[s] + " -> " + nodes[t]);
+                java.util.Set<List<Node>> distinct = new java.util.HashSet<>();
+                for (int i = 0; i < routes.size(); i++) {
+                    List<Node> path = routes.get(i).getNodes();
+                    assertEquals(expected.get(i), routes.get(i).getCost(), 1e-9);
+                    assertEquals(routes.get(i).getCost(), TestGraphs.pathCost(graph, path), 1e-9);
+                    assertEquals(path.size(), new java.util.HashSet<>(path).size(), "Routes must be loopless");
+                    assertTrue(distinct.add(path));
+                }
+            }
+        }
+
+        // Alternatives sharing at most half their cost with a cheaper route
+        KShortestPaths towardsLast = KShortestPaths.towards(compact, nodes[9], RoadClassPolicy.ALLOW_ALL);
+        List<KShortestPaths.Route> different = towardsLast.find(nodes[0], 3, 0.5, 100);
+        for (int i = 0; i < different.size(); i++) {
+            for (int j = 0; j < i; j++) {
+                double shared = 0;
+                List<Node> a = different.get(i).getNodes();
+                List<Node> b = different.get(j).getNodes();
+                for (int x = 0; x + 1 < a.size(); x++) {
+                    int y = b.indexOf(a.get(x));
+                    if (y >= 0 && y + 1 < b.size() && b.get(y + 1).equals(a.get(x + 1))) {
+                        shared += graph.getEdge(a.get(x).getId(), a.get(x + 1).getId()).getWeight();
+                    }
+                }
+                assertTrue(shared <= 0.5 * different.get(j).getCost() + 1e-9);
+            }
+        }
+
+        DriveBotRouter router = new DriveBotRouter(graph, null, false, RoadClassPolicy.ALLOW_ALL);
+        List<List<Node>> backups = router.computeAlternatives(nodes[0], nodes[9], 3, 1.0);
+        if (!backups.isEmpty()) {
+            assertEquals(TestGraphs.pathCost(graph, router.computeRoute(nodes[0], nodes[9])), TestGraphs.pathCost(graph, backups.get(0)), 1e-9);
+        }
+        System.out.println("Alternatives K0 -> K9: " + towardsLast.find(nodes[0], 3));
+    }
+
+    // --------------------------
+    // INCREMENTAL REPLANNING TEST
+    // --------------------------
+    @Test
+    public void testIncrementalPlannerRepairsAfterTrafficChanges() {
+        System.out.println("\n--- Test: Incremental Replanning (D* Lite) ---");
+        Random random = new Random(44);
+        Graph graph = new Graph();
+        Node[] nodes = new Node[200];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new Node("D" + i, random.nextDouble() * 10, random.nextDouble() * 10);
+            graph.addNode(nodes[i]);
+        }
+        List<Edge> edges = new ArrayList<>();
+        for (int i = 0; i < 900; i++) {
+            int u = random.nextInt(nodes.length);
+            int v = random.nextInt(nodes.length);
+            if (u == v || graph.getEdge(nodes[u].getId(), nodes[v].getId()) != null) continue;
+            // Never shorter than the straight line, so the Euclidean heuristic stays consistent
+            double length = Math.hypot(nodes[u].getX() - nodes[v].getX(), nodes[u].getY() - nodes[v].getY());
+            Edge edge = new Edge(nodes[u], nodes[v], length + 1 + random.nextInt(5));
+            graph.addEdge(edge);
+            edges.add(edge);
+        }
+        // A road no vehicle can reach: changing it must not repair anything
+        Node islandFrom = new Node("Island1", 20, 20);
+        Node islandTo = new Node("Island2", 21, 20);
+        Edge island = new Edge(islandFrom, islandTo, 2);
+        graph.addEdge(island);
+
+        IncrementalPlanner planner = new IncrementalPlanner(graph, new EuclideanHeuristic(), RoadClassPolicy.ALLOW_ALL);
+        List<IncrementalPlanner.Vehicle> vehicles = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            vehicles.add(planner.addVehicle(nodes[random.nextInt(nodes.length)], nodes[random.nextInt(nodes.length)]));
+        }
+
+        for (int round = 0; round < 10; round++) {
+            for (IncrementalPlanner.Vehicle vehicle : vehicles) {
+                List<Node> expected = Dijkstra.findPath(CompactGraph.of(graph), vehicle.getPosition(), vehicle.getGoal());
+                List<Node> route = vehicle.getRoute();
+                assertEquals(expected.isEmpty(), route.isEmpty(), vehicle.getPosition() + " -> " + vehicle.getGoal());
+                if (expected.isEmpty()) continue;
+                assertEquals(TestGraphs.pathCost(graph, expected), vehicle.getCost(), 1e-9);
+                assertEquals(TestGraphs.pathCost(graph, expected), TestGraphs.pathCost(graph, route), 1e-9);
+                assertEquals(vehicle.getGoal(), route.get(route.size() - 1));
+            }
+
+            // Traffic on a few roads, then every vehicle advances one node along its route
+            for (int i = 0; i < 15; i++) {
+                edges.get(random.nextInt(edges.size())).setTrafficFactor(1 + random.nextDouble() * 3);
+            }
+            GraphUpdater.updateGraphWeights(graph);
+            long[] before = expandedCounts(vehicles);
+            int repaired = planner.repair();
+            long[] after = expandedCounts(vehicles);
+            long repairExpanded = 0;
+            int searched = 0;
+            for (int v = 0; v < vehicles.size(); v++) {
+                repairExpanded += after[v] - before[v];
+                if (after[v] > before[v]) searched++;
+            }
+            assertTrue(searched <= repaired, "Only repaired vehicles search again");
+            assertTrue(repairExpanded < scratchExpanded(graph, vehicles),
+                    "Repairing must expand fewer nodes than planning every vehicle again");
+            for (IncrementalPlanner.Vehicle vehicle : vehicles) {
+                List<Node> route = vehicle.getRoute();
+                if (route.size() > 1) vehicle.moveTo(route.get(1));
+            }
+        }
+
+        long[] before = expandedCounts(vehicles);
+        island.setTrafficFactor(4);
+        GraphUpdater.updateGraphWeights(graph);
+        assertEquals(0, planner.repair());
+        assertArrayEquals(before, expandedCounts(vehicles));
+
+        // A new road changes the structure: every vehicle is planned again on the new snapshot
+        graph.addEdge(new Edge(nodes[0], nodes[1], 100));
+        planner.repair();
+        assertEquals(vehicles.size(), planner.getLastRepairedCount());
+        for (IncrementalPlanner.Vehicle vehicle : vehicles) {
+            List<Node> expected = Dijkstra.findPath(CompactGraph.of(graph), vehicle.getPosition(), vehicle.getGoal());
+            if (!expected.isEmpty()) assertEquals(TestGraphs.pathCost(graph, expected), vehicle.getCost(), 1e-9);
+        }
+
+        // A negative weight closes only its own edge, the other changes of the batch apply
+        IncrementalPlanner.Vehicle driving = null;
+        for (int i = 0; driving == null; i++) {
+            IncrementalPlanner.Vehicle candidate = planner.addVehicle(nodes[i], nodes[nodes.length - 1 - i]);
+            if (candidate.getRoute().size() > 1) driving = candidate; else planner.removeVehicle(candidate);
+        }
+        vehicles.add(driving);
+        Edge subsidized = graph.getEdge(driving.getRoute().get(0).getId(), driving.getRoute().get(1).getId());
+        Edge congested = edges.get(0);
+        congested.setTrafficFactor(5);
+        GraphUpdater.updateGraphWeights(graph);
+        planner.onWeightChanged(subsidized, subsidized.getWeight(), -5);
+        planner.repair();
+        assertEquals(List.of(subsidized), planner.getLastRejectedEdges());
+        CompactGraph current = CompactGraph.of(graph);
+        double[] closed = current.copyWeights();
+        closed[current.getEdgeId(subsidized)] = Double.POSITIVE_INFINITY;
+        CompactGraph withoutSubsidized = current.withWeights(closed, current.getWeightEpoch());
+        for (IncrementalPlanner.Vehicle vehicle : vehicles) {
+            List<Node> expected = Dijkstra.findPath(withoutSubsidized, vehicle.getPosition(), vehicle.getGoal());
+            if (!expected.isEmpty()) assertEquals(TestGraphs.pathCost(graph, expected), vehicle.getCost(), 1e-9);
+        }
+
+        // Once the edge has a usable weight again it is reopened
+        planner.onWeightChanged(subsidized, -5, subsidized.getWeight());
+        planner.repair();
+        assertTrue(planner.getLastRejectedEdges().isEmpty());
+        for (IncrementalPlanner.Vehicle vehicle : vehicles) {
+            List<Node> expected = Dijkstra.findPath(CompactGraph.of(graph), vehicle.getPosition(), vehicle.getGoal());
+            if (!expected.isEmpty()) assertEquals(TestGraphs.pathCost(graph, expected), vehicle.getCost(), 1e-9);
+        }
+        planner.detach();
+        System.out.println("Expanded by the first vehicle: " + vehicles.get(0).getExpandedCount());
+    }
+
+    private static long[] expandedCounts(List<IncrementalPlanner.Vehicle> vehicles) {
+        long[] counts = new long[vehicles.size()];
+        for (int v = 0; v < counts.length; v++) {
+            counts[v] = vehicles.get(v).getExpandedCount();
+        }
+        return counts;
+    }
+
+    /**
+     * Nodes a fresh planner expands to plan the same vehicles on the current graph.
+     */
+    private static long scratchExpanded(Graph graph, List<IncrementalPlanner.Vehicle> vehicles) {
+        IncrementalPlanner scratch = new IncrementalPlanner(graph, new EuclideanHeuristic(), RoadClassPolicy.ALLOW_ALL);
+        long expanded = 0;
+        for (IncrementalPlanner.Vehicle vehicle : vehicles) {
+            expanded += scratch.addVehicle(vehicle.getPosition(), vehicle.getGoal()).getExpandedCount();
+        }
+        scratch.detach();
+        return expanded;
+    }
+
+    // --------------------------
+    // EV ROUTING TEST
+    // --------------------------
+    @Test
+    public void testBatteryConstrainedRoutingMatchesStateSearch() {
+        System.out.println("\n--- Test: Battery-Constrained EV Routing ---");
+        Random random = new Random(55);
+        int capacity = 10; // kWh, every consumption below is whole kWh so charges stay on the 10 levels
+        for (int round = 0; round < 20; round++) {
+            Graph graph = new Graph();
+            Node[] nodes = new Node[25];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = new Node("E" + i, i, 0);
+                if (random.nextInt(5) == 0) nodes[i].setChargingPower(10 + random.nextInt(40));
+                graph.addNode(nodes[i]);
+            }
+            for (int i = 0; i < 80; i++) {
+                int u = random.nextInt(nodes.length);
+                int v = random.nextInt(nodes.length);
+                if (u == v || graph.getEdge(nodes[u].getId(), nodes[v].getId()) != null) continue;
+                Edge edge = new Edge(nodes[u], nodes[v], 60 + random.nextInt(600));
+                edge.setEnergyConsumption(1 + random.nextInt(4));
+                graph.addEdge(edge);
+            }
+            CompactGraph compact = CompactGraph.of(graph);
+            BatteryConstrainedSearch search = BatteryConstrainedSearch.of(compact, RoadClassPolicy.ALLOW_ALL);
+
+            for (int q = 0; q < 10; q++) {
+                Node start = nodes[random.nextInt(nodes.length)];
+                Node goal = nodes[random.nextInt(nodes.length)];
+                int initial = random.nextInt(capacity + 1);
+                double expected = stateSearch(graph, start, goal, capacity, initial);
+                BatteryConstrainedSearch.Route route = search.findRoute(start, goal, capacity, initial);
+                assertEquals(expected == Double.POSITIVE_INFINITY, route.isEmpty(), start + " -> " + goal);
+                if (route.isEmpty()) continue;
+                assertEquals(expected, route.getDuration(), 1e-6);
+
+                // Drive the route: the battery never runs empty and the times add up
+                double charge = initial;
+                double driving = 0;
+                int stop = 0;
+                List<Node> path = route.getNodes();
+                for (int i = 0; i < path.size(); i++) {
+                    while (stop < route.getChargingStops().size()
+                            && route.getChargingStops().get(stop).getStation().equals(path.get(i))) {
+                        assertTrue(path.get(i).isChargingStation());
+                        charge += route.getChargingStops().get(stop++).getEnergy();
+                        assertTrue(charge <= capacity + 1e-9);
+                    }
+                    if (i + 1 < path.size()) {
+                        Edge edge = graph.getEdge(path.get(i).getId(), path.get(i + 1).getId());
+                        charge -= edge.getEnergyConsumption();
+                        driving += edge.getTravelTime();
+                        assertTrue(charge >= -1e-9, "Vehicle strands on " + path);
+                    }
+                }
+                assertEquals(route.getChargingStops().size(), stop);
+                assertEquals(route.getArrivalCharge(), charge, 1e-9);
+                assertEquals(route.getDrivingTime(), driving, 1e-6);
+            }
+        }
+
+        // A trip longer than one battery needs a stop on the way
+        Graph line = new Graph();
+        Node a = new Node("EA", 0, 0);
+        Node b = new Node("EB", 1, 0);
+        Node c = new Node("EC", 2, 0);
+        b.setChargingPower(50);
+        for (Node node : List.of(a, b, c)) line.addNode(node);
+        Edge ab = new Edge(a, b, 1800);
+        Edge bc = new Edge(b, c, 1800);
+        ab.setEnergyConsumption(30);
+        bc.setEnergyConsumption(30);
+        line.addEdge(ab);
+        line.addEdge(bc);
+        DriveBotRouter router = new DriveBotRouter(line, null, false, RoadClassPolicy.ALLOW_ALL);
+        BatteryConstrainedSearch.Route trip = router.computeEvRoute(a, c, 40, 40);
+        assertEquals(List.of(a, b, c), trip.getNodes());
+        assertEquals(1, trip.getChargingStops().size());
+        assertEquals(b, trip.getChargingStops().get(0).getStation());
+        assertTrue(router.computeEvRoute(a, c, 25, 25).isEmpty(), "One leg alone exceeds the battery");
+        System.out.println("EV trip: " + trip);
+    }
+
+    /**
+     * Dijkstra over (node, whole kWh of charge) states; charging at a station moves to any
+     * higher level. Exact when every consumption is a whole number of kWh.
+     */
+    private double stateSearch(Graph graph, Node start, Node goal, int capacity, int initialCharge) {
+        java.util.Map<String, Double> best = new java.util.HashMap<>();
+        java.util.PriorityQueue<Object[]> queue = new java.util.PriorityQueue<>(
+                java.util.Comparator.comparingDouble(entry -> (Double) entry[0]));
+        queue.add(new Object[]{0.0, start, initialCharge});
+        while (!queue.isEmpty()) {
+            Object[] entry = queue.poll();
+            double time = (Double) entry[0];
+            Node node = (Node) entry[1];
+            int charge = (Integer) entry[2];
+            if (best.putIfAbsent(node.getId() + "@" + charge, time) != null) continue;
+            if (node.equals(goal)) return time;
+            for (int level = charge + 1; node.isChargingStation() && level <= capacity; level++) {
+                queue.add(new Object[]{time + (level - charge) / node.getChargingPower() * 3600, node, level});
+            }
+            for (Edge edge : graph.getEdges(node)) {
+                int left = charge - (int) edge.getEnergyConsumption();
+                if (left >= 0) queue.add(new Object[]{time + edge.getTravelTime(), edge.getTo(), left});
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    // --------------------------
+    // BATCH DISPATCH TEST
+    // --------------------------
+    @Test
+    public void testBatchDispatchMatchesRidesOptimally() {
+        System.out.println("\n--- Test: Batch Vehicle-Ride Assignment ---");
+        Random random = new Random(66);
+
+        // Matching against every possible assignment: most rows matched first, then least cost
+        for (int round = 0; round < 300; round++) {
+            int rows = 1 + random.nextInt(6);
+            int columns = 1 + random.nextInt(6);
+            double[][] costs = new double[rows][columns];
+            for (double[] row : costs) {
+                for (int j = 0; j < columns; j++) {
+                    row[j] = random.nextInt(3) == 0 ? Double.POSITIVE_INFINITY : random.nextInt(20);
+                }
+            }
+            int[] match = MinCostMatching.solve(costs);
+            double[] best = bestAssignment(costs, 0, new boolean[columns]);
+            int matched = 0;
+            double total = 0;
+            java.util.Set<Integer> used = new java.util.HashSet<>();
+            for (int i = 0; i < rows; i++) {
+                if (match[i] < 0) continue;
+                assertTrue(used.add(match[i]), "Column matched twice");
+                assertTrue(costs[i][match[i]] < Double.POSITIVE_INFINITY);
+                matched++;
+                total += costs[i][match[i]];
+            }
+            assertEquals(best[0], matched);
+            assertEquals(best[1], total, 1e-9);
+        }
+
+        // A city grid with a batch of 200 vehicles and 200 rides (DispatchBenchmark runs 1000 of each)
+        Graph graph = new Graph();
+        int side = 50;
+        Node[][] grid = new Node[side][side];
+        for (int x = 0; x < side; x++) {
+            for (int y = 0; y < side; y++) {
+                grid[x][y] = new Node("G" + x + "_" + y, x, y);
+                graph.addNode(grid[x][y]);
+            }
+        }
+        for (int x = 0; x < side; x++) {
+            for (int y = 0; y < side; y++) {
+                if (x + 1 < side) {
+                    graph.addEdge(new Edge(grid[x][y], grid[x + 1][y], 1 + random.nextInt(3)));
+                    graph.addEdge(new Edge(grid[x + 1][y], grid[x][y], 1 + random.nextInt(3)));
+                }
+                if (y + 1 < side) {
+                    graph.addEdge(new Edge(grid[x][y], grid[x][y + 1], 1 + random.nextInt(3)));
+                    graph.addEdge(new Edge(grid[x][y + 1], grid[x][y], 1 + random.nextInt(3)));
+                }
+            }
+        }
+        List<Node> vehicles = new ArrayList<>();
+        List<RideRequest> rides = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            vehicles.add(grid[random.nextInt(side)][random.nextInt(side)]);
+            rides.add(new RideRequest("R" + i, grid[random.nextInt(side)][random.nextInt(side)],
+                    grid[random.nextInt(side)][random.nextInt(side)]));
+        }
+        DriveBotRouter router = new DriveBotRouter(graph, null, false, RoadClassPolicy.ALLOW_ALL);
+        Dispatcher dispatcher = new Dispatcher(router, 12);
+        long started = System.nanoTime();
+        List<Assignment> assignments = dispatcher.dispatch(vehicles, rides);
+        long millis = (System.nanoTime() - started) / 1_000_000;
+
+        TravelMatrix pickups = router.computeMatrix(vehicles, List.of(assignments.get(0).getRide().getPickup()));
+        PricingTable pricing = PricingTable.of(CompactGraph.of(graph));
+        java.util.Set<RideRequest> served = new java.util.HashSet<>();
+        for (Assignment assignment : assignments) {
+            assertTrue(served.add(assignment.getRide()), "Ride served twice");
+            assertTrue(assignment.getPickupCost() <= 12);
+            List<Node> trip = assignment.getTrip();
+            assertEquals(assignment.getRide().getPickup(), trip.get(0));
+            assertEquals(assignment.getRide().getDropoff(), trip.get(trip.size() - 1));
+            assertEquals(pricing.quoteProfit(pricing.toEdgeIds(trip)), assignment.getProfit(), 1e-9);
+        }
+        Assignment first = assignments.get(0);
+        assertEquals(pickups.getCost(first.getVehicleIndex(), 0), first.getPickupCost(), 1e-9);
+        SnapshotRoute routed = router.computeSnapshotRoute(first.getRide().getPickup(), first.getRide().getDropoff());
+        assertSame(router.getSnapshot(), routed.getSnapshot());
+        assertEquals(first.getTrip(), routed.getPath());
+        assertTrue(assignments.size() > 100, "Most rides have a vehicle within the radius");
+        System.out.println("Dispatched " + assignments.size() + " of 200 rides in " + millis + " ms");
+    }
+
+    /**
+     * @return {most rows matched, least cost at that count} over every assignment of the remaining rows.
+     */
+    private double[] bestAssignment(double[][] costs, int row, boolean[] used) {
+        if (row == costs.length) {
+            return new double[]{0, 0};
+        }
+        double[] best = bestAssignment(costs, row + 1, used);
+        for (int j = 0; j < used.length; j++) {
+            if (used[j] || costs[row][j] == Double.POSITIVE_INFINITY) continue;
+            used[j] = true;
+            double[] rest = bestAssignment(costs, row + 1, used);
+            used[j] = false;
+            double count = rest[0] + 1;
+            double cost = rest[1] + costs[row][j];
+            if (count > best[0] || (count == best[0] && cost < best[1])) {
+                best = new double[]{count, cost};
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Random graph where w = positive cost + shift(to) - shift(from): many negative edges,
+     * but every cycle stays positive. No parallel edges.
+     */
+    private Graph createSubsidyGraph(Random random, int nodeCount, int edgeCount) {
+        Graph graph = new Graph();
+        Node[] nodes = new Node[nodeCount];
+        double[] shift = new double[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            nodes[i] = new Node("J" + i, i, 0);
+            shift[i] = random.nextDouble() * 20;
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 0; i < edgeCount; i++) {
+            int u = random.nextInt(nodeCount);
+            int v = random.nextInt(nodeCount);
+            if (u == v || graph.getEdge(nodes[u].getId(), nodes[v].getId()) != null) continue;
+            graph.addEdge(new Edge(nodes[u], nodes[v], 1 + random.nextInt(10) + shift[v] - shift[u]));
+        }
+        return graph;
+    }
+}
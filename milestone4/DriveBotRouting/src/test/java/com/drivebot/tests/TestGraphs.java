@@ -0,0 +1,81 @@
+package com.drivebot.tests;
+
+import com.drivebot.model.Edge;
+import com.drivebot.model.Graph;
+import com.drivebot.model.Node;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Random graphs and path costs shared by the test classes.
+ */
+public class TestGraphs {
+
+    /**
+     * Nodes "N0".."N{n-1}" scattered over 100 x 100, random edges with integer weights 1..20.
+     * Parallel edges are allowed, loops are skipped.
+     */
+    public static Graph createRandomGraph(long seed, int nodeCount, int edgeCount) {
+        Random random = new Random(seed);
+        Graph graph = new Graph();
+        Node[] nodes = new Node[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            nodes[i] = new Node("N" + i, random.nextDouble() * 100, random.nextDouble() * 100);
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 0; i < edgeCount; i++) {
+            Node from = nodes[random.nextInt(nodeCount)];
+            Node to = nodes[random.nextInt(nodeCount)];
+            if (from.equals(to)) continue;
+            graph.addEdge(new Edge(from, to, 1 + random.nextInt(20)));
+        }
+        return graph;
+    }
+
+    /**
+     * Like {@link #createRandomGraph} with four edges out of every node, but weights never
+     * undercut the straight-line distance, so the Euclidean heuristic stays consistent.
+     */
+    public static Graph createRandomGeometricGraph(long seed, int nodeCount) {
+        Random random = new Random(seed);
+        Graph graph = new Graph();
+        Node[] nodes = new Node[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            nodes[i] = new Node("N" + i, random.nextDouble() * 100, random.nextDouble() * 100);
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            for (int k = 0; k < 4; k++) {
+                Node to = nodes[random.nextInt(nodeCount)];
+                if (to.equals(nodes[i])) continue;
+                double dx = nodes[i].getX() - to.getX();
+                double dy = nodes[i].getY() - to.getY();
+                graph.addEdge(new Edge(nodes[i], to, Math.sqrt(dx * dx + dy * dy) * (1 + random.nextDouble())));
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Cost of a node path over the cheapest of parallel edges, the way the routers drive it.
+     * Fails the test if two consecutive nodes are not connected.
+     */
+    public static double pathCost(Graph graph, List<Node> path) {
+        double cost = 0.0;
+        for (int i = 0; i < path.size() - 1; i++) {
+            double best = Double.POSITIVE_INFINITY;
+            for (Edge e : graph.getEdges(path.get(i))) {
+                if (e.getTo().equals(path.get(i + 1))) {
+                    best = Math.min(best, e.getWeight());
+                }
+            }
+            assertTrue(best < Double.POSITIVE_INFINITY,
+                    "No edge from " + path.get(i) + " to " + path.get(i + 1) + " in the graph.");
+            cost += best;
+        }
+        return cost;
+    }
+}